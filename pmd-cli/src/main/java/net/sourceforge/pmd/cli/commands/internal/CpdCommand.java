@@ -87,6 +87,26 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
     @Option(names = "--non-recursive", description = "Don't scan subdirectiories.")
     private boolean nonRecursive;
 
+    @Option(names = { "--threads", "-t" },
+            description = "Sets the number of threads used to tokenize files. "
+                + "Defaults to the number of available processors, zero or one tokenizes on the main thread.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--match-engine",
+            description = "The algorithm used to find duplicates. Both algorithms find the same duplicates, "
+                + "SUFFIX_ARRAY uses more memory but is faster when there are many large duplications.%n"
+                + "Valid values: ${COMPLETION-CANDIDATES}",
+            defaultValue = "HASH")
+    private CPDConfiguration.MatchEngine matchEngine;
+
+    @Option(names = "--cache",
+            description = "Specify the location of the cache file for incremental analysis. "
+                + "The tokens of files that did not change since the previous run are read from the cache "
+                + "instead of tokenizing the files again. With the HASH engine, only the duplicates that changed "
+                + "files may affect are searched again. "
+                + "If the file doesn't exist, it will be created on the first run.")
+    private Path cacheLocation;
+
 
     /**
      * Converts these parameters into a configuration.
@@ -120,6 +140,9 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
         configuration.setSkipBlocksPattern(skipBlocksPattern);
         configuration.setSkipDuplicates(skipDuplicates);
         configuration.setSkipLexicalErrors(skipLexicalErrors);
+        configuration.setThreads(threads);
+        configuration.setMatchEngine(matchEngine);
+        configuration.setCacheLocation(cacheLocation);
         configuration.setSourceEncoding(encoding.getEncoding());
         configuration.setInputUri(uri);
 
@@ -104,6 +104,8 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private Path cacheLocation;
 
+    private Path sharedCacheLocation;
+
     private boolean noCache;
 
     private boolean showProgressBar;
@@ -220,6 +222,16 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.cacheLocation = cacheLocation;
     }
 
+    @Option(names = "--shared-cache",
+            description = "Specify the location of a shared cache directory for incremental analysis. "
+                    + "Results are keyed by file contents, so they are reused across branches and checkouts, "
+                    + "and the directory may be used by several PMD processes at once. "
+                    + "Least recently used results are evicted when the directory exceeds 1 GiB. "
+                    + "Takes precedence over the '--cache' option.")
+    public void setSharedCacheLocation(final Path sharedCacheLocation) {
+        this.sharedCacheLocation = sharedCacheLocation;
+    }
+
     @Option(names = "--no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     public void setNoCache(final boolean noCache) {
         this.noCache = noCache;
@@ -270,7 +282,11 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         configuration.setSuppressMarker(suppressMarker);
         configuration.setThreads(threads);
         configuration.setFailOnViolation(failOnViolation);
-        configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null);
+        if (sharedCacheLocation != null) {
+            configuration.setSharedAnalysisCacheLocation(sharedCacheLocation.toString());
+        } else {
+            configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null);
+        }
         configuration.setIgnoreIncrementalAnalysis(noCache);
 
         if (languageVersion != null) {
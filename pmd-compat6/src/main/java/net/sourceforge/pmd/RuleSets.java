@@ -19,6 +19,7 @@ import java.util.Set;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.LanguageProcessor;
 import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.document.TextFile;
@@ -26,6 +27,7 @@ import net.sourceforge.pmd.lang.rule.InternalApiBridge;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.lang.rule.internal.RuleApplicator;
+import net.sourceforge.pmd.lang.rule.xpath.internal.ViolationSuppressXPathQuery;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
@@ -72,7 +74,10 @@ public class RuleSets {
             for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
                 Rule rule = iterator.next();
                 try {
-                    rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+                    LanguageProcessor processor = lpReg.getProcessor(rule.getLanguage());
+                    rule.initialize(processor);
+                    // compile the violationSuppressXPath once, this also validates it
+                    ViolationSuppressXPathQuery.forRule(rule, processor.services().getXPathHandler());
                 } catch (Exception e) {
                     reporter.errorEx(
                             "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
@@ -14,6 +14,7 @@ import java.util.Objects;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ContextedRuntimeException;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,8 +23,11 @@ import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
+import net.sourceforge.pmd.lang.rule.xpath.internal.AstElementNode;
 import net.sourceforge.pmd.lang.rule.xpath.internal.DeprecatedAttrLogger;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonConfigurationScope;
 import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
+import net.sourceforge.pmd.lang.rule.xpath.internal.XPathRuleBatch;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 import net.sourceforge.pmd.properties.PropertyFactory;
 import net.sourceforge.pmd.reporting.RuleContext;
@@ -111,6 +115,26 @@ public /*final*/ class XPathRule extends AbstractRule {
             throw addExceptionContext(e);
         }
 
+        addViolations(nodesWithViolation, ctx);
+    }
+
+    /**
+     * Applies the rule on a node visited by an {@link XPathRuleBatch}, which
+     * evaluates the query on the wrapper of the node it shares with the other
+     * rules of the batch.
+     */
+    void apply(XPathRuleBatch.Member<?> query, AstElementNode wrapper, RuleContext ctx) {
+        List<Node> nodesWithViolation;
+        try {
+            nodesWithViolation = query.evaluate(wrapper);
+        } catch (PmdXPathException e) {
+            throw addExceptionContext(e);
+        }
+
+        addViolations(nodesWithViolation, ctx);
+    }
+
+    private void addViolations(List<Node> nodesWithViolation, RuleContext ctx) {
         for (Node nodeWithViolation : nodesWithViolation) {
             // see Deprecate getImage/@Image #4787 https://github.com/pmd/pmd/issues/4787
             String messageArg = nodeWithViolation.getImage();
@@ -138,6 +162,14 @@ public /*final*/ class XPathRule extends AbstractRule {
 
     @Override
     public void initialize(LanguageProcessor languageProcessor) {
+        initialize(languageProcessor, new SaxonConfigurationScope());
+    }
+
+    /**
+     * Initializes the rule with a Saxon configuration shared with the
+     * other XPath rules of its rule set.
+     */
+    void initialize(LanguageProcessor languageProcessor, SaxonConfigurationScope configurationScope) {
         String xpath = getXPathExpression();
         XPathVersion version = XPathVersion.DEFAULT;
 
@@ -146,12 +178,20 @@ public /*final*/ class XPathRule extends AbstractRule {
                     version,
                     getPropertiesByPropertyDescriptor(),
                     languageProcessor.services().getXPathHandler(),
-                    attrLogger);
+                    attrLogger,
+                    configurationScope);
         } catch (PmdXPathException e) {
             throw addExceptionContext(e);
         }
     }
 
+    /**
+     * Returns the query, or null if the rule has not been initialized.
+     */
+    @Nullable SaxonXPathRuleQuery getQuery() {
+        return xpathRuleQuery;
+    }
+
     private SaxonXPathRuleQuery getQueryMaybeInitialize() throws PmdXPathException {
         if (xpathRuleQuery == null) {
             throw new IllegalStateException("Not initialized");
@@ -20,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
+import net.sourceforge.pmd.cache.internal.SharedAnalysisCache;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -86,6 +87,11 @@ import net.sourceforge.pmd.util.log.internal.SimpleMessageReporter;
  * <ul>
  * <li>Use {@link #setThreads(int)} to control the parallelism of the analysis. Defaults
  * one thread per available processor. {@link #getThreads()}</li>
+ * <li>Use {@link #setLargestFilesFirst(boolean)} to analyse the largest files first
+ * when running multi-threaded.</li>
+ * <li>Use {@link #setUseVirtualThreads(boolean)} to read files on virtual threads (Java 21+).</li>
+ * <li>Use {@link #setParallelRulesThreshold(int)} to apply the rules of the largest
+ * files on several threads.</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
@@ -98,6 +104,9 @@ public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = DEFAULT_SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean largestFilesFirst = false;
+    private boolean useVirtualThreads = false;
+    private int parallelRulesThreshold = 0;
     private ClassLoader classLoader = getClass().getClassLoader();
 
     // Rule and source file options
@@ -161,6 +170,98 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Returns whether files are scheduled largest-first in multi-threaded
+     * analysis. Defaults to false, in which case files are processed in
+     * the order they were collected.
+     *
+     * @since 7.1.0
+     */
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    /**
+     * Sets whether files should be scheduled largest-first in multi-threaded
+     * analysis. This reduces the time at the end of the analysis where only
+     * a few threads are still busy with some big files, at the cost of
+     * querying the size of each file before the analysis starts. This has
+     * no effect if {@linkplain #getThreads() the thread count} is zero.
+     *
+     * @param largestFilesFirst Whether to analyse the largest files first
+     *
+     * @since 7.1.0
+     */
+    public void setLargestFilesFirst(boolean largestFilesFirst) {
+        this.largestFilesFirst = largestFilesFirst;
+    }
+
+    /**
+     * Returns whether files are read on virtual threads in multi-threaded
+     * analysis. Defaults to false.
+     *
+     * @since 7.1.0
+     */
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Sets whether files should be read on virtual threads in multi-threaded
+     * analysis. Parsing and rule application still run on the
+     * {@linkplain #getThreads() configured number of threads}, while the
+     * contents of the next files are read in the background. This mostly
+     * helps when reading files is slow, eg on a network file system.
+     * Virtual threads require Java 21 or later. On older JVMs, a warning
+     * is logged and files are read by the analysis threads, as if this was
+     * disabled. This has no effect if the thread count is zero.
+     *
+     * @param useVirtualThreads Whether to read files on virtual threads
+     *
+     * @since 7.1.0
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * Returns the number of lines from which the rules of a file are
+     * applied on several threads in multi-threaded analysis. Defaults to
+     * zero, in which case the rules of a file are always applied by a
+     * single thread.
+     *
+     * @since 7.1.0
+     */
+    public int getParallelRulesThreshold() {
+        return parallelRulesThreshold;
+    }
+
+    /**
+     * Sets the number of lines from which the rules of a file are applied
+     * on several threads in multi-threaded analysis. The rules of such a
+     * file are split into groups, which are applied concurrently by the
+     * threads that have no other file to process. This helps when a few
+     * very large files are left at the end of the analysis. The violations
+     * of the file are reported in an order that doesn't depend on the
+     * timing of the threads.
+     *
+     * <p>This only applies to languages whose ASTs support it, see
+     * {@link net.sourceforge.pmd.lang.LanguageVersionHandler#supportsConcurrentRuleApplication()}.
+     * This has no effect if {@linkplain #getThreads() the thread count} is
+     * zero or one.
+     *
+     * @param parallelRulesThreshold Minimum number of lines, zero to disable
+     *
+     * @throws IllegalArgumentException If the parameter is negative
+     * @since 7.1.0
+     */
+    public void setParallelRulesThreshold(int parallelRulesThreshold) {
+        if (parallelRulesThreshold < 0) {
+            throw new IllegalArgumentException("Negative line count: " + parallelRulesThreshold);
+        }
+        this.parallelRulesThreshold = parallelRulesThreshold;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -432,6 +533,29 @@ public class PMDConfiguration extends AbstractConfiguration {
                          : new FileAnalysisCache(new File(cacheLocation)));
     }
 
+    /**
+     * Sets the location of a shared analysis cache directory. Unlike the cache
+     * file configured with {@link #setAnalysisCacheLocation(String)}, results
+     * are keyed by the contents of files, so that they can be reused across
+     * branches and checkouts of the same project. The directory can be used
+     * by several PMD processes at the same time. The least recently used results
+     * are evicted when the directory grows bigger than 1 GiB. Setting a value of
+     * {@code null} will cause a Noop AnalysisCache to be used. This replaces
+     * the cache configured with {@link #setAnalysisCacheLocation(String)}.
+     * If incremental analysis was explicitly disabled ({@link #isIgnoreIncrementalAnalysis()}),
+     * then this method is a noop.
+     *
+     * @param cacheDirectory The directory in which to store results. Use {@code null}
+     *                       to disable the cache.
+     *
+     * @since 7.1.0
+     */
+    public void setSharedAnalysisCacheLocation(final String cacheDirectory) {
+        setAnalysisCache(cacheDirectory == null
+                         ? new NoopAnalysisCache()
+                         : new SharedAnalysisCache(new File(cacheDirectory), SharedAnalysisCache.DEFAULT_MAX_SIZE));
+    }
+
 
     /**
      * Sets whether the user has explicitly disabled incremental analysis or not.
@@ -16,9 +16,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,7 @@ import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.lang.document.FileCollector;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.lang.rule.RuleSetLoader;
@@ -416,7 +419,9 @@ public final class PmdAnalysis implements AutoCloseable {
 
             encourageToUseIncrementalAnalysis(configuration);
 
-            try (LanguageProcessorRegistry lpRegistry = LanguageProcessorRegistry.create(
+            // All language processors share the same threads
+            try (AnalysisScheduler scheduler = configuration.getThreads() > 0 ? new AnalysisScheduler(configuration.getThreads(), configuration.getParallelRulesThreshold()) : null;
+                 LanguageProcessorRegistry lpRegistry = LanguageProcessorRegistry.create(
                 // only start the applicable languages (and dependencies)
                 new LanguageRegistry(getApplicableLanguages(true)),
                 langProperties,
@@ -430,9 +435,12 @@ public final class PmdAnalysis implements AutoCloseable {
                     textFiles,
                     listener,
                     configuration.getThreads(),
+                    configuration.isLargestFilesFirst(),
+                    configuration.isUseVirtualThreads(),
                     configuration.getAnalysisCache(),
                     reporter,
-                    lpRegistry
+                    lpRegistry,
+                    scheduler
                 );
 
                 List<AutoCloseable> analyses = new ArrayList<>();
@@ -446,6 +454,9 @@ public final class PmdAnalysis implements AutoCloseable {
                         reporter.errorEx("Error while joining analysis", e);
                     }
                 }
+                if (scheduler != null) {
+                    logLanguageStatistics(scheduler);
+                }
 
             } catch (LanguageTerminationException e) {
                 reporter.errorEx("Error while closing language processors", e);
@@ -462,6 +473,15 @@ public final class PmdAnalysis implements AutoCloseable {
     }
 
 
+    private static void logLanguageStatistics(AnalysisScheduler scheduler) {
+        if (LOG.isDebugEnabled()) {
+            scheduler.getLanguageStatistics().forEach((language, stats) -> LOG.debug(
+                "Processed {} {} files in {} ms of thread time ({} files/s)",
+                stats.getFileCount(), language.getName(), stats.getProcessingTime(TimeUnit.MILLISECONDS),
+                String.format(Locale.ROOT, "%.1f", stats.getFilesPerSecond())));
+        }
+    }
+
     private GlobalAnalysisListener createComposedRendererListener(List<Renderer> renderers) throws Exception {
         if (renderers.isEmpty()) {
             return GlobalAnalysisListener.noop();
@@ -0,0 +1,29 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+/**
+ * A timed operation that runs in several slices, which may be interleaved
+ * with other operations of the same thread. Only the time between
+ * {@link #resume()} and {@link #suspend()} is tracked, and the slices
+ * are recorded as a single call when the operation is closed.
+ *
+ * @see TimeTracker#startSlicedOperation(TimedOperationCategory, String)
+ * @since 7.1.0
+ */
+public interface SlicedTimedOperation extends TimedOperation {
+
+    /**
+     * Starts a slice. Operations started until the slice is suspended
+     * are nested in this one.
+     */
+    void resume();
+
+    /**
+     * Ends the current slice, if any. Operations nested in the slice
+     * must have been closed.
+     */
+    void suspend();
+}
@@ -93,7 +93,8 @@ public class TextTimingReportRenderer implements TimingReportRenderer {
         renderHeader(category.displayName(), writer);
 
         final TimedResult grandTotal = new TimedResult();
-        final Set<Entry<String, TimedResult>> sortedKeySet = new TreeSet<>(Comparator.comparingLong(o -> o.getValue().selfTimeNanos.get()));
+        final Set<Entry<String, TimedResult>> sortedKeySet = new TreeSet<>(Comparator.<Entry<String, TimedResult>>comparingLong(o -> o.getValue().selfTimeNanos.get())
+                                                                                         .thenComparing(Entry::getKey));
         sortedKeySet.addAll(labeledMeasurements.entrySet());
 
         for (final Map.Entry<String, TimedResult> entry : sortedKeySet) {
@@ -39,6 +39,29 @@ public final class TimeTracker {
         }
     };
 
+    private static final SlicedTimedOperation NOOP_SLICED_OPERATION = new SlicedTimedOperation() {
+
+        @Override
+        public void resume() {
+            // noop
+        }
+
+        @Override
+        public void suspend() {
+            // noop
+        }
+
+        @Override
+        public void close() {
+            // noop
+        }
+
+        @Override
+        public void close(final int count) {
+            // noop
+        }
+    };
+
     static {
         TIMER_ENTRIES = ThreadLocal.withInitial(() -> Collections.asLifoQueue(new LinkedList<>()));
     }
@@ -130,6 +153,26 @@ public final class TimeTracker {
         return new TimedOperationImpl();
     }
 
+    /**
+     * Starts tracking an operation that runs in several slices, interleaved
+     * with other operations of the same thread, eg a rule applied node by
+     * node together with other rules. Nothing is tracked until the first
+     * slice is {@linkplain SlicedTimedOperation#resume() resumed}.
+     *
+     * @param category The category under which to track the operation.
+     * @param label    A label to be added to the category.
+     *
+     * @return The operation, which records all its slices as one call when closed.
+     *
+     * @since 7.1.0
+     */
+    public static SlicedTimedOperation startSlicedOperation(final TimedOperationCategory category, final String label) {
+        if (!trackTime) {
+            return NOOP_SLICED_OPERATION;
+        }
+        return new SlicedTimedOperationImpl(category, label);
+    }
+
     /**
      * Finishes tracking an operation.
      * @param extraDataCounter An optional additional data counter to track along the measurements.
@@ -158,6 +201,42 @@ public final class TimeTracker {
         }
     }
 
+    /**
+     * Finishes tracking a slice of a sliced operation, whose entry is the
+     * current one. The times are accumulated into the given result.
+     */
+    private static void finishSlice(final TimedResult slices) {
+        final Queue<TimerEntry> queue = TIMER_ENTRIES.get();
+        final TimerEntry timerEntry = queue.remove();
+
+        final long delta = slices.accumulate(timerEntry, 0);
+        if (!queue.isEmpty()) {
+            queue.peek().inNestedOperationsNanos += delta;
+        }
+    }
+
+    /**
+     * Adds to the counter of an operation, without timing anything. This
+     * is meant for events that are too frequent to be timed one by one,
+     * like the hits of a cache. Each call counts as one call of the
+     * operation.
+     *
+     * @param category The category under which to track the operation.
+     * @param label    A label to be added to the category.
+     * @param count    The value to add to the counter
+     *
+     * @since 7.1.0
+     */
+    public static void addToCounter(final TimedOperationCategory category, final String label, final long count) {
+        if (!trackTime || count == 0) {
+            return;
+        }
+
+        final TimedResult result = ACCUMULATED_RESULTS.computeIfAbsent(new TimedOperationKey(category, label), k -> new TimedResult());
+        result.callCount.getAndIncrement();
+        result.extraDataCounter.getAndAdd(count);
+    }
+
     public static void bench(String label, Runnable runnable) {
         try (TimedOperation ignored = startOperation(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, label)) {
             runnable.run();
@@ -288,4 +367,61 @@ public final class TimeTracker {
             TimeTracker.finishOperation(extraDataCounter);
         }
     }
+
+    /**
+     * A sliced timed operation. Each slice is tracked like an operation
+     * of its own, so that nested operations and the enclosing one are
+     * accounted for. The times of the slices are summed up until closing.
+     */
+    private static final class SlicedTimedOperationImpl implements SlicedTimedOperation {
+        private final TimedOperationCategory category;
+        private final String label;
+        private final TimedResult slices = new TimedResult();
+        private boolean inSlice = false;
+        private boolean closed = false;
+
+        SlicedTimedOperationImpl(final TimedOperationCategory category, final String label) {
+            this.category = category;
+            this.label = label;
+        }
+
+        @Override
+        public void resume() {
+            if (closed || inSlice) {
+                return;
+            }
+
+            inSlice = true;
+            TIMER_ENTRIES.get().add(new TimerEntry(category, label));
+        }
+
+        @Override
+        public void suspend() {
+            if (!inSlice) {
+                return;
+            }
+
+            inSlice = false;
+            TimeTracker.finishSlice(slices);
+        }
+
+        @Override
+        public void close() {
+            close(0);
+        }
+
+        @Override
+        public void close(int extraDataCounter) {
+            if (closed) {
+                return;
+            }
+
+            suspend();
+            closed = true;
+            final TimedResult result = ACCUMULATED_RESULTS.computeIfAbsent(new TimedOperationKey(category, label), k -> new TimedResult());
+            result.mergeTimes(slices);
+            result.callCount.getAndIncrement();
+            result.extraDataCounter.getAndAdd(extraDataCounter);
+        }
+    }
 }
@@ -26,6 +26,8 @@ public enum TimedOperationCategory {
     RULE_AST_INDEXATION,
     REPORTING,
     FILE_PROCESSING,
+    /** Time each worker thread spent processing files, labeled with the thread name. */
+    WORKER_THREAD,
     ANALYSIS_CACHE,
     UNACCOUNTED;
 
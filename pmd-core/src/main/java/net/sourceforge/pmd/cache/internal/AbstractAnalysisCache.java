@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +50,8 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
     protected final ConcurrentMap<FileId, AnalysisResult> fileResultsCache = new ConcurrentHashMap<>();
     protected final ConcurrentMap<FileId, AnalysisResult> updatedResultsCache = new ConcurrentHashMap<>();
     protected final CachedRuleMapper ruleMapper = new CachedRuleMapper();
+    /** Stat fingerprints of the files of this analysis, taken before they were read. */
+    private final ConcurrentMap<FileId, Long> statFingerprints = new ConcurrentHashMap<>();
     protected long rulesetChecksum;
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
@@ -60,10 +63,40 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
         pmdVersion = PMDVersion.VERSION;
     }
 
+    @Override
+    public @Nullable List<RuleViolation> getUnchangedFileViolations(final TextFile file) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "stat check")) {
+            final long statFingerprint = file.getStatFingerprint();
+            if (statFingerprint == TextFile.UNKNOWN_STAT_FINGERPRINT) {
+                return null;
+            }
+            // recorded with the result, if the file needs to be read
+            statFingerprints.put(file.getFileId(), statFingerprint);
+
+            final AnalysisResult cachedResult = fileResultsCache.get(file.getFileId());
+            if (cachedResult != null && cachedResult.getStatFingerprint() == statFingerprint) {
+                LOG.trace("Incremental Analysis cache HIT - file metadata unchanged");
+                updatedResultsCache.put(file.getFileId(), cachedResult);
+                return cachedResult.getViolations();
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isUnchanged(final TextFile file) {
+        final long statFingerprint = file.getStatFingerprint();
+        final AnalysisResult cachedResult = fileResultsCache.get(file.getFileId());
+        return statFingerprint != TextFile.UNKNOWN_STAT_FINGERPRINT
+            && cachedResult != null
+            && cachedResult.getStatFingerprint() == statFingerprint;
+    }
+
     @Override
     public boolean isUpToDate(final TextDocument document) {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
             final AnalysisResult cachedResult = fileResultsCache.get(document.getFileId());
+            final long statFingerprint = statFingerprints.getOrDefault(document.getFileId(), TextFile.UNKNOWN_STAT_FINGERPRINT);
             final AnalysisResult updatedResult;
 
             // is this a known file? has it changed?
@@ -73,14 +106,21 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             if (upToDate) {
                 LOG.trace("Incremental Analysis cache HIT");
                 
-                // copy results over
-                updatedResult = cachedResult;
+                if (statFingerprint == TextFile.UNKNOWN_STAT_FINGERPRINT
+                    || statFingerprint == cachedResult.getStatFingerprint()) {
+                    // copy results over
+                    updatedResult = cachedResult;
+                } else {
+                    // eg the file was touched, record its new metadata
+                    updatedResult = new AnalysisResult(document.getCheckSum(), statFingerprint,
+                                                       new ArrayList<>(cachedResult.getViolations()));
+                }
             } else {
                 LOG.trace("Incremental Analysis cache MISS - {}",
                           cachedResult != null ? "file changed" : "no previous result found");
                 
                 // New file being analyzed, create new empty entry
-                updatedResult = new AnalysisResult(document.getCheckSum(), new ArrayList<>());
+                updatedResult = new AnalysisResult(document.getCheckSum(), statFingerprint, new ArrayList<>());
             }
 
             updatedResultsCache.put(document.getFileId(), updatedResult);
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.lang.document.TextDocument;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
@@ -38,6 +40,33 @@ public interface AnalysisCache {
      */
     boolean isUpToDate(TextDocument document);
 
+    /**
+     * Checks if a given file is up to date in the cache, using only its
+     * {@linkplain TextFile#getStatFingerprint() stat fingerprint}, without
+     * reading it. If the fingerprint matches the one recorded with the cached
+     * result, the cached violations are returned, and the file is added to
+     * the updated cache like in {@link #isUpToDate(TextDocument)}. Otherwise,
+     * returns null, and the file should be checked with {@link #isUpToDate(TextDocument)}.
+     *
+     * @param file The file to check in the cache
+     * @return The cached violations if the cache is a hit, null otherwise
+     */
+    default @Nullable List<RuleViolation> getUnchangedFileViolations(TextFile file) {
+        return null;
+    }
+
+    /**
+     * Returns true if {@link #getUnchangedFileViolations(TextFile)} would
+     * currently return the cached violations of the file. Unlike that method,
+     * this has no side effect. This is used to avoid reading files ahead
+     * of time that the analysis will skip.
+     *
+     * @param file The file to check in the cache
+     */
+    default boolean isUnchanged(TextFile file) {
+        return false;
+    }
+
     /**
      * Retrieves cached violations for the given file. Make sure to call {@link #isUpToDate(TextDocument)} first.
      * @param sourceFile The file to check in the cache
@@ -7,22 +7,30 @@ package net.sourceforge.pmd.cache.internal;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.reporting.RuleViolation;
 
 /**
  * The result of a single file analysis.
- * Includes a checksum of the file and the complete list of violations detected.
+ * Includes a checksum of the file, a fingerprint of its metadata, and the
+ * complete list of violations detected.
  */
 public class AnalysisResult {
 
     private final long fileChecksum;
+    private final long statFingerprint;
     private final List<RuleViolation> violations;
 
-    public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
+    public AnalysisResult(final long fileChecksum, final long statFingerprint, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
+        this.statFingerprint = statFingerprint;
         this.violations = violations;
     }
 
+    public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
+        this(fileChecksum, TextFile.UNKNOWN_STAT_FINGERPRINT, violations);
+    }
+
     public AnalysisResult(final long fileChecksum) {
         this(fileChecksum, new ArrayList<>());
     }
@@ -31,6 +39,14 @@ public class AnalysisResult {
         return fileChecksum;
     }
 
+    /**
+     * Returns the {@linkplain TextFile#getStatFingerprint() stat fingerprint}
+     * of the file when it was analysed.
+     */
+    public long getStatFingerprint() {
+        return statFingerprint;
+    }
+
     public List<RuleViolation> getViolations() {
         return violations;
     }
@@ -4,24 +4,36 @@
 
 package net.sourceforge.pmd.cache.internal;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.SystemUtils;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.internal.util.IOUtil;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
@@ -29,11 +41,39 @@ import net.sourceforge.pmd.reporting.RuleViolation;
 
 /**
  * An analysis cache backed by a regular file.
+ *
+ * <p>The file starts with a header (PMD version and checksums of the
+ * analysis configuration), followed by one record per file. Records
+ * start with the hash of the file ID, the checksum of the file, its
+ * {@linkplain TextFile#getStatFingerprint() stat fingerprint}, and the
+ * length of the rest of the record, which contains the violations.
+ * When loading, the file is memory-mapped and only record headers are
+ * read, to build an index of the files of the analysis. Violations are
+ * decoded on a cache hit, when they are requested.
+ *
+ * <p>When persisting, records of the files whose result changed are
+ * appended to the end of the file, and supersede the previous records
+ * for the same file. When too much of the file is made of superseded
+ * records, or the header changed, the file is rewritten entirely.
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    private static final int MAGIC = 0x504d4443; // "PMDC"
+    /** Version of the layout of the file, incremented on incompatible changes. */
+    private static final int FORMAT_VERSION = 2;
+    private static final int RECORD_HEADER_LENGTH = 8 + 8 + 8 + 4;
+    /** The file is compacted when it is this many times bigger than its live records. */
+    private static final int COMPACTION_RATIO = 2;
+
     private final File cacheFile;
 
+    /** Contents of the cache file when it was loaded, null if there was no valid cache file. */
+    private ByteBuffer loadedData;
+    /** Length of the header of the loaded file. */
+    private int headerLength;
+    /** Whether the header of the loaded file matches the current analysis. */
+    private boolean canAppend;
+
     /**
      * Creates a new cache backed by the given file.
      * @param cache The file on which to store analysis cache
@@ -47,25 +87,41 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
     public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
         // load cached data before checking for validity
         loadFromFile(cacheFile, files);
+        final long loadedRulesetChecksum = rulesetChecksum;
+        final long loadedAuxClassPathChecksum = auxClassPathChecksum;
+        final long loadedExecutionClassPathChecksum = executionClassPathChecksum;
+
         super.checkValidity(ruleSets, auxclassPathClassLoader, files);
+
+        canAppend = loadedData != null
+            && loadedRulesetChecksum == rulesetChecksum
+            && loadedAuxClassPathChecksum == auxClassPathChecksum
+            && loadedExecutionClassPathChecksum == executionClassPathChecksum;
     }
 
     /**
-     * Loads cache data from the given file.
+     * Loads cache data from the given file. Only the results of the
+     * given files are indexed, the others are dropped on the next compaction.
      *
      * @param cacheFile The file which backs the file analysis cache.
      */
     private void loadFromFile(final File cacheFile, Collection<? extends TextFile> files) {
-        Map<String, FileId> idMap =
-            files.stream().map(TextFile::getFileId)
-                 .collect(Collectors.toMap(FileId::getUriString, id -> id));
+        Map<Long, FileId> idsByHash = new HashMap<>();
+        for (TextFile file : files) {
+            idsByHash.put(hashFileId(file.getFileId()), file.getFileId());
+        }
 
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
             if (cacheExists()) {
-                try (
-                    DataInputStream inputStream = new DataInputStream(
-                        new BufferedInputStream(Files.newInputStream(cacheFile.toPath())));
-                ) {
+                try {
+                    final ByteBuffer data = readCacheFile(cacheFile.toPath());
+                    final DataInputStream inputStream = new DataInputStream(IOUtil.fromByteBuffer(data.duplicate()));
+
+                    if (inputStream.readInt() != MAGIC || inputStream.readInt() != FORMAT_VERSION) {
+                        LOG.debug("Analysis cache invalidated, unknown file format.");
+                        return;
+                    }
+
                     final String cacheVersion = inputStream.readUTF();
 
                     if (PMDVersion.VERSION.equals(cacheVersion)) {
@@ -76,32 +132,38 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                         auxClassPathChecksum = inputStream.readLong();
                         executionClassPathChecksum = inputStream.readLong();
 
-                        // Cached results
-                        while (inputStream.available() > 0) {
-                            final String filePathId = inputStream.readUTF();
-                            FileId fileId = idMap.get(filePathId);
-                            if (fileId == null) {
-                                LOG.debug("File {} is in the cache but is not part of the analysis",
-                                          filePathId);
-                                fileId = FileId.fromURI(filePathId);
-                            }
-                            final long checksum = inputStream.readLong();
+                        headerLength = data.limit() - inputStream.available();
 
-                            final int countViolations = inputStream.readInt();
-                            final List<RuleViolation> violations = new ArrayList<>(countViolations);
-                            for (int i = 0; i < countViolations; i++) {
-                                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+                        // Index of cached results
+                        int pos = headerLength;
+                        while (pos < data.limit()) {
+                            if (data.limit() - pos < RECORD_HEADER_LENGTH) {
+                                throw new EOFException();
+                            }
+                            final long fileIdHash = data.getLong(pos);
+                            final long checksum = data.getLong(pos + 8);
+                            final long statFingerprint = data.getLong(pos + 16);
+                            final int end = pos + RECORD_HEADER_LENGTH + data.getInt(pos + 24);
+                            if (end < pos + RECORD_HEADER_LENGTH || end > data.limit()) {
+                                throw new EOFException();
                             }
 
-                            fileResultsCache.put(fileId, new AnalysisResult(checksum, violations));
+                            FileId fileId = idsByHash.get(fileIdHash);
+                            if (fileId != null) {
+                                // records appended later supersede earlier ones
+                                fileResultsCache.put(fileId, new MappedAnalysisResult(checksum, statFingerprint, fileId, data, pos, end));
+                            }
+                            pos = end;
                         }
 
+                        loadedData = data;
                         LOG.debug("Analysis cache loaded from {}", cacheFile);
                     } else {
                         LOG.debug("Analysis cache invalidated, PMD version changed.");
                     }
                 } catch (final EOFException e) {
                     LOG.warn("Cache file {} is malformed, will not be used for current analysis", cacheFile.getPath());
+                    fileResultsCache.clear();
                 } catch (final IOException e) {
                     LOG.error("Could not load analysis cache from file: {}", e.getMessage());
                 }
@@ -111,6 +173,26 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
         }
     }
 
+    private static ByteBuffer readCacheFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cache file is too big: " + size + " bytes");
+            }
+            if (SystemUtils.IS_OS_WINDOWS) {
+                // Windows does not allow replacing a file while it is mapped,
+                // and a mapping is only released when it is garbage collected.
+                final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                return buffer;
+            }
+            return channel.map(MapMode.READ_ONLY, 0, size);
+        }
+    }
+
     @Override
     public void persist() {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
@@ -129,10 +211,61 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 }
             }
 
-            try (
-                DataOutputStream outputStream = new DataOutputStream(
-                    new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))
-            ) {
+            try {
+                // Records of the results that are not in the file yet
+                final List<byte[]> newRecords = new ArrayList<>();
+                long liveLength = headerLength;
+                for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                    final AnalysisResult result = resultEntry.getValue();
+                    if (isInLoadedFile(result)) {
+                        liveLength += ((MappedAnalysisResult) result).getRecordLength();
+                    } else {
+                        final byte[] record = encodeRecord(resultEntry.getKey(), result);
+                        newRecords.add(record);
+                        liveLength += record.length;
+                    }
+                }
+
+                final long appendedLength = cacheFile.length() + newRecords.stream().mapToLong(r -> r.length).sum();
+                if (canAppend && cacheFile.length() == loadedData.limit()
+                    && appendedLength <= COMPACTION_RATIO * liveLength) {
+                    appendRecords(newRecords);
+                    LOG.debug("Analysis cache updated, {} records appended", newRecords.size());
+                } else {
+                    rewriteCacheFile();
+                    if (cacheFileShouldBeCreated) {
+                        LOG.debug("Analysis cache created");
+                    } else {
+                        LOG.debug("Analysis cache rewritten");
+                    }
+                }
+            } catch (final IOException e) {
+                LOG.error("Could not persist analysis cache to file: {}", e.getMessage());
+            }
+        }
+    }
+
+    private boolean isInLoadedFile(AnalysisResult result) {
+        return result instanceof MappedAnalysisResult && ((MappedAnalysisResult) result).isUnchangedIn(loadedData);
+    }
+
+    private void appendRecords(List<byte[]> records) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(
+            Files.newOutputStream(cacheFile.toPath(), StandardOpenOption.APPEND))) {
+            for (byte[] record : records) {
+                outputStream.write(record);
+            }
+        }
+    }
+
+    private void rewriteCacheFile() throws IOException {
+        final Path target = cacheFile.toPath();
+        final Path tempFile = Files.createTempFile(target.toAbsolutePath().getParent(), cacheFile.getName(), ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(FORMAT_VERSION);
                 outputStream.writeUTF(pmdVersion);
 
                 outputStream.writeLong(rulesetChecksum);
@@ -140,29 +273,138 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 outputStream.writeLong(executionClassPathChecksum);
 
                 for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
-                    final List<RuleViolation> violations = resultEntry.getValue().getViolations();
-
-                    outputStream.writeUTF(resultEntry.getKey().getUriString()); // the path id
-                    outputStream.writeLong(resultEntry.getValue().getFileChecksum());
-
-                    outputStream.writeInt(violations.size());
-                    for (final RuleViolation rv : violations) {
-                        CachedRuleViolation.storeToStream(outputStream, rv);
+                    final AnalysisResult result = resultEntry.getValue();
+                    if (isInLoadedFile(result)) {
+                        // copy the record, without decoding the violations
+                        ((MappedAnalysisResult) result).writeRecordTo(outputStream);
+                    } else {
+                        outputStream.write(encodeRecord(resultEntry.getKey(), result));
                     }
                 }
-                if (cacheFileShouldBeCreated) {
-                    LOG.debug("Analysis cache created");
-                } else {
-                    LOG.debug("Analysis cache updated");
-                }
-            } catch (final IOException e) {
-                LOG.error("Could not persist analysis cache to file: {}", e.getMessage());
             }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
     }
 
+    private static byte[] encodeRecord(FileId fileId, AnalysisResult result) throws IOException {
+        final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        try (DataOutputStream payload = new DataOutputStream(payloadBytes)) {
+            final List<RuleViolation> violations = result.getViolations();
+            payload.writeInt(violations.size());
+            for (final RuleViolation rv : violations) {
+                CachedRuleViolation.storeToStream(payload, rv);
+            }
+        }
+
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(RECORD_HEADER_LENGTH + payloadBytes.size());
+        try (DataOutputStream record = new DataOutputStream(recordBytes)) {
+            record.writeLong(hashFileId(fileId));
+            record.writeLong(result.getFileChecksum());
+            record.writeLong(result.getStatFingerprint());
+            record.writeInt(payloadBytes.size());
+            payloadBytes.writeTo(record);
+        }
+        return recordBytes.toByteArray();
+    }
+
+    /**
+     * Hash of the URI of the file ID (64-bit FNV-1a). This is the key
+     * of the records in the file. A collision would require that two
+     * files of the same analysis have the same hash and the same checksum.
+     */
+    static long hashFileId(FileId fileId) {
+        final String uri = fileId.getUriString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < uri.length(); i++) {
+            hash ^= uri.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     @Override
     protected boolean cacheExists() {
         return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
     }
+
+    /**
+     * A result whose violations are decoded from the cache file
+     * only when they are requested.
+     */
+    private final class MappedAnalysisResult extends AnalysisResult {
+
+        private final FileId fileId;
+        private final ByteBuffer data;
+        private final int start;
+        private final int end;
+        private List<RuleViolation> violations;
+        private boolean modified;
+
+        MappedAnalysisResult(long fileChecksum, long statFingerprint, FileId fileId, ByteBuffer data, int start, int end) {
+            super(fileChecksum, statFingerprint, null);
+            this.fileId = fileId;
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        synchronized boolean isUnchangedIn(ByteBuffer buffer) {
+            return data == buffer && !modified;
+        }
+
+        int getRecordLength() {
+            return end - start;
+        }
+
+        void writeRecordTo(OutputStream outputStream) throws IOException {
+            final ByteBuffer record = data.duplicate();
+            record.position(start);
+            record.limit(end);
+            Channels.newChannel(outputStream).write(record);
+        }
+
+        @Override
+        public synchronized List<RuleViolation> getViolations() {
+            if (violations == null) {
+                violations = decodeViolations();
+            }
+            return violations;
+        }
+
+        private List<RuleViolation> decodeViolations() {
+            final ByteBuffer payload = data.duplicate();
+            payload.position(start + RECORD_HEADER_LENGTH);
+            payload.limit(end);
+            final DataInputStream inputStream = new DataInputStream(IOUtil.fromByteBuffer(payload));
+            try {
+                final int countViolations = inputStream.readInt();
+                final List<RuleViolation> result = new ArrayList<>(countViolations);
+                for (int i = 0; i < countViolations; i++) {
+                    result.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+                }
+                return result;
+            } catch (IOException e) {
+                // the record was validated when loading, so this is unexpected
+                throw new IllegalStateException("Malformed analysis cache record for " + fileId.getOriginalPath(), e);
+            }
+        }
+
+        @Override
+        public synchronized void addViolations(List<RuleViolation> violations) {
+            getViolations().addAll(violations);
+            modified = true;
+        }
+
+        @Override
+        public synchronized void addViolation(RuleViolation ruleViolation) {
+            getViolations().add(ruleViolation);
+            modified = true;
+        }
+    }
 }
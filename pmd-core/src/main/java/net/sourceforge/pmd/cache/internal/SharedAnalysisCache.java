@@ -0,0 +1,361 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.InternalApiBridge;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * An analysis cache stored in a directory, which can be shared by
+ * several checkouts of a repository, and by concurrent PMD processes.
+ * Results are keyed by the hash of the file contents, of its language version,
+ * of the PMD version, of the rulesets and of the classpaths. Unlike
+ * {@link FileAnalysisCache}, the name of the file is not part of the key:
+ * identical files in different branches or worktrees share their results.
+ * Since rulesets may include or exclude files by path, which of the
+ * rulesets apply to the file is part of the key instead.
+ *
+ * <p>Each result is stored in its own file, written atomically, so that
+ * readers never need to lock. The last modification time of result files
+ * is updated on each hit. The total size of the results is recorded in
+ * a lock file, which each process updates after writing its results.
+ * Only when it exceeds the maximum size is the directory walked, to evict
+ * the least recently used results and record the exact size again.
+ */
+public class SharedAnalysisCache extends AbstractAnalysisCache {
+
+    /** Default maximum size of the cache directory. */
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024; // 1 GiB
+
+    private static final String RESULT_EXTENSION = ".result";
+    /** Holds the total size of the results, and serializes its updates between processes. */
+    private static final String LOCK_FILE_NAME = "cache.lock";
+    /** Serializes the updates of the size between the caches of this JVM, which can't share file locks. */
+    private static final Object SIZE_LOCK = new Object();
+    /** When evicting, the size of the directory is brought down to this fraction of the max size. */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Path directory;
+    private final long maxSize;
+    private RuleSet[] ruleSets = new RuleSet[0];
+    /** Key of each file of the analysis, as computed in {@link #isUpToDate(TextDocument)}. */
+    private final ConcurrentMap<FileId, String> keys = new ConcurrentHashMap<>();
+    /** Results that were found in the directory, and don't need to be stored again. */
+    private final ConcurrentMap<FileId, AnalysisResult> storedResults = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache stored in the given directory.
+     *
+     * @param directory The directory in which to store results. It is created if needed.
+     * @param maxSize   Maximum size in bytes of the stored results
+     */
+    public SharedAnalysisCache(final File directory, final long maxSize) {
+        super();
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
+        // The checksums of the configuration are part of the key of each result,
+        // there is nothing to invalidate.
+        super.checkValidity(ruleSets, auxclassPathClassLoader, files);
+        this.ruleSets = ruleSets.getAllRuleSets();
+        if (Files.exists(directory) && !Files.isDirectory(directory)) {
+            LOG.error("The configured shared cache location must be a directory, but is a file.");
+        }
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        return false;
+    }
+
+    @Override
+    public @Nullable List<RuleViolation> getUnchangedFileViolations(TextFile file) {
+        // Results are keyed by contents, the file needs to be read
+        return null;
+    }
+
+    @Override
+    public boolean isUnchanged(TextFile file) {
+        return false;
+    }
+
+    @Override
+    public boolean isUpToDate(final TextDocument document) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "shared lookup")) {
+            final String key = computeKey(document);
+            keys.put(document.getFileId(), key);
+
+            final List<RuleViolation> violations = readResult(key, document.getFileId());
+            if (violations != null) {
+                final AnalysisResult result = new AnalysisResult(document.getCheckSum(), violations);
+                fileResultsCache.put(document.getFileId(), result);
+                storedResults.put(document.getFileId(), result);
+            }
+        }
+        return super.isUpToDate(document);
+    }
+
+    private String computeKey(TextDocument document) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is supported by every JVM", e);
+        }
+        final ByteBuffer configuration = ByteBuffer.allocate(3 * Long.BYTES);
+        configuration.putLong(rulesetChecksum).putLong(auxClassPathChecksum).putLong(executionClassPathChecksum);
+        digest.update(configuration.array());
+        digest.update(pmdVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update(document.getLanguageVersion().getTerseName().getBytes(StandardCharsets.UTF_8));
+        // the path of the file is not part of the key, but it
+        // determines which rulesets apply to the file
+        final byte[] applicableRuleSets = new byte[ruleSets.length];
+        for (int i = 0; i < ruleSets.length; i++) {
+            applicableRuleSets[i] = (byte) (InternalApiBridge.ruleSetApplies(ruleSets[i], document.getFileId()) ? 1 : 0);
+        }
+        digest.update(applicableRuleSets);
+        digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(document.getText())));
+
+        final StringBuilder key = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    private Path resultFile(String key) {
+        // use subdirectories to avoid too many files in a single directory
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + RESULT_EXTENSION);
+    }
+
+    /**
+     * Reads the violations stored for the given key, or returns null if
+     * there are none.
+     */
+    private List<RuleViolation> readResult(String key, FileId fileId) {
+        final Path file = resultFile(key);
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final int countViolations = inputStream.readInt();
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+            }
+            markUsed(file);
+            return violations;
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException e) {
+            // may have been evicted by another process while reading
+            LOG.debug("Could not read shared cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void markUsed(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // it's only used for eviction
+            LOG.trace("Could not update the modification time of {}", file, e);
+        }
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (Files.exists(directory) && !Files.isDirectory(directory)) {
+                LOG.error("Cannot persist the shared cache, the given path is not a directory.");
+                return;
+            }
+
+            try {
+                Files.createDirectories(directory);
+                int written = 0;
+                long addedSize = 0;
+                for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                    final String key = keys.get(resultEntry.getKey());
+                    if (key != null && storedResults.get(resultEntry.getKey()) != resultEntry.getValue()) {
+                        addedSize += writeResult(key, resultEntry.getValue().getViolations());
+                        written++;
+                    }
+                }
+                LOG.debug("Shared analysis cache updated with {} results", written);
+
+                if (written > 0) {
+                    updateSize(addedSize);
+                }
+            } catch (final IOException e) {
+                LOG.error("Could not persist shared analysis cache: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the result of the given key, and returns by how much the
+     * size of the stored results changed.
+     */
+    private long writeResult(String key, List<RuleViolation> violations) throws IOException {
+        final Path target = resultFile(key);
+        Files.createDirectories(target.getParent());
+        // Write to a temp file first, so that other processes never see a partial result
+        final Path tempFile = Files.createTempFile(target.getParent(), key.substring(2), ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                outputStream.writeInt(violations.size());
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(outputStream, rv);
+                }
+            }
+            final long addedSize = Files.size(tempFile) - sizeIfExists(target);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return addedSize;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static long sizeIfExists(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (final NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Adds the given size to the recorded size of the results, and evicts
+     * the least recently used results if it goes over the max size. The
+     * recorded size may drift when other processes write the same results
+     * concurrently, it is corrected by each eviction.
+     */
+    private void updateSize(long addedSize) throws IOException {
+        synchronized (SIZE_LOCK) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                final long recordedSize = readSize(channel);
+                // the size is unknown if the lock file was just created
+                long totalSize = recordedSize < 0 ? Long.MAX_VALUE : recordedSize + addedSize;
+                if (totalSize > maxSize) {
+                    totalSize = evictLeastRecentlyUsed();
+                }
+                writeSize(channel, totalSize);
+            }
+        }
+    }
+
+    private static long readSize(FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return -1;
+            }
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    private static void writeSize(FileChannel channel, long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(Math.max(size, 0)).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+    }
+
+    /**
+     * Deletes the least recently used results, if the directory is bigger
+     * than the max size, and returns the size of the remaining results.
+     * This walks the whole directory, the size lock must be held.
+     */
+    private long evictLeastRecentlyUsed() throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        final Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(RESULT_EXTENSION)) {
+                    entries.add(file);
+                    attributes.put(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long totalSize = entries.stream().mapToLong(it -> attributes.get(it).size()).sum();
+        if (totalSize <= maxSize) {
+            return totalSize;
+        }
+
+        entries.sort(Comparator.comparing(it -> attributes.get(it).lastModifiedTime()));
+        final long targetSize = (long) (maxSize * EVICTION_TARGET);
+        int evicted = 0;
+        for (Path entry : entries) {
+            if (totalSize <= targetSize) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry);
+                totalSize -= attributes.get(entry).size();
+                evicted++;
+            } catch (final IOException e) {
+                // eg in use by another process on Windows
+                LOG.trace("Could not evict {}", entry, e);
+            }
+        }
+        LOG.debug("Evicted {} results from the shared analysis cache", evicted);
+        return totalSize;
+    }
+}
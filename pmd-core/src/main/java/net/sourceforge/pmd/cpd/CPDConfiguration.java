@@ -8,10 +8,12 @@ import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -75,6 +77,12 @@ public class CPDConfiguration extends AbstractConfiguration {
 
     private boolean failOnViolation = true;
 
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private MatchEngine matchEngine = MatchEngine.HASH;
+
+    private @Nullable Path cacheLocation;
+
 
     public CPDConfiguration() {
         this(LanguageRegistry.CPD);
@@ -151,6 +159,78 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.minimumTileSize = minimumTileSize;
     }
 
+    /**
+     * Returns the number of threads used to tokenize files.
+     *
+     * @since 7.1.0
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to tokenize files. With zero or
+     * one thread, files are tokenized on the calling thread. The result
+     * of the analysis does not depend on the number of threads.
+     * Defaults to the number of available processors, both here and
+     * for the {@code --threads} option of the CLI.
+     *
+     * @param threads The number of threads
+     *
+     * @since 7.1.0
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the algorithm used to find duplicates.
+     *
+     * @since 7.1.0
+     */
+    public MatchEngine getMatchEngine() {
+        return matchEngine;
+    }
+
+    /**
+     * Sets the algorithm used to find duplicates. Both algorithms find
+     * the same duplicates. Defaults to {@link MatchEngine#HASH}.
+     *
+     * @param matchEngine The match engine
+     *
+     * @since 7.1.0
+     */
+    public void setMatchEngine(MatchEngine matchEngine) {
+        this.matchEngine = Objects.requireNonNull(matchEngine, "matchEngine");
+    }
+
+    /**
+     * Returns the location of the cache file of the tokens of each file
+     * and of the duplications, or null if there is no cache.
+     *
+     * @since 7.1.0
+     */
+    public @Nullable Path getCacheLocation() {
+        return cacheLocation;
+    }
+
+    /**
+     * Sets the location of a file in which the tokens of each file, and
+     * the duplications that were found, are cached. On the next run, files
+     * that didn't change are not tokenized again. With the {@link MatchEngine#HASH}
+     * engine, the duplications of the previous run that changed files cannot
+     * affect are also kept, and only the other ones are searched again.
+     * The file is created if it doesn't exist, and overwritten on
+     * each run. By default, there is no cache.
+     *
+     * @param cacheLocation The location of the cache file, or null to disable the cache
+     *
+     * @since 7.1.0
+     */
+    public void setCacheLocation(@Nullable Path cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
     public boolean isSkipDuplicates() {
         return skipDuplicates;
     }
@@ -276,5 +356,25 @@ public class CPDConfiguration extends AbstractConfiguration {
         }
     }
 
-
+    /**
+     * Algorithm used to find the duplicates.
+     *
+     * @since 7.1.0
+     */
+    public enum MatchEngine {
+        /**
+         * Groups the tokens by a rolling hash of the tiles that start at
+         * them, then compares the tokens of each group pairwise. This is
+         * the default.
+         */
+        HASH,
+        /**
+         * Sorts the suffixes of the token sequence in a suffix array,
+         * in which duplicates are adjacent. This uses more memory than
+         * {@link #HASH}, but is faster when there are many large
+         * duplications, because the length of a duplication is computed
+         * without comparing tokens.
+         */
+        SUFFIX_ARRAY
+    }
 }
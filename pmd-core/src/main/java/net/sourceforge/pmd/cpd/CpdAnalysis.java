@@ -5,13 +5,21 @@
 package net.sourceforge.pmd.cpd;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -138,11 +146,65 @@ public final class CpdAnalysis implements AutoCloseable {
         this.listener = cpdListener;
     }
 
-    private int doTokenize(TextDocument document, CpdLexer cpdLexer, Tokens tokens) throws IOException, LexException {
-        LOGGER.trace("Tokenizing {}", document.getFileId().getAbsolutePath());
-        int lastTokenSize = tokens.size();
-        CpdLexer.tokenize(cpdLexer, document, tokens);
-        return tokens.size() - lastTokenSize - 1; /* EOF */
+    private Tokens tokenizeFile(TextFile textFile, SourceManager sourceManager, Map<Language, CpdLexer> cpdLexers,
+                                @Nullable TokenCache cache) throws IOException {
+        TextDocument textDocument = sourceManager.get(textFile);
+        if (cache != null) {
+            Tokens cachedTokens = cache.get(textDocument.getFileId(), textDocument.getCheckSum());
+            if (cachedTokens != null) {
+                LOGGER.trace("Using cached tokens of {}", textDocument.getFileId().getAbsolutePath());
+                return cachedTokens;
+            }
+        }
+        CpdLexer cpdLexer = cpdLexers.computeIfAbsent(
+            textFile.getLanguageVersion().getLanguage(),
+            lang -> ((CpdCapableLanguage) lang).createCpdLexer(configuration.getLanguageProperties(lang)));
+        LOGGER.trace("Tokenizing {}", textDocument.getFileId().getAbsolutePath());
+        Tokens tokens = CpdLexer.tokenize(cpdLexer, textDocument);
+        if (cache != null) {
+            cache.put(textDocument.getFileId(), textDocument.getCheckSum(), tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns a checksum of the options that change the tokens of the
+     * files, that is, the properties of the languages.
+     */
+    private long configurationChecksum() {
+        long checksum = 1;
+        for (Language language : configuration.getLanguageRegistry()) {
+            LanguagePropertyBundle props = configuration.getLanguageProperties(language);
+            checksum = checksum * 31 + language.getId().hashCode();
+            for (PropertyDescriptor<?> descriptor : props.getPropertyDescriptors()) {
+                checksum = checksum * 31 + descriptor.name().hashCode();
+                checksum = checksum * 31 + serializedValue(props, descriptor).hashCode();
+            }
+        }
+        return checksum;
+    }
+
+    private static <T> String serializedValue(LanguagePropertyBundle props, PropertyDescriptor<T> descriptor) {
+        return descriptor.serializer().toString(props.getProperty(descriptor));
+    }
+
+    private static Tokens getFileTokens(Future<Tokens> fileTokens) throws IOException {
+        try {
+            return fileTokens.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while tokenizing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
     }
 
     public void performAnalysis() {
@@ -153,42 +215,74 @@ public final class CpdAnalysis implements AutoCloseable {
     public void performAnalysis(Consumer<CPDReport> consumer) {
 
         try (SourceManager sourceManager = new SourceManager(files.getCollectedFiles())) {
-            Map<Language, CpdLexer> tokenizers =
-                sourceManager.getTextFiles().stream()
-                             .map(it -> it.getLanguageVersion().getLanguage())
-                             .distinct()
-                             .filter(it -> it instanceof CpdCapableLanguage)
-                             .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdLexer(configuration.getLanguageProperties(lang))));
-
             Map<FileId, Integer> numberOfTokensPerFile = new HashMap<>();
 
             boolean hasErrors = false;
             Tokens tokens = new Tokens();
-            for (TextFile textFile : sourceManager.getTextFiles()) {
-                TextDocument textDocument = sourceManager.get(textFile);
-                Tokens.State savedState = tokens.savePoint();
-                try {
-                    int newTokens = doTokenize(textDocument, tokenizers.get(textFile.getLanguageVersion().getLanguage()), tokens);
-                    numberOfTokensPerFile.put(textDocument.getFileId(), newTokens);
-                    listener.addedFile(1);
-                } catch (LexException | IOException e) {
-                    if (e instanceof FileAnalysisException) { // NOPMD
-                        ((FileAnalysisException) e).setFileId(textFile.getFileId());
+            // Each file is tokenized into its own Tokens instance, with lexers
+            // local to each thread. The files are then merged in order, so
+            // that the result does not depend on the number of threads.
+            List<TextFile> textFiles = sourceManager.getTextFiles();
+            ThreadLocal<Map<Language, CpdLexer>> cpdLexers = ThreadLocal.withInitial(HashMap::new);
+            TokenCache cache = configuration.getCacheLocation() != null
+                               ? new TokenCache(configuration.getCacheLocation(), configurationChecksum(), configuration.getMinimumTileSize())
+                               : null;
+            List<FutureTask<Tokens>> tokenizations = new ArrayList<>(textFiles.size());
+            for (TextFile textFile : textFiles) {
+                tokenizations.add(new FutureTask<>(() -> tokenizeFile(textFile, sourceManager, cpdLexers.get(), cache)));
+            }
+            ExecutorService executor = configuration.getThreads() > 1
+                                       ? Executors.newFixedThreadPool(configuration.getThreads(), new CpdThreadFactory())
+                                       : null;
+            try {
+                if (executor != null) {
+                    tokenizations.forEach(executor::execute);
+                }
+                for (int i = 0; i < textFiles.size(); i++) {
+                    TextFile textFile = textFiles.get(i);
+                    FutureTask<Tokens> tokenization = tokenizations.get(i);
+                    tokenizations.set(i, null); // the tokens are only needed until they are merged
+                    if (executor == null) {
+                        tokenization.run();
                     }
-                    String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
-                    reporter.errorEx(message, e);
-                    hasErrors = true;
-                    savedState.restore(tokens);
+                    try {
+                        Tokens fileTokens = getFileTokens(tokenization);
+                        numberOfTokensPerFile.put(textFile.getFileId(), fileTokens.size() - 1 /* EOF */);
+                        tokens.appendFileTokens(fileTokens);
+                        listener.addedFile(1);
+                    } catch (LexException | IOException e) {
+                        if (e instanceof FileAnalysisException) { // NOPMD
+                            ((FileAnalysisException) e).setFileId(textFile.getFileId());
+                        }
+                        String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
+                        reporter.errorEx(message, e);
+                        hasErrors = true;
+                    }
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
                 }
             }
             if (hasErrors && !configuration.isSkipLexicalErrors()) {
+                if (cache != null) {
+                    cache.persist();
+                }
                 // will be caught by CPD command
                 throw new IllegalStateException("Errors were detected while lexing source, exiting because --skip-lexical-errors is unset.");
             }
 
             LOGGER.debug("Running match algorithm on {} files...", sourceManager.size());
-            MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
-            List<Match> matches = matchAlgorithm.findMatches(listener, sourceManager);
+            List<Match> matches;
+            if (configuration.getMatchEngine() == CPDConfiguration.MatchEngine.SUFFIX_ARRAY) {
+                matches = new SuffixArrayMatchAlgorithm(tokens).findMatches(listener, configuration.getMinimumTileSize());
+            } else {
+                MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
+                matches = matchAlgorithm.findMatches(listener, cache);
+            }
+            if (cache != null) {
+                cache.persist();
+            }
             tokens = null; // NOPMD null it out before rendering
             LOGGER.debug("Finished: {} duplicates found", matches.size());
 
@@ -208,6 +302,18 @@ public final class CpdAnalysis implements AutoCloseable {
     }
 
 
+    private static final class CpdThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CpdThread " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         // nothing for now
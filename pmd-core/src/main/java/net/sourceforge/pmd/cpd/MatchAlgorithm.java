@@ -5,114 +5,338 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.cpd.TokenCache.CachedMatch;
+import net.sourceforge.pmd.lang.document.FileId;
 
 class MatchAlgorithm {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchAlgorithm.class);
+
     private static final int MOD = 37;
+    private static final int NO_TOKEN = -1;
     private int lastMod = 1;
 
     private final Tokens tokens;
-    private final List<TokenEntry> code;
     private final int minTileSize;
 
     MatchAlgorithm(Tokens tokens, int minTileSize) {
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.minTileSize = minTileSize;
         for (int i = 0; i < minTileSize; i++) {
             lastMod *= MOD;
         }
     }
 
-
-    public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
-    }
-
     public int getMinimumTileSize() {
         return this.minTileSize;
     }
 
     public List<Match> findMatches(@NonNull CPDListener cpdListener, SourceManager sourceManager) {
-        MatchCollector matchCollector = new MatchCollector(this);
+        return findMatches(cpdListener, (TokenCache) null);
+    }
+
+    /**
+     * Finds the matches, using the matches of the previous run stored in
+     * the cache, if any. The tiles that start at each token are grouped by
+     * their hash, and matches are only found within a group. So the groups
+     * that have no tile of a changed file, neither in this run nor in the
+     * previous one, have the same matches as in the previous run. Only the
+     * other groups are searched again. The matches are stored into the cache.
+     *
+     * @param cpdListener Listener
+     * @param cache       Cache, or null to search all the groups
+     */
+    List<Match> findMatches(@NonNull CPDListener cpdListener, @Nullable TokenCache cache) {
+        MatchCollector matchCollector = new MatchCollector(tokens, minTileSize);
+        List<FileTiles> files;
         {
             cpdListener.phaseUpdate(CPDListener.HASH);
-            Map<TokenEntry, Object> markGroups = hash();
+            files = splitFiles(cache);
+            int[] touchedHashes = cache == null ? null : touchedHashes(files, cache);
+            MarkGroups markGroups = hash(files, touchedHashes);
 
             cpdListener.phaseUpdate(CPDListener.MATCH);
-            markGroups.values()
-                      .stream()
-                      .filter(it -> it instanceof List)
-                      .forEach(it -> {
-                          @SuppressWarnings("unchecked")
-                          List<TokenEntry> l = (List<TokenEntry>) it;
-                          Collections.reverse(l);
-                          matchCollector.collect(l);
-                      });
+            markGroups.forEachGroup(matchCollector::collect);
+            if (touchedHashes != null) {
+                reusePreviousMatches(files, cache.getPreviousMatches(), touchedHashes, matchCollector);
+            }
             // put markGroups out of scope
         }
 
         cpdListener.phaseUpdate(CPDListener.GROUPING);
         List<Match> matches = matchCollector.getMatches();
-        matches.sort(Comparator.naturalOrder());
+        if (cache != null) {
+            storeMatches(files, matches, cache);
+        }
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Splits the tokens into files, with the hashes of their tiles, which
+     * are taken from the cache for the files that did not change.
+     */
+    private List<FileTiles> splitFiles(@Nullable TokenCache cache) {
+        int[] imageHashes = tokens.imageHashes();
+        List<FileTiles> files = new ArrayList<>();
+        int start = 0;
+        while (start < tokens.size()) {
+            int end = start;
+            while (end < tokens.size() && !tokens.isEof(end)) {
+                end++;
+            }
+            FileId fileId = tokens.getFileId(start);
+            int tileCount = Math.max(0, end - start - minTileSize + 1);
+            int[] tileHashes = cache == null ? null : cache.getUnchangedTileHashes(fileId);
+            boolean unchanged = tileHashes != null && tileHashes.length == tileCount;
+            if (!unchanged) {
+                tileHashes = tileHashes(imageHashes, start, tileCount);
+                if (cache != null) {
+                    cache.putTileHashes(fileId, tileHashes);
+                }
+            }
+            files.add(new FileTiles(fileId, start, tileHashes, unchanged));
+            start = end + 1;
+        }
+        return files;
+    }
 
+    /**
+     * Returns the hash of each tile of a file. The hash of a tile is a
+     * polynomial of the hash codes of the images of its tokens, so that
+     * it is the same in every run.
+     */
+    private int[] tileHashes(int[] imageHashes, int start, int tileCount) {
+        int[] result = new int[tileCount];
+        if (tileCount == 0) {
+            return result;
+        }
+        int hash = 0;
+        for (int i = start + tileCount - 1 + minTileSize - 1; i >= start + tileCount - 1; i--) {
+            hash = MOD * hash + imageHashes[tokens.getIdentifier(i)];
+        }
+        result[tileCount - 1] = hash;
+        for (int offset = tileCount - 2; offset >= 0; offset--) {
+            int first = imageHashes[tokens.getIdentifier(start + offset)];
+            int last = imageHashes[tokens.getIdentifier(start + offset + minTileSize)];
+            hash = MOD * hash + first - lastMod * last;
+            result[offset] = hash;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sorted hashes of the tiles of the changed files, in this
+     * run and in the previous one, or null if all the tiles must be searched.
+     */
+    private static int @Nullable [] touchedHashes(List<FileTiles> files, TokenCache cache) {
+        if (cache.getPreviousMatches() == null) {
+            return null;
+        }
+        // the matches of a group depend on the order of its tokens
+        Set<String> unchanged = new HashSet<>();
+        List<String> currentOrder = new ArrayList<>();
+        for (FileTiles file : files) {
+            if (file.unchanged) {
+                unchanged.add(file.fileId.getUriString());
+                currentOrder.add(file.fileId.getUriString());
+            }
+        }
+        List<String> previousOrder = new ArrayList<>();
+        for (String uri : cache.getPreviousFiles()) {
+            if (unchanged.contains(uri)) {
+                previousOrder.add(uri);
+            }
+        }
+        if (!previousOrder.equals(currentOrder)) {
+            return null;
+        }
+
+        List<int[]> touched = new ArrayList<>();
+        for (FileTiles file : files) {
+            if (!file.unchanged) {
+                touched.add(file.tileHashes);
+            }
+        }
+        for (String uri : cache.getPreviousFiles()) {
+            if (!unchanged.contains(uri)) {
+                int[] previousHashes = cache.getPreviousTileHashes(uri);
+                if (previousHashes == null) {
+                    return null;
+                }
+                touched.add(previousHashes);
+            }
+        }
+        int[] result = touched.stream().flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+        LOGGER.debug("CPD cache: searching the tiles of {} hashes again", result.length);
+        return result;
+    }
+
+    private MarkGroups hash(List<FileTiles> files, int @Nullable [] touchedHashes) {
+        MarkGroups markGroups = new MarkGroups(tokens.size());
+        for (int f = files.size() - 1; f >= 0; f--) {
+            FileTiles file = files.get(f);
+            for (int offset = file.tileHashes.length - 1; offset >= 0; offset--) {
+                int hash = file.tileHashes[offset];
+                if (touchedHashes == null || Arrays.binarySearch(touchedHashes, hash) >= 0) {
+                    markGroups.add(file.start + offset, hash);
+                }
+            }
+        }
+        return markGroups;
+    }
+
+    /**
+     * Adds the matches of the previous run whose group was not searched
+     * again. Their marks are all in unchanged files.
+     */
+    private static void reusePreviousMatches(List<FileTiles> files, List<CachedMatch> previousMatches,
+                                             int[] touchedHashes, MatchCollector matchCollector) {
+        Map<String, FileTiles> filesByUri = new HashMap<>();
+        for (FileTiles file : files) {
+            filesByUri.put(file.fileId.getUriString(), file);
+        }
+        for (CachedMatch match : previousMatches) {
+            if (Arrays.binarySearch(touchedHashes, match.tileHash) >= 0) {
+                continue;
+            }
+            int[] marks = new int[match.markFiles.length];
+            for (int i = 0; i < marks.length; i++) {
+                FileTiles file = filesByUri.get(match.markFiles[i]);
+                assert file != null && file.unchanged : "Match in a changed file " + match.markFiles[i];
+                marks[i] = file.start + match.markOffsets[i];
+            }
+            matchCollector.addMatch(match.tokenCount, marks);
+        }
+    }
+
+    private static void storeMatches(List<FileTiles> files, List<Match> matches, TokenCache cache) {
+        Map<FileId, FileTiles> filesById = new HashMap<>();
+        List<String> uris = new ArrayList<>(files.size());
+        for (FileTiles file : files) {
+            filesById.put(file.fileId, file);
+            uris.add(file.fileId.getUriString());
+        }
+        List<CachedMatch> cachedMatches = new ArrayList<>(matches.size());
         for (Match match : matches) {
+            String[] markFiles = new String[match.getMarkCount()];
+            int[] markOffsets = new int[markFiles.length];
+            int i = 0;
             for (Mark mark : match) {
-                TokenEntry token = mark.getToken();
-                TokenEntry endToken = tokens.getEndToken(token, match);
-
-                mark.setEndToken(endToken);
+                FileTiles file = filesById.get(mark.getToken().getFileId());
+                markFiles[i] = file.fileId.getUriString();
+                markOffsets[i] = mark.getToken().getIndex() - file.start;
+                i++;
             }
+            int tileHash = filesById.get(match.getFirstMark().getToken().getFileId()).tileHashes[markOffsets[0]];
+            cachedMatches.add(new CachedMatch(match.getTokenCount(), tileHash, markFiles, markOffsets));
         }
-        cpdListener.phaseUpdate(CPDListener.DONE);
-        return matches;
+        cache.setMatches(uris, cachedMatches);
     }
 
-    @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
-        int lastHash = 0;
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (!token.isEof()) {
-                int last = tokenAt(minTileSize, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
+    /**
+     * The tiles of a file.
+     */
+    private static final class FileTiles {
+
+        final FileId fileId;
+        /** Index of the first token of the file. */
+        final int start;
+        /** Hash of the tile that starts at each token of the file, if the tile is within the file. */
+        final int[] tileHashes;
+        /** Whether the file and its tile hashes are the ones of the previous run. */
+        final boolean unchanged;
+
+        FileTiles(FileId fileId, int start, int[] tileHashes, boolean unchanged) {
+            this.fileId = fileId;
+            this.start = start;
+            this.tileHashes = tileHashes;
+            this.unchanged = unchanged;
+        }
+    }
+
+    /**
+     * Groups the indices of tokens by the hash of the tile that starts
+     * at each token. This is an open-addressing hash table from hash to
+     * the first token of the group, and the tokens of a group are chained
+     * in increasing order in a separate array. This avoids allocating any
+     * object per token.
+     */
+    private static final class MarkGroups {
+
+        private final int[] hashes;
+        /** Next token with the same hash, or {@link #NO_TOKEN}. */
+        private final int[] next;
+        /** Table of the first token of each group, or {@link #NO_TOKEN}. */
+        private final int[] heads;
+        private final int mask;
+
+        MarkGroups(int numTokens) {
+            hashes = new int[numTokens];
+            next = new int[numTokens];
+            Arrays.fill(next, NO_TOKEN);
+            // power of two, at most half full
+            int capacity = Integer.highestOneBit(Math.max(2, numTokens) * 2 - 1) << 1;
+            heads = new int[capacity];
+            Arrays.fill(heads, NO_TOKEN);
+            mask = capacity - 1;
+        }
+
+        private int slot(int hash) {
+            // spread the bits like HashMap does
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (heads[slot] != NO_TOKEN && hashes[heads[slot]] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Adds a token to the group of its hash. Tokens must be added
+         * in decreasing order of index.
+         */
+        void add(int tokenIndex, int hash) {
+            hashes[tokenIndex] = hash;
+            int slot = slot(hash);
+            next[tokenIndex] = heads[slot];
+            heads[slot] = tokenIndex;
+        }
+
+        /**
+         * Calls the consumer for each group of more than one token, with
+         * the indices of the tokens in increasing order. Groups are visited
+         * in increasing order of their first token.
+         */
+        void forEachGroup(Consumer<int[]> consumer) {
+            for (int i = 0; i < hashes.length; i++) {
+                if (next[i] == NO_TOKEN || heads[slot(hashes[i])] != i) {
+                    // not the first token of a group of several tokens
+                    continue;
                 }
-            } else {
-                lastHash = 0;
-                for (int end = Math.max(0, i - minTileSize + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token.isEof()) {
-                        break;
-                    }
+                int size = 0;
+                for (int t = i; t != NO_TOKEN; t = next[t]) {
+                    size++;
                 }
+                int[] group = new int[size];
+                int k = 0;
+                for (int t = i; t != NO_TOKEN; t = next[t]) {
+                    group[k++] = t;
+                }
+                consumer.accept(group);
             }
         }
-        return markGroups;
     }
 }
@@ -5,28 +5,51 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.IntBinaryOperator;
 
 class MatchCollector {
 
     private final List<Match> matchList = new ArrayList<>();
     private final Map<Integer, Map<Integer, Match>> matchTree = new TreeMap<>();
-    private final MatchAlgorithm ma;
+    private final Tokens tokens;
+    private final int minTileSize;
 
-    MatchCollector(MatchAlgorithm ma) {
-        this.ma = ma;
+    MatchCollector(Tokens tokens, int minTileSize) {
+        this.tokens = tokens;
+        this.minTileSize = minTileSize;
     }
 
-    public void collect(List<TokenEntry> marks) {
+    /**
+     * Collects the matches starting at the given tokens, whose tiles
+     * have the same hash.
+     *
+     * @param marks Indices of the tokens, in increasing order
+     */
+    public void collect(int[] marks) {
+        collect(marks, (i, j) -> countDuplicateTokens(marks[i], marks[j]));
+    }
+
+    /**
+     * Collects the matches starting at the given tokens, whose tiles
+     * have the same hash.
+     *
+     * @param marks        Indices of the tokens, in increasing order
+     * @param dupesCounter Function that returns the number of duplicate
+     *                     tokens starting at two marks. It is called with
+     *                     the positions of the marks in the array.
+     */
+    void collect(int[] marks, IntBinaryOperator dupesCounter) {
         // first get a pairwise collection of all maximal matches
-        for (int i = 0; i < marks.size() - 1; i++) {
-            TokenEntry mark1 = marks.get(i);
-            for (int j = i + 1; j < marks.size(); j++) {
-                TokenEntry mark2 = marks.get(j);
-                int diff = mark1.getIndex() - mark2.getIndex();
-                if (-diff < ma.getMinimumTileSize()) {
+        for (int i = 0; i < marks.length - 1; i++) {
+            int mark1 = marks[i];
+            for (int j = i + 1; j < marks.length; j++) {
+                int mark2 = marks[j];
+                int diff = mark1 - mark2;
+                if (-diff < minTileSize) {
                     continue;
                 }
                 if (hasPreviousDupe(mark1, mark2)) {
@@ -34,8 +57,8 @@ class MatchCollector {
                 }
 
                 // "match too small" check
-                int dupes = countDuplicateTokens(mark1, mark2);
-                if (dupes < ma.getMinimumTileSize()) {
+                int dupes = dupesCounter.applyAsInt(i, j);
+                if (dupes < minTileSize) {
                     continue;
                 }
                 // is it still too close together
@@ -47,55 +70,80 @@ class MatchCollector {
         }
     }
 
-    private void reportMatch(TokenEntry mark1, TokenEntry mark2, int dupes) {
+    private void reportMatch(int mark1, int mark2, int dupes) {
         matchTree.compute(dupes, (dupCount, matches) -> {
             if (matches == null) {
                 matches = new TreeMap<>();
                 addNewMatch(mark1, mark2, dupCount, matches);
             } else {
-                Match matchA = matches.get(mark1.getIndex());
-                Match matchB = matches.get(mark2.getIndex());
+                Match matchA = matches.get(mark1);
+                Match matchB = matches.get(mark2);
 
                 if (matchA == null && matchB == null) {
                     addNewMatch(mark1, mark2, dupes, matches);
                 } else if (matchA == null) {
-                    matchB.addMark(mark1);
-                    matches.put(mark1.getIndex(), matchB);
+                    matchB.addMark(tokens.getToken(mark1));
+                    matches.put(mark1, matchB);
                 } else if (matchB == null) {
-                    matchA.addMark(mark2);
-                    matches.put(mark2.getIndex(), matchA);
+                    matchA.addMark(tokens.getToken(mark2));
+                    matches.put(mark2, matchA);
                 }
             }
             return matches;
         });
     }
 
-    private void addNewMatch(TokenEntry mark1, TokenEntry mark2, int dupes, Map<Integer, Match> matches) {
-        Match match = new Match(dupes, mark1, mark2);
-        matches.put(mark1.getIndex(), match);
-        matches.put(mark2.getIndex(), match);
+    private void addNewMatch(int mark1, int mark2, int dupes, Map<Integer, Match> matches) {
+        Match match = new Match(dupes, tokens.getToken(mark1), tokens.getToken(mark2));
+        matches.put(mark1, match);
+        matches.put(mark2, match);
+        matchList.add(match);
+    }
+
+    /**
+     * Adds a match that was found before, eg in a previous run. Its marks
+     * must not be in any group that is collected.
+     *
+     * @param tokenCount Number of duplicate tokens
+     * @param marks      Indices of the tokens of the marks, at least two
+     */
+    void addMatch(int tokenCount, int[] marks) {
+        Match match = new Match(tokenCount, tokens.getToken(marks[0]), tokens.getToken(marks[1]));
+        for (int i = 2; i < marks.length; i++) {
+            match.addMark(tokens.getToken(marks[i]));
+        }
         matchList.add(match);
     }
 
+    /**
+     * Returns the collected matches, sorted, with the end token of
+     * their marks set.
+     */
     List<Match> getMatches() {
+        matchList.sort(Comparator.naturalOrder());
+        for (Match match : matchList) {
+            for (Mark mark : match) {
+                mark.setEndToken(tokens.getEndToken(mark.getToken(), match));
+            }
+        }
         return matchList;
     }
 
-    private boolean hasPreviousDupe(TokenEntry mark1, TokenEntry mark2) {
-        return mark1.getIndex() != 0 && !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
+    private boolean hasPreviousDupe(int mark1, int mark2) {
+        return mark1 != 0 && !matchEnded(mark1 - 1, mark2 - 1);
     }
 
-    private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
+    private int countDuplicateTokens(int mark1, int mark2) {
         int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+        while (!matchEnded(mark1 + index, mark2 + index)) {
             index++;
         }
         return index;
     }
 
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier()
-                || token1.isEof()
-                || token2.isEof();
+    private boolean matchEnded(int token1, int token2) {
+        return tokens.getIdentifier(token1) != tokens.getIdentifier(token2)
+                || tokens.isEof(token1)
+                || tokens.isEof(token2);
     }
 }
@@ -0,0 +1,283 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Match algorithm based on a suffix array of the token sequence, and on
+ * the array of the longest common prefixes (LCP) of consecutive suffixes.
+ * The tokens that start the same tile of {@code minTileSize} tokens form
+ * contiguous ranges of the suffix array, in which the LCP is at least
+ * {@code minTileSize}. Within such a range, the number of duplicate tokens
+ * of two marks is the minimum of the LCP between them, which is answered
+ * in constant time, instead of comparing tokens one by one.
+ *
+ * <p>The index is built once in {@code O(n log n)}, and can then answer
+ * several tile sizes. For a given tile size, this finds the same matches
+ * as {@link MatchAlgorithm}.
+ *
+ * @see CPDConfiguration.MatchEngine#SUFFIX_ARRAY
+ */
+class SuffixArrayMatchAlgorithm {
+
+    private final Tokens tokens;
+    /** Token indices, sorted by the token sequence that starts at them. Null until it is built. */
+    private int[] suffixArray;
+    /** Length of the common prefix of a suffix with the previous suffix in the suffix array. */
+    private int[] lcp;
+
+    SuffixArrayMatchAlgorithm(Tokens tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Finds the matches of at least {@code minTileSize} tokens. The
+     * index is built on the first call, and reused by the next ones.
+     */
+    public List<Match> findMatches(@NonNull CPDListener cpdListener, int minTileSize) {
+        if (suffixArray == null) {
+            cpdListener.phaseUpdate(CPDListener.HASH);
+            buildIndex();
+        }
+
+        cpdListener.phaseUpdate(CPDListener.MATCH);
+        MatchCollector matchCollector = new MatchCollector(tokens, minTileSize);
+        int n = suffixArray.length;
+        int r = 1;
+        while (r < n) {
+            if (lcp[r] < minTileSize) {
+                r++;
+                continue;
+            }
+            // the group of tokens that start the same tile
+            int lo = r - 1;
+            while (r < n && lcp[r] >= minTileSize) {
+                r++;
+            }
+            collectGroup(matchCollector, lo, r - 1);
+        }
+
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        List<Match> matches = matchCollector.getMatches();
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Collects the matches of the group of tokens between the given
+     * ranks of the suffix array (inclusive).
+     */
+    private void collectGroup(MatchCollector matchCollector, int lo, int hi) {
+        if (!isLeftDiverse(lo, hi)) {
+            // All the duplications extend to the left, they are
+            // reported by the group of the previous tokens.
+            return;
+        }
+        int size = hi - lo + 1;
+        // the collector expects the marks in increasing order
+        long[] byIndex = new long[size];
+        for (int r = lo; r <= hi; r++) {
+            byIndex[r - lo] = (long) suffixArray[r] << 32 | r - lo;
+        }
+        Arrays.sort(byIndex);
+        int[] marks = new int[size];
+        int[] ranks = new int[size];
+        for (int i = 0; i < size; i++) {
+            marks[i] = (int) (byIndex[i] >>> 32);
+            ranks[i] = (int) byIndex[i];
+        }
+
+        RangeMinimum lcpBetweenRanks = new RangeMinimum(lcp, lo, size);
+        matchCollector.collect(marks, (i, j) -> lcpBetweenRanks.lcp(ranks[i], ranks[j]));
+    }
+
+    /**
+     * Returns true if the tokens of the group are not all preceded by
+     * the same token. Otherwise no pair of marks starts a match.
+     */
+    private boolean isLeftDiverse(int lo, int hi) {
+        int first = suffixArray[lo];
+        if (first == 0 || tokens.isEof(first - 1)) {
+            return true;
+        }
+        int previousId = tokens.getIdentifier(first - 1);
+        for (int r = lo + 1; r <= hi; r++) {
+            int mark = suffixArray[r];
+            if (mark == 0 || tokens.getIdentifier(mark - 1) != previousId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void buildIndex() {
+        int[] text = tokenSequence();
+        suffixArray = buildSuffixArray(text);
+        lcp = buildLcpArray(text, suffixArray);
+    }
+
+    /**
+     * Returns the image ids of the tokens. Each EOF token is given a
+     * distinct id, so that common prefixes stop at the end of a file.
+     */
+    private int[] tokenSequence() {
+        int n = tokens.size();
+        int[] text = new int[n];
+        int maxId = 0;
+        for (int i = 0; i < n; i++) {
+            text[i] = tokens.getIdentifier(i);
+            maxId = Math.max(maxId, text[i]);
+        }
+        int nextEofId = maxId + 1;
+        for (int i = 0; i < n; i++) {
+            if (tokens.isEof(i)) {
+                text[i] = nextEofId++;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Builds the suffix array by prefix doubling: the suffixes are sorted
+     * by their first {@code 2k} tokens, using the ranks of the first
+     * {@code k} tokens, with a counting sort. This stops as soon as all
+     * ranks are distinct, that is after about {@code log2} of the longest
+     * repeated sequence iterations.
+     */
+    static int[] buildSuffixArray(int[] text) {
+        int n = text.length;
+        int[] sa = new int[n];
+        if (n == 0) {
+            return sa;
+        }
+        int alphabetSize = 0;
+        for (int c : text) {
+            alphabetSize = Math.max(alphabetSize, c + 1);
+        }
+        int[] counts = new int[Math.max(alphabetSize, n) + 1];
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+
+        // sort by the first token
+        for (int c : text) {
+            counts[c]++;
+        }
+        for (int c = 1; c < alphabetSize; c++) {
+            counts[c] += counts[c - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            sa[--counts[text[i]]] = i;
+        }
+        rank[sa[0]] = 0;
+        for (int j = 1; j < n; j++) {
+            rank[sa[j]] = rank[sa[j - 1]] + (text[sa[j]] != text[sa[j - 1]] ? 1 : 0);
+        }
+
+        for (int k = 1; rank[sa[n - 1]] < n - 1; k <<= 1) {
+            // order by the second half, suffixes shorter than k come first
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int j = 0; j < n; j++) {
+                if (sa[j] >= k) {
+                    tmp[p++] = sa[j] - k;
+                }
+            }
+            // then stable sort by the first half
+            int classes = rank[sa[n - 1]] + 1;
+            Arrays.fill(counts, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                counts[rank[i]]++;
+            }
+            for (int c = 1; c < classes; c++) {
+                counts[c] += counts[c - 1];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                sa[--counts[rank[tmp[j]]]] = tmp[j];
+            }
+
+            // compute the new ranks in tmp
+            tmp[sa[0]] = 0;
+            for (int j = 1; j < n; j++) {
+                int prev = sa[j - 1];
+                int cur = sa[j];
+                boolean sameClass = rank[prev] == rank[cur]
+                    && (prev + k < n ? rank[prev + k] : -1) == (cur + k < n ? rank[cur + k] : -1);
+                tmp[cur] = tmp[prev] + (sameClass ? 0 : 1);
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+        }
+        return sa;
+    }
+
+    /**
+     * Builds the LCP array with Kasai's algorithm, in linear time.
+     * The LCP of the first suffix is zero.
+     */
+    static int[] buildLcpArray(int[] text, int[] sa) {
+        int n = sa.length;
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++) {
+            rank[sa[r]] = r;
+        }
+        int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (rank[i] == 0) {
+                h = 0;
+                continue;
+            }
+            int j = sa[rank[i] - 1];
+            while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                h++;
+            }
+            lcp[rank[i]] = h;
+            if (h > 0) {
+                h--;
+            }
+        }
+        return lcp;
+    }
+
+    /**
+     * Sparse table over a range of the LCP array, which answers the
+     * LCP of any two suffixes of the range in constant time.
+     */
+    private static final class RangeMinimum {
+
+        /** {@code table[k][x]} is the minimum of the {@code 2^k} values starting at {@code x}. */
+        private final int[][] table;
+
+        RangeMinimum(int[] lcp, int offset, int size) {
+            int levels = 32 - Integer.numberOfLeadingZeros(size);
+            table = new int[levels][];
+            table[0] = Arrays.copyOfRange(lcp, offset, offset + size);
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                int[] prev = table[k - 1];
+                int[] cur = new int[size - (1 << k) + 1];
+                for (int x = 0; x < cur.length; x++) {
+                    cur[x] = Math.min(prev[x], prev[x + half]);
+                }
+                table[k] = cur;
+            }
+        }
+
+        /** Returns the LCP of the suffixes with the given ranks (relative to the offset). */
+        int lcp(int rank1, int rank2) {
+            int from = Math.min(rank1, rank2) + 1;
+            int to = Math.max(rank1, rank2);
+            int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+            return Math.min(table[k][from], table[k][to - (1 << k) + 1]);
+        }
+    }
+}
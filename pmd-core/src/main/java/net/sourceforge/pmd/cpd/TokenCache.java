@@ -0,0 +1,371 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+
+/**
+ * Persistent cache of the previous run of CPD, so that the files that
+ * did not change are not tokenized again, and only the matches that
+ * changed files may affect are searched again.
+ *
+ * <p>Tokens are keyed by file ID, and are valid as long as the checksum
+ * of the file contents is the same. The whole cache is invalidated when
+ * the PMD version or the checksum of the configuration changes.
+ *
+ * <p>For the {@link MatchAlgorithm}, the cache also stores the hash of
+ * each tile of each file, and the matches of the previous run, with the
+ * hash of their tiles. Tile hashes are computed from the images of the
+ * tokens, so they don't depend on the other files of the run. They are
+ * dropped when the minimum tile size changes.
+ *
+ * <p>The file contains a header, then one record per file, in the order
+ * of the run, with the checksum of the file, its encoded tokens (see
+ * {@link Tokens#writeFileTokens(DataOutputStream)}) and its tile hashes,
+ * then the matches. Tokens are only decoded on a cache hit. The file is
+ * rewritten entirely when persisting, with the files of the current run only.
+ *
+ * <p>This is thread-safe, files may be tokenized concurrently.
+ */
+final class TokenCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenCache.class);
+
+    private static final int MAGIC = 0x43504443; // "CPDC"
+    /** Version of the layout of the file, incremented on incompatible changes. */
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path cacheFile;
+    private final long configurationChecksum;
+    private final int minTileSize;
+    /** Records read from the cache file, by file URI, in the order of the previous run. */
+    private final Map<String, Record> loadedRecords = new LinkedHashMap<>();
+    /** Matches of the previous run, or null if they are unknown. */
+    private @Nullable List<CachedMatch> loadedMatches;
+    /** Records of the files of the current run, by file URI. */
+    private final ConcurrentMap<String, Record> currentRecords = new ConcurrentHashMap<>();
+    /** Files of the current run in order, and their matches, if they were found with the cache. */
+    private @Nullable List<String> currentFiles;
+    private @Nullable List<CachedMatch> currentMatches;
+
+    /**
+     * Creates a new cache stored in the given file, and loads it if it exists.
+     *
+     * @param cacheFile             The file in which to store the cache
+     * @param configurationChecksum Checksum of the options that change the tokens
+     * @param minTileSize           Minimum tile size, the tile hashes depend on it
+     */
+    TokenCache(Path cacheFile, long configurationChecksum, int minTileSize) {
+        this.cacheFile = cacheFile;
+        this.configurationChecksum = configurationChecksum;
+        this.minTileSize = minTileSize;
+        load();
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOG.debug("CPD cache invalidated, unknown file format.");
+                return;
+            }
+            if (!PMDVersion.VERSION.equals(in.readUTF()) || in.readLong() != configurationChecksum) {
+                LOG.debug("CPD cache invalidated, the PMD version or the configuration changed.");
+                return;
+            }
+            // the tile hashes and the matches are only valid for the same tile size
+            boolean sameTileSize = in.readInt() == minTileSize;
+            int count = in.readInt();
+            List<String> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String uri = in.readUTF();
+                long checksum = in.readLong();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                int[] tileHashes = readInts(in);
+                loadedRecords.put(uri, new Record(checksum, data, sameTileSize ? tileHashes : null));
+                files.add(uri);
+            }
+            if (in.readBoolean()) {
+                List<CachedMatch> matches = new ArrayList<>();
+                int matchCount = in.readInt();
+                for (int i = 0; i < matchCount; i++) {
+                    matches.add(CachedMatch.read(in, files));
+                }
+                loadedMatches = sameTileSize ? matches : null;
+            }
+            LOG.debug("CPD cache loaded with the tokens of {} files", count);
+        } catch (NoSuchFileException e) {
+            LOG.debug("CPD cache file {} doesn't exist yet", cacheFile);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            LOG.error("Could not load CPD cache from {}: {}", cacheFile, e.getMessage());
+            loadedRecords.clear();
+            loadedMatches = null;
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] ints = new int[in.readInt()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = in.readInt();
+        }
+        return ints;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+        out.writeInt(ints.length);
+        for (int i : ints) {
+            out.writeInt(i);
+        }
+    }
+
+    /**
+     * Returns the cached tokens of the file, or null if the file is not
+     * cached or has changed.
+     *
+     * @param fileId   ID of the file
+     * @param checksum Checksum of the contents of the file
+     */
+    @Nullable Tokens get(FileId fileId, long checksum) {
+        Record record = loadedRecords.get(fileId.getUriString());
+        if (record == null || record.checksum != checksum) {
+            return null;
+        }
+        try {
+            Tokens tokens = Tokens.readFileTokens(new DataInputStream(new ByteArrayInputStream(record.data)), fileId);
+            currentRecords.put(fileId.getUriString(), record);
+            return tokens;
+        } catch (IOException e) {
+            LOG.debug("Could not read the cached tokens of {}: {}", fileId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the tokens of a file, which were recorded into their own
+     * instance.
+     *
+     * @param fileId   ID of the file
+     * @param checksum Checksum of the contents of the file
+     * @param tokens   Tokens of the file
+     */
+    void put(FileId fileId, long checksum, Tokens tokens) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            tokens.writeFileTokens(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a byte array cannot fail", e);
+        }
+        currentRecords.put(fileId.getUriString(), new Record(checksum, bytes.toByteArray(), null));
+    }
+
+    /**
+     * Returns the tile hashes of a file of the current run, if its tokens
+     * were read from the cache and its tile hashes are known. Otherwise
+     * returns null, and the file must be considered changed.
+     */
+    int @Nullable [] getUnchangedTileHashes(FileId fileId) {
+        Record record = currentRecords.get(fileId.getUriString());
+        return record != null && record == loadedRecords.get(fileId.getUriString()) ? record.tileHashes : null; // NOPMD CompareObjectsWithEquals
+    }
+
+    /**
+     * Sets the tile hashes of a file of the current run.
+     */
+    void putTileHashes(FileId fileId, int[] tileHashes) {
+        Record record = currentRecords.get(fileId.getUriString());
+        if (record != null) {
+            record.tileHashes = tileHashes;
+        }
+    }
+
+    /**
+     * Returns the URIs of the files of the previous run, in the order
+     * they were analysed.
+     */
+    Collection<String> getPreviousFiles() {
+        return loadedRecords.keySet();
+    }
+
+    /**
+     * Returns the tile hashes a file had in the previous run, or null if
+     * they are unknown.
+     */
+    int @Nullable [] getPreviousTileHashes(String uri) {
+        Record record = loadedRecords.get(uri);
+        return record == null ? null : record.tileHashes;
+    }
+
+    /**
+     * Returns the matches of the previous run, or null if they are unknown.
+     * The tile hashes of all the files of the previous run are then known.
+     */
+    @Nullable List<CachedMatch> getPreviousMatches() {
+        return loadedMatches;
+    }
+
+    /**
+     * Sets the matches of the current run, which will be persisted with
+     * the tile hashes of its files.
+     *
+     * @param files   URIs of the files of the current run, in order
+     * @param matches Matches of the current run
+     */
+    void setMatches(List<String> files, List<CachedMatch> matches) {
+        this.currentFiles = files;
+        this.currentMatches = matches;
+    }
+
+    /**
+     * Writes the records of the files of the current run to the cache file.
+     */
+    void persist() {
+        Path tempFile = null;
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            // write to a temp file first, so that the cache is never left half written
+            tempFile = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+            // the matches refer to the files by their position
+            Map<String, Integer> positions = new HashMap<>();
+            List<String> files = new ArrayList<>(currentRecords.size());
+            if (currentFiles != null) {
+                files.addAll(currentFiles);
+            }
+            for (String uri : files) {
+                positions.put(uri, positions.size());
+            }
+            for (String uri : currentRecords.keySet()) {
+                if (!positions.containsKey(uri)) {
+                    files.add(uri);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(PMDVersion.VERSION);
+                out.writeLong(configurationChecksum);
+                out.writeInt(minTileSize);
+                out.writeInt(files.size());
+                for (String uri : files) {
+                    Record record = currentRecords.get(uri);
+                    out.writeUTF(uri);
+                    out.writeLong(record.checksum);
+                    out.writeInt(record.data.length);
+                    out.write(record.data);
+                    writeInts(out, record.tileHashes != null ? record.tileHashes : new int[0]);
+                }
+                out.writeBoolean(currentMatches != null);
+                if (currentMatches != null) {
+                    out.writeInt(currentMatches.size());
+                    for (CachedMatch match : currentMatches) {
+                        match.write(out, positions);
+                    }
+                }
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOG.debug("CPD cache persisted with the tokens of {} files", currentRecords.size());
+        } catch (IOException e) {
+            LOG.error("Could not persist CPD cache to {}: {}", cacheFile, e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    private static final class Record {
+
+        final long checksum;
+        final byte[] data;
+        /** Hash of the tile that starts at each token, or null if unknown. */
+        volatile int @Nullable [] tileHashes;
+
+        Record(long checksum, byte[] data, int @Nullable [] tileHashes) {
+            this.checksum = checksum;
+            this.data = data;
+            this.tileHashes = tileHashes;
+        }
+    }
+
+    /**
+     * A match of a run, whose marks are identified by the URI of their
+     * file and their offset in the file.
+     */
+    static final class CachedMatch {
+
+        final int tokenCount;
+        /** Hash of the tiles of the marks, which all have the same. */
+        final int tileHash;
+        final String[] markFiles;
+        final int[] markOffsets;
+
+        CachedMatch(int tokenCount, int tileHash, String[] markFiles, int[] markOffsets) {
+            this.tokenCount = tokenCount;
+            this.tileHash = tileHash;
+            this.markFiles = markFiles;
+            this.markOffsets = markOffsets;
+        }
+
+        void write(DataOutputStream out, Map<String, Integer> filePositions) throws IOException {
+            out.writeInt(tokenCount);
+            out.writeInt(tileHash);
+            out.writeInt(markFiles.length);
+            for (int i = 0; i < markFiles.length; i++) {
+                out.writeInt(filePositions.get(markFiles[i]));
+                out.writeInt(markOffsets[i]);
+            }
+        }
+
+        static CachedMatch read(DataInputStream in, List<String> files) throws IOException {
+            int tokenCount = in.readInt();
+            int tileHash = in.readInt();
+            int markCount = in.readInt();
+            if (markCount < 2) {
+                throw new IOException("Corrupted file, invalid mark count " + markCount);
+            }
+            String[] markFiles = new String[markCount];
+            int[] markOffsets = new int[markCount];
+            for (int i = 0; i < markCount; i++) {
+                markFiles[i] = files.get(in.readInt());
+                markOffsets[i] = in.readInt();
+            }
+            return new CachedMatch(tokenCount, tileHash, markFiles, markOffsets);
+        }
+    }
+}
@@ -4,7 +4,13 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,11 +26,29 @@ import net.sourceforge.pmd.lang.document.TextDocument;
 /**
  * Global token collector for CPD. This is populated by lexing all files,
  * after which the match algorithm proceeds.
+ *
+ * <p>Tokens are stored in columns of primitive arrays, indexed by the
+ * index of the token, instead of as {@link TokenEntry} objects. Token
+ * entries are created on demand when they are requested, eg to report
+ * a match. This makes a token take 24 bytes of memory.
  */
 public class Tokens {
 
-    // This stores all the token entries recorded during the run.
-    private final List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Columns of the token entries recorded during the run.
+    private int size;
+    private int[] identifiers = new int[INITIAL_CAPACITY];
+    private int[] fileIndices = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] beginColumns = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+
+    // Files of the tokens, referenced by the fileIndices column
+    private final List<FileId> files = new ArrayList<>();
+    private final Map<FileId, Integer> fileIndexById = new HashMap<>();
+
     private final Map<String, Integer> images = new HashMap<>();
     // the first ID is 1, 0 is the ID of the EOF token.
     private int curImageId = 1;
@@ -38,16 +62,48 @@ public class Tokens {
         // constructor is package private
     }
 
-    private void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+    private void ensureCapacity(int capacity) {
+        if (capacity > identifiers.length) {
+            int newCapacity = Math.max(capacity, identifiers.length + (identifiers.length >> 1));
+            identifiers = Arrays.copyOf(identifiers, newCapacity);
+            fileIndices = Arrays.copyOf(fileIndices, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            beginColumns = Arrays.copyOf(beginColumns, newCapacity);
+            endLines = Arrays.copyOf(endLines, newCapacity);
+            endColumns = Arrays.copyOf(endColumns, newCapacity);
+        }
+    }
+
+    private int getFileIndex(FileId fileId) {
+        // tokens of the same file are added in sequence
+        if (!files.isEmpty() && files.get(files.size() - 1).equals(fileId)) {
+            return files.size() - 1;
+        }
+        return fileIndexById.computeIfAbsent(fileId, f -> {
+            files.add(f);
+            return files.size() - 1;
+        });
+    }
+
+    private int add(int imageId, FileId fileId, int beginLine, int beginColumn, int endLine, int endColumn) {
+        assert beginLine >= 1 && beginColumn >= 1 && endLine >= 1 && endColumn >= 1 : "Coordinates are 1-based";
+        ensureCapacity(size + 1);
+        identifiers[size] = imageId;
+        fileIndices[size] = getFileIndex(fileId);
+        beginLines[size] = beginLine;
+        beginColumns[size] = beginColumn;
+        endLines[size] = endLine;
+        endColumns[size] = endColumn;
+        return size++;
     }
 
     private void addEof(FileId filePathId, int line, int column) {
-        add(new TokenEntry(filePathId, line, column));
+        add(TokenEntry.EOF, filePathId, line, column, line, column);
     }
 
     private void setImage(TokenEntry entry, String newImage) {
         int i = getImageId(newImage);
+        identifiers[entry.getIndex()] = i;
         entry.setImageIdentifier(i);
     }
 
@@ -60,33 +116,169 @@ public class Tokens {
     }
 
     private TokenEntry peekLastToken() {
-        return tokens.isEmpty() ? null : getToken(size() - 1);
+        return size == 0 ? null : getToken(size - 1);
     }
 
-    private TokenEntry getToken(int index) {
-        return tokens.get(index);
+    /**
+     * Returns a new token entry for the token at the given index.
+     */
+    TokenEntry getToken(int index) {
+        assert index >= 0 && index < size : "Index out of bounds: " + index;
+        return new TokenEntry(identifiers[index], files.get(fileIndices[index]),
+                              beginLines[index], beginColumns[index],
+                              endLines[index], endColumns[index], index);
+    }
+
+    /** Returns the image id of the token at the given index. */
+    int getIdentifier(int index) {
+        return identifiers[index];
+    }
+
+    /** Returns the ID of the file of the token at the given index. */
+    FileId getFileId(int index) {
+        return files.get(fileIndices[index]);
+    }
+
+    /**
+     * Returns the hash code of the image of each image id. Unlike image
+     * ids, these don't depend on the order in which files were tokenized,
+     * so they are the same in every run.
+     */
+    int[] imageHashes() {
+        int[] hashes = new int[curImageId];
+        for (Entry<String, Integer> image : images.entrySet()) {
+            hashes[image.getValue()] = image.getKey().hashCode();
+        }
+        return hashes;
+    }
+
+    /** Returns true if the token at the given index is an EOF token. */
+    boolean isEof(int index) {
+        return identifiers[index] == TokenEntry.EOF;
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     TokenEntry getEndToken(TokenEntry mark, Match match) {
         return getToken(mark.getIndex() + match.getTokenCount() - 1);
     }
 
+    /**
+     * Returns a view of the tokens. Token entries are created when they
+     * are accessed.
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return new AbstractList<TokenEntry>() {
+            @Override
+            public TokenEntry get(int index) {
+                return getToken(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     TokenEntry addToken(String image, FileId fileName, int startLine, int startCol, int endLine, int endCol) {
-        TokenEntry newToken = new TokenEntry(getImageId(image), fileName, startLine, startCol, endLine, endCol, tokens.size());
-        add(newToken);
-        return newToken;
+        return getToken(add(getImageId(image), fileName, startLine, startCol, endLine, endCol));
     }
 
-    State savePoint() {
-        return new State(this);
+    /**
+     * Appends the tokens of a single file, which were recorded into a
+     * separate instance, eg on another thread. The images of the file are
+     * interned in the order in which they were first seen in the file, so
+     * that image ids are the same as if the file had been tokenized
+     * directly into this instance.
+     *
+     * @param fileTokens Tokens of a single file, which must not be used afterwards
+     */
+    void appendFileTokens(Tokens fileTokens) {
+        String[] imagesById = new String[fileTokens.curImageId];
+        for (Entry<String, Integer> image : fileTokens.images.entrySet()) {
+            imagesById[image.getValue()] = image.getKey();
+        }
+        int[] globalIds = new int[fileTokens.curImageId];
+        for (int id = 1; id < imagesById.length; id++) {
+            globalIds[id] = getImageId(imagesById[id]);
+        }
+        int[] globalFileIndices = new int[fileTokens.files.size()];
+        for (int i = 0; i < globalFileIndices.length; i++) {
+            globalFileIndices[i] = getFileIndex(fileTokens.files.get(i));
+        }
+
+        int count = fileTokens.size;
+        ensureCapacity(size + count);
+        for (int i = 0; i < count; i++) {
+            // EOF is 0 in both instances
+            identifiers[size + i] = globalIds[fileTokens.identifiers[i]];
+            fileIndices[size + i] = globalFileIndices[fileTokens.fileIndices[i]];
+        }
+        System.arraycopy(fileTokens.beginLines, 0, beginLines, size, count);
+        System.arraycopy(fileTokens.beginColumns, 0, beginColumns, size, count);
+        System.arraycopy(fileTokens.endLines, 0, endLines, size, count);
+        System.arraycopy(fileTokens.endColumns, 0, endColumns, size, count);
+        size += count;
+    }
+
+    /**
+     * Writes the tokens of a single file, which were recorded into
+     * a separate instance, so that they can be read back with
+     * {@link #readFileTokens(DataInputStream, FileId)}.
+     */
+    void writeFileTokens(DataOutputStream out) throws IOException {
+        assert files.size() <= 1 : "Not the tokens of a single file";
+        out.writeInt(curImageId);
+        String[] imagesById = new String[curImageId];
+        for (Entry<String, Integer> image : images.entrySet()) {
+            imagesById[image.getValue()] = image.getKey();
+        }
+        for (int id = 1; id < imagesById.length; id++) {
+            // not writeUTF, which is limited to 64KB
+            byte[] bytes = imagesById[id].getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(identifiers[i]);
+            out.writeInt(beginLines[i]);
+            out.writeInt(beginColumns[i]);
+            out.writeInt(endLines[i]);
+            out.writeInt(endColumns[i]);
+        }
+    }
+
+    /**
+     * Reads the tokens of a single file, as written by {@link #writeFileTokens(DataOutputStream)}.
+     *
+     * @param in     Input
+     * @param fileId ID of the file of the tokens
+     */
+    static Tokens readFileTokens(DataInputStream in, FileId fileId) throws IOException {
+        Tokens tokens = new Tokens();
+        tokens.curImageId = in.readInt();
+        for (int id = 1; id < tokens.curImageId; id++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            tokens.images.put(new String(bytes, StandardCharsets.UTF_8), id);
+        }
+        int count = in.readInt();
+        tokens.ensureCapacity(count);
+        int fileIndex = tokens.getFileIndex(fileId);
+        for (int i = 0; i < count; i++) {
+            tokens.identifiers[i] = in.readInt();
+            tokens.fileIndices[i] = fileIndex;
+            tokens.beginLines[i] = in.readInt();
+            tokens.beginColumns[i] = in.readInt();
+            tokens.endLines[i] = in.readInt();
+            tokens.endColumns[i] = in.readInt();
+        }
+        tokens.size = count;
+        return tokens;
     }
 
     /**
@@ -106,7 +298,7 @@ public class Tokens {
 
             @Override
             public void recordToken(@NonNull String image, int startLine, int startCol, int endLine, int endCol) {
-                tokens.addToken(image, fileId, startLine, startCol, endLine, endCol);
+                tokens.add(tokens.getImageId(image), fileId, startLine, startCol, endLine, endCol);
             }
 
             @Override
@@ -129,37 +321,14 @@ public class Tokens {
 
             @Override
             public void close() {
-                TokenEntry tok = peekLastToken();
-                if (tok == null) {
+                if (tokens.size() <= firstToken) {
                     tokens.addEof(fileId, 1, 1);
                 } else {
-                    tokens.addEof(fileId, tok.getEndLine(), tok.getEndColumn());
+                    int last = tokens.size() - 1;
+                    tokens.addEof(fileId, tokens.endLines[last], tokens.endColumns[last]);
                 }
             }
         };
     }
 
-    /**
-     * Helper class to preserve and restore the current state of the token
-     * entries.
-     */
-    static final class State {
-
-        private final int tokenCount;
-        private final int curImageId;
-
-        State(Tokens tokens) {
-            this.tokenCount = tokens.tokens.size();
-            this.curImageId = tokens.curImageId;
-        }
-
-        public void restore(Tokens tokens) {
-            tokens.images.entrySet().removeIf(e -> e.getValue() >= curImageId);
-            tokens.curImageId = this.curImageId;
-
-            final List<TokenEntry> entries = tokens.getTokens();
-            entries.subList(tokenCount, entries.size()).clear();
-        }
-    }
-
 }
@@ -12,6 +12,7 @@ import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.FileSystem;
@@ -30,6 +31,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +53,10 @@ public class ClasspathClassLoader extends URLClassLoader {
     private FileSystem fileSystem;
     private Map<String, Set<String>> packagesDirsToModules;
 
+    /** Index of the URLs, built on the first lookup. Null if not built yet, or if it cannot be built. */
+    private volatile ClasspathIndex index;
+    private volatile boolean indexBuilt;
+
     static {
         registerAsParallelCapable();
 
@@ -190,6 +196,35 @@ public class ClasspathClassLoader extends URLClassLoader {
         }
     }
 
+    /**
+     * Returns the Java home of the runtime image found on the classpath
+     * (through its {@code jrt-fs.jar}), or null if there is none.
+     */
+    public @Nullable String getJavaHome() {
+        return javaHome;
+    }
+
+    /**
+     * Returns a new class loader with the same classpath and parent as
+     * this one, which can be closed independently.
+     *
+     * @throws IOException If an entry of the classpath is not a local file
+     */
+    public ClasspathClassLoader copy() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (URL url : getURLs()) {
+            try {
+                files.add(Paths.get(url.toURI()).toFile());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                throw new IOException("Cannot copy classpath entry " + url, e);
+            }
+        }
+        if (javaHome != null) {
+            files.add(Paths.get(javaHome, "lib", "jrt-fs.jar").toFile());
+        }
+        return new ClasspathClassLoader(files, getParent());
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName()
@@ -201,36 +236,117 @@ public class ClasspathClassLoader extends URLClassLoader {
     @Override
     public InputStream getResourceAsStream(String name) {
         // always first search in jrt-fs, if available
+        InputStream runtimeStream = openFromRuntimeImage(name);
+        if (runtimeStream != null) {
+            return runtimeStream;
+        }
+
+        // search in the other jars of the aux classpath, then in the parent.
+        ClasspathIndex classpathIndex = getIndex();
+        ClassLoader parent = getParent();
+        if (classpathIndex != null && parent != null) {
+            try {
+                OpenedResource resource = classpathIndex.openResource(name);
+                if (resource != null) {
+                    return resource.getStream();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return parent.getResourceAsStream(name);
+        }
+
+        // this will call this.getResource, which will do a child-first search, see below.
+        return super.getResourceAsStream(name);
+    }
+
+    private @Nullable InputStream openFromRuntimeImage(String name) {
         // note: we can't override just getResource(String) and return a jrt:/-URL, because the URL itself
         // won't be connected to the correct JrtFileSystem and would just load using the system classloader.
-        if (fileSystem != null) {
-            int lastSlash = name.lastIndexOf('/');
-            String packageName = name.substring(0, Math.max(lastSlash, 0));
-            Set<String> moduleNames = packagesDirsToModules.get(packageName);
-            if (moduleNames != null) {
-                LOG.trace("Trying to find {} in jrt-fs with packageName={} and modules={}",
-                        name, packageName, moduleNames);
-
-                for (String moduleCandidate : moduleNames) {
-                    Path candidate = fileSystem.getPath("modules", moduleCandidate, name);
-                    if (Files.exists(candidate)) {
-                        LOG.trace("Found {}", candidate);
-                        try {
-                            // Note: The input streams from JrtFileSystem are ByteArrayInputStreams and do not
-                            // need to be closed - we don't need to track these. The filesystem itself needs to be closed at the end.
-                            // See https://github.com/openjdk/jdk/blob/970cd202049f592946f9c1004ea92dbd58abf6fb/src/java.base/share/classes/jdk/internal/jrtfs/JrtFileSystem.java#L334
-                            return Files.newInputStream(candidate);
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
+        if (fileSystem == null) {
+            return null;
+        }
+        int lastSlash = name.lastIndexOf('/');
+        String packageName = name.substring(0, Math.max(lastSlash, 0));
+        Set<String> moduleNames = packagesDirsToModules.get(packageName);
+        if (moduleNames != null) {
+            LOG.trace("Trying to find {} in jrt-fs with packageName={} and modules={}",
+                    name, packageName, moduleNames);
+
+            for (String moduleCandidate : moduleNames) {
+                Path candidate = fileSystem.getPath("modules", moduleCandidate, name);
+                if (Files.exists(candidate)) {
+                    LOG.trace("Found {}", candidate);
+                    try {
+                        // Note: The input streams from JrtFileSystem are ByteArrayInputStreams and do not
+                        // need to be closed - we don't need to track these. The filesystem itself needs to be closed at the end.
+                        // See https://github.com/openjdk/jdk/blob/970cd202049f592946f9c1004ea92dbd58abf6fb/src/java.base/share/classes/jdk/internal/jrtfs/JrtFileSystem.java#L334
+                        return Files.newInputStream(candidate);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
                 }
             }
         }
+        return null;
+    }
 
-        // search in the other jars of the aux classpath.
-        // this will call this.getResource, which will do a child-first search, see below.
-        return super.getResourceAsStream(name);
+    /**
+     * Opens a resource of the given class loader, searched like by
+     * {@link ClassLoader#getResourceAsStream(String)}, and tells which
+     * entry of the classpath it was found in. This is a single lookup,
+     * which uses the index of the {@link ClasspathClassLoader}s.
+     *
+     * @param classLoader Class loader to search
+     * @param name        Resource name, as described in {@link ClassLoader#getResource(String)}
+     *
+     * @return The resource, or null if it is not found
+     *
+     * @throws IOException If the resource cannot be opened
+     */
+    public static @Nullable OpenedResource openResource(ClassLoader classLoader, String name) throws IOException {
+        if (classLoader instanceof ClasspathClassLoader) {
+            ClasspathClassLoader loader = (ClasspathClassLoader) classLoader;
+            InputStream runtimeStream = loader.openFromRuntimeImage(name);
+            if (runtimeStream != null) {
+                return new OpenedResource(runtimeStream, null);
+            }
+            ClasspathIndex classpathIndex = loader.getIndex();
+            ClassLoader parent = loader.getParent();
+            if (classpathIndex != null && parent != null) {
+                OpenedResource resource = classpathIndex.openResource(name);
+                return resource != null ? resource : openResource(parent, name);
+            }
+        }
+        URL url = classLoader.getResource(name);
+        return url == null ? null : new OpenedResource(url.openStream(), entryOf(url, name));
+    }
+
+    /**
+     * Returns the URL of the jar or directory of the given resource URL,
+     * or null if it is not in a jar or a directory, eg in a runtime image.
+     */
+    private static @Nullable String entryOf(URL url, String name) {
+        String location = url.toString();
+        if ("jar".equals(url.getProtocol())) {
+            int jarSeparator = location.indexOf("!/");
+            return jarSeparator < 0 ? null : location.substring("jar:".length(), jarSeparator);
+        } else if ("file".equals(url.getProtocol()) && location.endsWith(name)) {
+            return location.substring(0, location.length() - name.length());
+        }
+        return null;
+    }
+
+    private ClasspathIndex getIndex() {
+        if (!indexBuilt) {
+            synchronized (this) {
+                if (!indexBuilt) {
+                    index = ClasspathIndex.build(getURLs());
+                    indexBuilt = true;
+                }
+            }
+        }
+        return index;
     }
 
     @Override
@@ -256,6 +372,24 @@ public class ClasspathClassLoader extends URLClassLoader {
 
     @Override
     public void close() throws IOException {
+        ClasspathIndex closedIndex;
+        synchronized (this) {
+            closedIndex = index;
+            index = null;
+            // don't build it again
+            indexBuilt = true;
+        }
+        try {
+            // the jars of the index are opened by us, not by URLClassLoader
+            if (closedIndex != null) {
+                closedIndex.close();
+            }
+        } finally {
+            closeRuntimeImageAndUrls();
+        }
+    }
+
+    private void closeRuntimeImageAndUrls() throws IOException {
         if (fileSystem != null) {
             fileSystem.close();
             // jrt created an own classloader to load the JrtFileSystemProvider class out of the
@@ -269,4 +403,32 @@ public class ClasspathClassLoader extends URLClassLoader {
         }
         super.close();
     }
+
+    /**
+     * A resource opened by {@link #openResource(ClassLoader, String)}.
+     */
+    public static final class OpenedResource {
+
+        private final InputStream stream;
+        private final @Nullable String entry;
+
+        OpenedResource(InputStream stream, @Nullable String entry) {
+            this.stream = stream;
+            this.entry = entry;
+        }
+
+        /** Returns the contents of the resource, to be closed by the caller. */
+        public InputStream getStream() {
+            return stream;
+        }
+
+        /**
+         * Returns the URL of the entry of the classpath in which the
+         * resource was found, as given on the classpath, or null if it
+         * was not found in an entry, eg in the Java runtime image.
+         */
+        public @Nullable String getEntry() {
+            return entry;
+        }
+    }
 }
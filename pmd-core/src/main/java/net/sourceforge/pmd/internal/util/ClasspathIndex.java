@@ -0,0 +1,352 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader.OpenedResource;
+
+/**
+ * Index of the entries of a classpath by package, used by the
+ * {@link ClasspathClassLoader} to find resources. Each jar is opened once,
+ * and the packages it contains are read from its central directory. Looking
+ * up a resource then only probes the jars that contain its package, in
+ * classpath order, instead of every jar of the classpath. A resource whose
+ * package is in no jar is not looked up in the jars at all.
+ *
+ * <p>Directories are not indexed, as their contents may change. They
+ * are probed for every resource, in their classpath order.
+ *
+ * <p>Like for {@link java.net.URLClassLoader}, the jars listed in the
+ * {@code Class-Path} attribute of the manifest of a jar are searched right
+ * after it, and the versioned entries of multi-release jars replace their
+ * base entry, up to the version of the running JVM.
+ *
+ * <p>This is thread-safe.
+ */
+final class ClasspathIndex implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final String VERSIONS_DIR = "META-INF/versions/";
+    private static final Attributes.Name MULTI_RELEASE = new Attributes.Name("Multi-Release");
+    /** Feature version of the running JVM, which selects the versioned entries of multi-release jars. */
+    private static final int RUNTIME_VERSION = runtimeVersion();
+
+    /** Entries that may contain a package, in classpath order. */
+    private final Map<String, List<Entry>> entriesByPackage = new HashMap<>();
+    /** Entries that may contain any package. */
+    private final List<Entry> directories = new ArrayList<>();
+    private final List<ZipFile> jars = new ArrayList<>();
+
+    private ClasspathIndex() {
+        // use build
+    }
+
+    /**
+     * Indexes the given classpath. Returns null if an entry of the
+     * classpath is not a local file, which cannot be indexed.
+     */
+    static @Nullable ClasspathIndex build(URL[] classpath) {
+        Deque<URL> pending = new ArrayDeque<>(classpath.length);
+        for (URL url : classpath) {
+            if (toPath(url) == null) {
+                return null;
+            }
+            pending.add(url);
+        }
+
+        ClasspathIndex index = new ClasspathIndex();
+        Map<String, List<Entry>> jarsByPackage = new HashMap<>();
+        Set<Path> visited = new HashSet<>();
+        int position = 0;
+        while (!pending.isEmpty()) {
+            URL url = pending.pop();
+            Path path = toPath(url);
+            if (!visited.add(path.toAbsolutePath().normalize())) {
+                continue;
+            }
+            if (Files.isDirectory(path)) {
+                index.directories.add(new DirectoryEntry(position++, url.toString(), path));
+            } else if (Files.isRegularFile(path)) {
+                List<URL> manifestClasspath = index.indexJar(position++, url.toString(), path, jarsByPackage);
+                if (manifestClasspath == null) {
+                    IOUtil.closeQuietly(index);
+                    return null;
+                }
+                // they are searched right after this jar, and before the next entries
+                for (int i = manifestClasspath.size() - 1; i >= 0; i--) {
+                    pending.push(manifestClasspath.get(i));
+                }
+            }
+            // entries that don't exist are ignored, like by URLClassLoader
+        }
+
+        for (Map.Entry<String, List<Entry>> pkg : jarsByPackage.entrySet()) {
+            List<Entry> entries = pkg.getValue();
+            if (!index.directories.isEmpty()) {
+                entries.addAll(index.directories);
+                entries.sort((a, b) -> Integer.compare(a.position, b.position));
+            }
+            index.entriesByPackage.put(pkg.getKey(), Collections.unmodifiableList(entries));
+        }
+        LOG.debug("Indexed {} packages in {} jars and {} directories",
+                  index.entriesByPackage.size(), index.jars.size(), index.directories.size());
+        return index;
+    }
+
+    private static @Nullable Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indexes the packages of the jar, and returns the jars of the
+     * {@code Class-Path} attribute of its manifest. Returns null if
+     * one of those is not a local file.
+     */
+    private @Nullable List<URL> indexJar(int position, String location, Path path, Map<String, List<Entry>> jarsByPackage) {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(path.toFile());
+        } catch (IOException e) {
+            LOG.debug("Ignoring classpath entry {}, it is not a valid jar: {}", path, e.getMessage());
+            return Collections.emptyList();
+        }
+        jars.add(zip);
+
+        Manifest manifest = readManifest(zip, path);
+        boolean multiRelease = manifest != null
+            && RUNTIME_VERSION >= 9
+            && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(MULTI_RELEASE));
+        Map<String, Integer> versions = new HashMap<>();
+        Map<String, String> versionedNames = new HashMap<>();
+        Entry entry = new JarEntry(position, location, zip, versionedNames);
+        String lastPackage = null;
+        Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry zipEntry = zipEntries.nextElement();
+            if (zipEntry.isDirectory()) {
+                continue;
+            }
+            String name = zipEntry.getName();
+            if (multiRelease && name.startsWith(VERSIONS_DIR)) {
+                name = addVersionedEntry(name, versions, versionedNames);
+                if (name == null) {
+                    continue;
+                }
+            }
+            String pkg = packageOf(name);
+            // entries of the same package are usually consecutive
+            if (!pkg.equals(lastPackage)) {
+                List<Entry> entries = jarsByPackage.computeIfAbsent(pkg, k -> new ArrayList<>(1));
+                if (entries.isEmpty() || entries.get(entries.size() - 1) != entry) { // NOPMD CompareObjectsWithEquals
+                    entries.add(entry);
+                }
+                lastPackage = pkg;
+            }
+        }
+        return manifest == null ? Collections.emptyList() : manifestClasspath(manifest, path);
+    }
+
+    private static @Nullable Manifest readManifest(ZipFile zip, Path path) {
+        ZipEntry manifestEntry = zip.getEntry(JarFile.MANIFEST_NAME);
+        if (manifestEntry == null) {
+            return null;
+        }
+        try (InputStream in = zip.getInputStream(manifestEntry)) {
+            return new Manifest(in);
+        } catch (IOException e) {
+            LOG.debug("Ignoring the manifest of {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the versioned entry of a multi-release jar if it is the
+     * highest version that is not above the version of the JVM. Returns
+     * the name of the base entry it replaces, or null if it is ignored.
+     */
+    private static @Nullable String addVersionedEntry(String name, Map<String, Integer> versions, Map<String, String> versionedNames) {
+        int versionEnd = name.indexOf('/', VERSIONS_DIR.length());
+        if (versionEnd < 0) {
+            return null;
+        }
+        int version;
+        try {
+            version = Integer.parseInt(name.substring(VERSIONS_DIR.length(), versionEnd));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String baseName = name.substring(versionEnd + 1);
+        if (version < 9 || version > RUNTIME_VERSION || baseName.isEmpty()) {
+            return null;
+        }
+        Integer previous = versions.get(baseName);
+        if (previous == null || previous < version) {
+            versions.put(baseName, version);
+            versionedNames.put(baseName, name);
+        }
+        return baseName;
+    }
+
+    private static @Nullable List<URL> manifestClasspath(Manifest manifest, Path jar) {
+        String classpath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classpath == null) {
+            return Collections.emptyList();
+        }
+        List<URL> urls = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(classpath);
+        while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken();
+            try {
+                // the entries are URLs, relative to the jar
+                URL url = new URL(jar.toUri().toURL(), token);
+                if (toPath(url) == null) {
+                    return null;
+                }
+                urls.add(url);
+            } catch (MalformedURLException e) {
+                LOG.debug("Ignoring Class-Path entry {} of {}", token, jar);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Opens the given resource, or returns null if it is not on the
+     * classpath. The entries are searched in classpath order.
+     *
+     * @param name Resource name, as described in {@link ClassLoader#getResource(String)}
+     */
+    @Nullable OpenedResource openResource(String name) throws IOException {
+        List<Entry> entries = entriesByPackage.getOrDefault(packageOf(name), directories);
+        for (Entry entry : entries) {
+            InputStream stream = entry.open(name);
+            if (stream != null) {
+                return new OpenedResource(stream, entry.location);
+            }
+        }
+        return null;
+    }
+
+    private static int runtimeVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        try {
+            // "1.8", then "9", "10"...
+            return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    private static String packageOf(String resourceName) {
+        int lastSlash = resourceName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : resourceName.substring(0, lastSlash);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (ZipFile jar : jars) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private abstract static class Entry {
+
+        /** Position on the classpath. */
+        final int position;
+        /** URL of the entry, as given on the classpath. */
+        final String location;
+
+        Entry(int position, String location) {
+            this.position = position;
+            this.location = location;
+        }
+
+        abstract @Nullable InputStream open(String name) throws IOException;
+    }
+
+    private static final class JarEntry extends Entry {
+
+        private final ZipFile zip;
+        /** Names of the versioned entries of a multi-release jar, by the name of their base entry. */
+        private final Map<String, String> versionedNames;
+
+        JarEntry(int position, String location, ZipFile zip, Map<String, String> versionedNames) {
+            super(position, location);
+            this.zip = zip;
+            this.versionedNames = versionedNames;
+        }
+
+        @Override
+        @Nullable InputStream open(String name) throws IOException {
+            ZipEntry entry = zip.getEntry(versionedNames.getOrDefault(name, name));
+            return entry == null || entry.isDirectory() ? null : zip.getInputStream(entry);
+        }
+    }
+
+    private static final class DirectoryEntry extends Entry {
+
+        private final Path directory;
+
+        DirectoryEntry(int position, String location, Path directory) {
+            super(position, location);
+            this.directory = directory;
+        }
+
+        @Override
+        @Nullable InputStream open(String name) throws IOException {
+            Path file = directory.resolve(name);
+            return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+        }
+    }
+}
@@ -369,6 +369,46 @@ public final class IOUtil {
         return new ReaderInputStream(reader);
     }
 
+    /**
+     * Returns an input stream that reads the remaining bytes of the
+     * given buffer. The position of the buffer is advanced as the
+     * stream is read, use {@link ByteBuffer#duplicate()} to avoid that.
+     */
+    public static InputStream fromByteBuffer(ByteBuffer buffer) {
+        class ByteBufferInputStream extends InputStream {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : EOF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                } else if (!buffer.hasRemaining()) {
+                    return EOF;
+                }
+                int count = Math.min(len, buffer.remaining());
+                buffer.get(b, off, count);
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+                buffer.position(buffer.position() + count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        }
+
+        return new ByteBufferInputStream();
+    }
+
     public static OutputStream fromWriter(Writer writer, String encoding) throws UnsupportedCharsetException {
         class WriterOutputStream extends OutputStream {
             private final Writer writer;
@@ -6,9 +6,12 @@ package net.sourceforge.pmd.lang;
 
 import java.util.List;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -35,7 +38,32 @@ public final class InternalApiBridge {
                                                                     AnalysisCache analysisCache,
                                                                     PmdReporter messageReporter,
                                                                     LanguageProcessorRegistry lpRegistry) {
-        return new LanguageProcessor.AnalysisTask(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry);
+        return createAnalysisTask(rulesets, files, listener, threadCount, false, false, analysisCache, messageReporter, lpRegistry);
+    }
+
+    public static LanguageProcessor.AnalysisTask createAnalysisTask(RuleSets rulesets,
+                                                                    List<TextFile> files,
+                                                                    GlobalAnalysisListener listener,
+                                                                    int threadCount,
+                                                                    boolean largestFilesFirst,
+                                                                    boolean useVirtualThreads,
+                                                                    AnalysisCache analysisCache,
+                                                                    PmdReporter messageReporter,
+                                                                    LanguageProcessorRegistry lpRegistry) {
+        return createAnalysisTask(rulesets, files, listener, threadCount, largestFilesFirst, useVirtualThreads, analysisCache, messageReporter, lpRegistry, null);
+    }
+
+    public static LanguageProcessor.AnalysisTask createAnalysisTask(RuleSets rulesets,
+                                                                    List<TextFile> files,
+                                                                    GlobalAnalysisListener listener,
+                                                                    int threadCount,
+                                                                    boolean largestFilesFirst,
+                                                                    boolean useVirtualThreads,
+                                                                    AnalysisCache analysisCache,
+                                                                    PmdReporter messageReporter,
+                                                                    LanguageProcessorRegistry lpRegistry,
+                                                                    @Nullable AnalysisScheduler scheduler) {
+        return new LanguageProcessor.AnalysisTask(rulesets, files, listener, threadCount, largestFilesFirst, useVirtualThreads, analysisCache, messageReporter, lpRegistry, scheduler);
     }
 
     public static LanguageProcessor.AnalysisTask taskWithFiles(LanguageProcessor.AnalysisTask originalTask, List<TextFile> newFiles) {
@@ -8,9 +8,11 @@ import java.util.Collections;
 import java.util.List;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -63,9 +65,12 @@ public interface LanguageProcessor extends AutoCloseable {
         private final List<TextFile> files;
         private final GlobalAnalysisListener listener;
         private final int threadCount;
+        private final boolean largestFilesFirst;
+        private final boolean useVirtualThreads;
         private final AnalysisCache analysisCache;
         private final PmdReporter messageReporter;
         private final LanguageProcessorRegistry lpRegistry;
+        private final @Nullable AnalysisScheduler scheduler;
 
 
         /**
@@ -75,19 +80,25 @@ public interface LanguageProcessor extends AutoCloseable {
          * @apiNote Internal API
          */
         AnalysisTask(RuleSets rulesets,
-                            List<TextFile> files,
-                            GlobalAnalysisListener listener,
-                            int threadCount,
-                            AnalysisCache analysisCache,
-                            PmdReporter messageReporter,
-                            LanguageProcessorRegistry lpRegistry) {
+                     List<TextFile> files,
+                     GlobalAnalysisListener listener,
+                     int threadCount,
+                     boolean largestFilesFirst,
+                     boolean useVirtualThreads,
+                     AnalysisCache analysisCache,
+                     PmdReporter messageReporter,
+                     LanguageProcessorRegistry lpRegistry,
+                     @Nullable AnalysisScheduler scheduler) {
             this.rulesets = rulesets;
             this.files = files;
             this.listener = listener;
             this.threadCount = threadCount;
+            this.largestFilesFirst = largestFilesFirst;
+            this.useVirtualThreads = useVirtualThreads;
             this.analysisCache = analysisCache;
             this.messageReporter = messageReporter;
             this.lpRegistry = lpRegistry;
+            this.scheduler = scheduler;
         }
 
         public RuleSets getRulesets() {
@@ -106,6 +117,22 @@ public interface LanguageProcessor extends AutoCloseable {
             return threadCount;
         }
 
+        /**
+         * Whether files should be scheduled largest-first when processing
+         * them in parallel. See {@link TextFile#getSizeHint()}.
+         */
+        public boolean isLargestFilesFirst() {
+            return largestFilesFirst;
+        }
+
+        /**
+         * Whether file contents should be read on virtual threads
+         * when processing them in parallel.
+         */
+        public boolean isUseVirtualThreads() {
+            return useVirtualThreads;
+        }
+
         public AnalysisCache getAnalysisCache() {
             return analysisCache;
         }
@@ -118,6 +145,18 @@ public interface LanguageProcessor extends AutoCloseable {
             return lpRegistry;
         }
 
+        /**
+         * Returns the scheduler shared by all language processors of the
+         * analysis, on which files should be processed when processing
+         * them in parallel. This is null if the processors should manage
+         * their own threads.
+         *
+         * @apiNote Internal API
+         */
+        public @Nullable AnalysisScheduler getScheduler() {
+            return scheduler;
+        }
+
         /**
          * Produce a new analysis task with just different files.
          *
@@ -129,9 +168,12 @@ public interface LanguageProcessor extends AutoCloseable {
                 newFiles,
                 listener,
                 threadCount,
+                largestFilesFirst,
+                useVirtualThreads,
                 analysisCache,
                 messageReporter,
-                lpRegistry
+                lpRegistry,
+                scheduler
             );
         }
     }
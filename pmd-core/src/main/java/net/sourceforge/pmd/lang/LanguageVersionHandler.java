@@ -75,4 +75,20 @@ public interface LanguageVersionHandler {
         return DefaultDesignerBindings.getInstance();
     }
 
+
+    /**
+     * Returns true if rules may be applied concurrently on an AST of
+     * this language version, which is the case for the largest files
+     * if {@link net.sourceforge.pmd.PMDConfiguration#setParallelRulesThreshold(int)}
+     * is set. The nodes of the AST must then be safe to read from several
+     * threads: they must not compute and store anything lazily, except
+     * in their {@linkplain net.sourceforge.pmd.lang.ast.Node#getUserMap() user data}.
+     * Defaults to false.
+     *
+     * @since 7.1.0
+     */
+    default boolean supportsConcurrentRuleApplication() {
+        return false;
+    }
+
 }
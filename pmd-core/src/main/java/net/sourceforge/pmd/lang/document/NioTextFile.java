@@ -10,6 +10,9 @@ import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -23,6 +26,12 @@ import net.sourceforge.pmd.util.AssertionUtil;
  */
 class NioTextFile extends BaseCloseable implements TextFile {
 
+    /**
+     * Files modified more recently than this have no {@linkplain #getStatFingerprint() stat fingerprint}.
+     * This is larger than the modification time resolution of common file systems (2s for FAT).
+     */
+    private static final long RECENT_MODIFICATION_DELAY_MILLIS = 3000;
+
     private final Path path;
     private final Charset charset;
     private final LanguageVersion languageVersion;
@@ -89,6 +98,44 @@ class NioTextFile extends BaseCloseable implements TextFile {
         return TextFileContent.fromInputStream(Files.newInputStream(path), charset);
     }
 
+    @Override
+    public long getSizeHint() {
+        try {
+            return Files.size(path);
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public long getStatFingerprint() {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException | SecurityException e) {
+            return UNKNOWN_STAT_FINGERPRINT;
+        }
+        if (!attributes.isRegularFile()) {
+            return UNKNOWN_STAT_FINGERPRINT;
+        }
+        long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+        if (System.currentTimeMillis() - lastModifiedMillis < RECENT_MODIFICATION_DELAY_MILLIS) {
+            // The file may be modified again without its modification time
+            // changing, if the file system has a coarse time resolution.
+            return UNKNOWN_STAT_FINGERPRINT;
+        }
+
+        // 64-bit FNV-1a over the fields
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ attributes.size()) * 0x100000001b3L;
+        hash = (hash ^ attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)) * 0x100000001b3L;
+        // the file key is the device and inode on unix, null on windows
+        hash = (hash ^ Objects.hashCode(attributes.fileKey())) * 0x100000001b3L;
+        // the contents of the document depend on the charset
+        hash = (hash ^ charset.name().hashCode()) * 0x100000001b3L;
+        return hash == UNKNOWN_STAT_FINGERPRINT ? 1 : hash;
+    }
+
 
     @Override
     protected void doClose() throws IOException {
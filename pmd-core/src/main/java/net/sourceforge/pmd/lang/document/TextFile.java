@@ -30,6 +30,13 @@ import net.sourceforge.pmd.lang.document.TextFileBuilder.ForReader;
  */
 public interface TextFile extends Closeable {
 
+    /**
+     * Value of {@link #getStatFingerprint()} when no fingerprint is available.
+     *
+     * @since 7.1.0
+     */
+    long UNKNOWN_STAT_FINGERPRINT = 0;
+
 
     /**
      * Returns the language version which should be used to process this
@@ -91,6 +98,34 @@ public interface TextFile extends Closeable {
     TextFileContent readContents() throws IOException;
 
 
+    /**
+     * Returns an estimate of the size of this file in bytes, or -1 if
+     * it cannot be determined without reading the file. This is only
+     * a hint, used eg to schedule the analysis of large files first.
+     *
+     * @since 7.1.0
+     */
+    default long getSizeHint() {
+        return -1;
+    }
+
+
+    /**
+     * Returns a fingerprint of the metadata of this file (eg its size,
+     * last modification time, and inode), which can be computed without
+     * reading the file. If the fingerprint did not change, the contents
+     * of the file are assumed to be unchanged. This is used by the
+     * analysis cache to skip reading files that were not modified.
+     * Returns {@link #UNKNOWN_STAT_FINGERPRINT} if no reliable fingerprint
+     * is available, which is the default.
+     *
+     * @since 7.1.0
+     */
+    default long getStatFingerprint() {
+        return UNKNOWN_STAT_FINGERPRINT;
+    }
+
+
     /**
      * Release resources associated with this text file. Is a noop if
      * it is called several times.
@@ -0,0 +1,296 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.Language;
+
+/**
+ * Runs the files of all the language processors of an analysis on a
+ * single pool of threads. The number of threads that process files is
+ * the configured thread count, whatever the number of languages.
+ *
+ * <p>Each language processor submits its files as a {@link Batch}.
+ * Threads take the next file of each pending batch in turn, so that all
+ * languages make progress at the same pace, instead of the last language
+ * waiting for the others to finish.
+ *
+ * <p>The rules of a very large file may also be split into groups,
+ * which are applied by the threads that have no other file to start
+ * (see {@link #invokeAll(int, IntConsumer)}).
+ *
+ * <p>The number of files processed per language, and the time spent
+ * on them, are available with {@link #getLanguageStatistics()}.
+ *
+ * @apiNote Internal API
+ */
+@InternalApi
+public final class AnalysisScheduler implements AutoCloseable {
+
+    private final int threadCount;
+    private final int parallelRulesThreshold;
+    private final ExecutorService executor;
+    private final Map<Language, LanguageStatistics> statistics = new ConcurrentHashMap<>();
+
+    // guarded by this
+    /** Batches that still have files to start, in the order in which they are served. */
+    private final Deque<Batch> pendingBatches = new ArrayDeque<>();
+    private int activeWorkers;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param threadCount Maximum number of files processed concurrently, must be positive
+     */
+    public AnalysisScheduler(int threadCount) {
+        this(threadCount, 0);
+    }
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param threadCount            Maximum number of files processed concurrently, must be positive
+     * @param parallelRulesThreshold Number of lines from which the rules of a file
+     *                               are applied by several threads, zero to disable
+     */
+    public AnalysisScheduler(int threadCount, int parallelRulesThreshold) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count should be positive, got " + threadCount);
+        }
+        this.threadCount = threadCount;
+        this.parallelRulesThreshold = parallelRulesThreshold;
+        this.executor = Executors.newFixedThreadPool(threadCount, new PmdThreadFactory());
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the number of lines from which the rules of a file are
+     * applied by several threads, or zero if they never are.
+     */
+    public int getParallelRulesThreshold() {
+        return parallelRulesThreshold;
+    }
+
+    /**
+     * Submits a batch of files. This is non-blocking, use {@link Batch#await()}
+     * to wait for the files to be processed.
+     *
+     * @param language      Language of the files
+     * @param fileCount     Number of files
+     * @param fileProcessor Processes the file at the given index of the batch
+     *
+     * @return The batch
+     */
+    Batch submit(Language language, int fileCount, IntConsumer fileProcessor) {
+        return submit(getStatistics(language), fileCount, fileProcessor);
+    }
+
+    private Batch submit(@Nullable LanguageStatistics statistics, int fileCount, IntConsumer fileProcessor) {
+        Batch batch = new Batch(statistics, fileCount, fileProcessor);
+        if (fileCount == 0) {
+            return batch;
+        }
+        synchronized (this) {
+            pendingBatches.addLast(batch);
+            int newWorkers = Math.min(threadCount - activeWorkers, fileCount);
+            for (int i = 0; i < newWorkers; i++) {
+                activeWorkers++;
+                executor.execute(this::processPendingFiles);
+            }
+        }
+        return batch;
+    }
+
+    private void processPendingFiles() {
+        // timed once for all the files this thread takes, the time of each file
+        // is charged to the operations nested in it
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.WORKER_THREAD, Thread.currentThread().getName())) {
+            while (true) {
+                Batch batch;
+                int index;
+                synchronized (this) {
+                    batch = pendingBatches.pollFirst();
+                    if (batch == null) {
+                        activeWorkers--;
+                        return;
+                    }
+                    index = batch.nextFile++;
+                    if (batch.nextFile < batch.fileCount) {
+                        // serve the other batches first
+                        pendingBatches.addLast(batch);
+                    }
+                }
+                batch.process(index);
+            }
+        }
+    }
+
+    /**
+     * Runs the given tasks on the threads that are idle, and on the calling
+     * thread, and returns when they are all done. The calling thread only
+     * runs tasks of this call, while waiting for the others, so this may
+     * be called while processing a file without risk of deadlock. The tasks
+     * are not counted in the statistics.
+     *
+     * @param taskCount Number of tasks
+     * @param task      Runs the task at the given index
+     *
+     * @throws InterruptedException If interrupted while waiting for the other threads
+     * @throws RuntimeException     The first exception thrown by a task, the others are suppressed into it
+     */
+    void invokeAll(int taskCount, IntConsumer task) throws InterruptedException {
+        Batch batch = submit((LanguageStatistics) null, taskCount, task);
+        while (true) {
+            int index;
+            synchronized (this) {
+                if (batch.nextFile >= batch.fileCount) {
+                    break;
+                }
+                index = batch.nextFile++;
+                if (batch.nextFile >= batch.fileCount) {
+                    pendingBatches.remove(batch);
+                }
+            }
+            batch.process(index);
+        }
+        Throwable failure = batch.await();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private LanguageStatistics getStatistics(Language language) {
+        return statistics.computeIfAbsent(language, l -> new LanguageStatistics());
+    }
+
+    /**
+     * Returns the statistics of each language whose files were submitted.
+     */
+    public Map<Language, LanguageStatistics> getLanguageStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Waits for the threads to terminate. All the batches should have
+     * been awaited before.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
+                // still waiting
+                Thread.yield();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Files submitted together by a language processor.
+     */
+    static final class Batch {
+
+        /** Null for the tasks of {@link #invokeAll(int, IntConsumer)}. */
+        private final @Nullable LanguageStatistics statistics;
+        private final int fileCount;
+        private final IntConsumer fileProcessor;
+        private final CountDownLatch remainingFiles;
+        /** The first exception thrown by the file processor, the others are suppressed into it. */
+        private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        // guarded by the scheduler
+        private int nextFile;
+
+        Batch(@Nullable LanguageStatistics statistics, int fileCount, IntConsumer fileProcessor) {
+            this.statistics = statistics;
+            this.fileCount = fileCount;
+            this.fileProcessor = fileProcessor;
+            this.remainingFiles = new CountDownLatch(fileCount);
+        }
+
+        private void process(int index) {
+            long start = System.nanoTime();
+            try {
+                fileProcessor.accept(index);
+            } catch (RuntimeException | Error e) {
+                // keep going with the other files, the failure is reported when awaiting
+                if (!firstFailure.compareAndSet(null, e)) {
+                    firstFailure.get().addSuppressed(e);
+                }
+            } finally {
+                if (statistics != null) {
+                    statistics.record(System.nanoTime() - start);
+                }
+                remainingFiles.countDown();
+            }
+        }
+
+        /**
+         * Waits until all the files of the batch have been processed.
+         *
+         * @return The first exception thrown while processing a file, or null
+         */
+        Throwable await() throws InterruptedException {
+            remainingFiles.await();
+            return firstFailure.get();
+        }
+    }
+
+    /**
+     * Throughput counters of the files of a language.
+     */
+    public static final class LanguageStatistics {
+
+        private final LongAdder fileCount = new LongAdder();
+        private final LongAdder processingNanos = new LongAdder();
+
+        private void record(long nanos) {
+            fileCount.increment();
+            processingNanos.add(nanos);
+        }
+
+        /** Returns the number of files that were processed. */
+        public long getFileCount() {
+            return fileCount.sum();
+        }
+
+        /** Returns the sum of the time spent by all threads processing these files. */
+        public long getProcessingTime(TimeUnit unit) {
+            return unit.convert(processingNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        /** Returns the number of files processed per second of thread time. */
+        public double getFilesPerSecond() {
+            long nanos = processingNanos.sum();
+            return nanos == 0 ? 0 : getFileCount() * 1e9 / nanos;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextFileContent;
+
+/**
+ * Reads the contents of files on virtual threads, a few files ahead
+ * of the analysis threads. Reading files is mostly blocking IO, while
+ * parsing and rule application are CPU-bound. This overlaps both, without
+ * having more analysis threads than cores.
+ *
+ * <p>Files that the analysis will skip without reading them, eg because
+ * the analysis cache knows they are unchanged, are not read ahead.
+ *
+ * <p>Virtual threads are only available from Java 21 on, see {@link #create(List, int, Predicate)}.
+ */
+final class FilePrefetcher implements AutoCloseable {
+
+    private final ExecutorService ioExecutor;
+    private final List<TextFile> files;
+    private final int readAhead;
+    private final Predicate<? super TextFile> needsContents;
+    private final AtomicReferenceArray<Future<TextFileContent>> contents;
+    private int nextToSubmit; // guarded by this
+
+    FilePrefetcher(ExecutorService ioExecutor, List<TextFile> files, int readAhead, Predicate<? super TextFile> needsContents) {
+        this.ioExecutor = ioExecutor;
+        this.files = files;
+        this.readAhead = readAhead;
+        this.needsContents = needsContents;
+        this.contents = new AtomicReferenceArray<>(files.size());
+    }
+
+    /**
+     * Creates a prefetcher for the given files, which will be taken in
+     * order by index. Returns null if virtual threads are not supported
+     * by the running JVM.
+     *
+     * @param files         Files to read
+     * @param readAhead     Max number of files that are read before being taken
+     * @param needsContents Tests whether the analysis will read a file. This is
+     *                      called on the virtual threads, and must not have side effects.
+     */
+    static @Nullable FilePrefetcher create(List<TextFile> files, int readAhead, Predicate<? super TextFile> needsContents) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        return executor == null ? null : new FilePrefetcher(executor, files, readAhead, needsContents);
+    }
+
+    private static @Nullable ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Java 21+, PMD is compiled for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a text file whose contents are those of the i-th file, read
+     * on a virtual thread if the analysis needs them. Each index must be
+     * taken at most once. This also starts reading the next few files.
+     */
+    TextFile take(int i) {
+        submitUpTo(i + readAhead + 1);
+        Future<TextFileContent> content = contents.getAndSet(i, null);
+        assert content != null : "File " + i + " was already taken";
+        return new PrefetchedTextFile(files.get(i), content);
+    }
+
+    private synchronized void submitUpTo(int end) {
+        int max = Math.min(end, files.size());
+        while (nextToSubmit < max) {
+            TextFile file = files.get(nextToSubmit);
+            contents.set(nextToSubmit, ioExecutor.submit(() -> needsContents.test(file) ? file.readContents() : null));
+            nextToSubmit++;
+        }
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * A text file whose contents were read ahead. Only the first read
+     * uses the prefetched contents, other operations are delegated
+     * to the original file.
+     */
+    private static final class PrefetchedTextFile implements TextFile {
+
+        private final TextFile delegate;
+        private Future<TextFileContent> prefetched;
+
+        PrefetchedTextFile(TextFile delegate, Future<TextFileContent> prefetched) {
+            this.delegate = delegate;
+            this.prefetched = prefetched;
+        }
+
+        @Override
+        public @NonNull LanguageVersion getLanguageVersion() {
+            return delegate.getLanguageVersion();
+        }
+
+        @Override
+        public FileId getFileId() {
+            return delegate.getFileId();
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return delegate.isReadOnly();
+        }
+
+        @Override
+        public void writeContents(TextFileContent content) throws IOException {
+            delegate.writeContents(content);
+        }
+
+        @Override
+        public TextFileContent readContents() throws IOException {
+            Future<TextFileContent> content = prefetched;
+            if (content == null) {
+                return delegate.readContents();
+            }
+            prefetched = null;
+            try {
+                TextFileContent result = content.get();
+                // null if the file was not expected to be read
+                return result != null ? result : delegate.readContents();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + getFileId().getOriginalPath());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        public long getSizeHint() {
+            return delegate.getSizeHint();
+        }
+
+        @Override
+        public long getStatFingerprint() {
+            return delegate.getStatFingerprint();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public String toString() {
+            return "Prefetched[" + delegate + "]";
+        }
+    }
+}
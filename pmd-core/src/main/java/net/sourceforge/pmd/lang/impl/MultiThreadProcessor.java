@@ -4,14 +4,13 @@
 
 package net.sourceforge.pmd.lang.impl;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
+import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
@@ -19,68 +18,131 @@ import net.sourceforge.pmd.util.log.PmdReporter;
 
 
 /**
+ * Processes files in parallel, on the {@link AnalysisScheduler} of the
+ * analysis, which is shared by all language processors. If the task has
+ * no scheduler, a scheduler is created for this processor. The files are
+ * submitted as a batch, and each file is reported to the
+ * {@link net.sourceforge.pmd.reporting.GlobalAnalysisListener} as soon
+ * as it has been processed.
+ *
+ * <p>If {@linkplain AnalysisTask#isUseVirtualThreads() enabled}, file
+ * contents are read ahead on virtual threads by a {@link FilePrefetcher}.
+ * The rules of large files may be applied on several threads by a
+ * {@link ParallelRuleApplier}.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  */
 final class MultiThreadProcessor extends AbstractPMDProcessor {
-    private final ExecutorService executor;
+    /** Number of files read ahead per analysis thread when using virtual threads. */
+    private static final int READ_AHEAD_PER_THREAD = 4;
 
-    private final List<Future<?>> futureList;
+    /** The scheduler created for this processor, if the task has none. */
+    private final AnalysisScheduler ownScheduler;
+    private final AnalysisScheduler scheduler;
+
+    private AnalysisScheduler.Batch batch;
+
+    private FilePrefetcher prefetcher;
+
+    private ParallelRuleApplier parallelRuleApplier;
 
     MultiThreadProcessor(final AnalysisTask task) {
         super(task);
 
-        executor = Executors.newFixedThreadPool(task.getThreadCount(), new PmdThreadFactory());
-        futureList = new LinkedList<>();
+        ownScheduler = task.getScheduler() == null ? new AnalysisScheduler(task.getThreadCount()) : null;
+        scheduler = ownScheduler != null ? ownScheduler : task.getScheduler();
     }
 
     @Override
-    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
     public void processFiles() {
-        // The thread-local is not static, but analysis-global
-        // This means we don't have to reset it manually, every analysis is isolated.
-        // The initial value makes a copy of the rulesets
-        final ThreadLocal<RuleSets> ruleSetCopy = ThreadLocal.withInitial(() -> {
-            RuleSets copy = new RuleSets(task.getRulesets());
+        List<TextFile> files = task.getFiles();
+        if (files.isEmpty()) {
+            return;
+        }
+        if (task.isLargestFilesFirst()) {
+            files = largestFirst(files);
+        }
+
+        if (task.isUseVirtualThreads()) {
+            // don't read the files that PmdRunnable skips before reading them
+            prefetcher = FilePrefetcher.create(files, READ_AHEAD_PER_THREAD * scheduler.getThreadCount(),
+                file -> task.getRulesets().applies(file) && !task.getAnalysisCache().isUnchanged(file));
+            if (prefetcher == null) {
+                task.getMessageReporter().warn("Virtual threads are not supported by this JVM (Java 21 or later is required), "
+                                                   + "files will be read by the analysis threads");
+            }
+        }
+
+        // Each thread has its own copy of the rulesets, as rules are not thread-safe.
+        ThreadLocal<RuleSets> ruleSetCopies = ThreadLocal.withInitial(() -> {
+            RuleSets ruleSetCopy = new RuleSets(task.getRulesets());
             // use a noop reporter because the copy should only contain rules that
             // initialized properly
-            copy.initializeRules(task.getLpRegistry(), PmdReporter.quiet());
-            return copy;
+            ruleSetCopy.initializeRules(task.getLpRegistry(), PmdReporter.quiet());
+            return ruleSetCopy;
         });
+        parallelRuleApplier = new ParallelRuleApplier(scheduler, ruleSetCopies);
 
-        for (final TextFile textFile : task.getFiles()) {
-            futureList.add(executor.submit(new PmdRunnable(textFile, task) {
-                @Override
-                protected RuleSets getRulesets() {
-                    return ruleSetCopy.get();
-                }
-            }));
+        // Files are started in the order of the list.
+        List<TextFile> pending = files;
+        Language language = files.get(0).getLanguageVersion().getLanguage();
+        batch = scheduler.submit(language, pending.size(), i -> processFile(pending, i, ruleSetCopies.get()));
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
+    private void processFile(List<TextFile> pending, int i, RuleSets ruleSetCopy) {
+        TextFile textFile = pending.get(i);
+        TextFile contentSource = prefetcher != null ? prefetcher.take(i) : textFile;
+        new PmdRunnable(textFile, contentSource, task) {
+            @Override
+            protected RuleSets getRulesets() {
+                return ruleSetCopy;
+            }
+
+            @Override
+            protected ParallelRuleApplier getParallelRuleApplier() {
+                return parallelRuleApplier;
+            }
+        }.run();
+    }
+
+    /**
+     * Sorts the files by decreasing size, so that the biggest files
+     * are not started last, when the other threads have nothing left
+     * to do. Files whose size is unknown are scheduled last, in their
+     * original order.
+     */
+    static List<TextFile> largestFirst(List<TextFile> files) {
+        // query the size only once per file
+        Map<TextFile, Long> sizes = new IdentityHashMap<>(files.size());
+        for (TextFile file : files) {
+            sizes.put(file, file.getSizeHint());
         }
+        List<TextFile> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.<TextFile>comparingLong(sizes::get).reversed());
+        return sorted;
     }
 
     @Override
     public void close() {
         try {
-            try {
-                for (Future<?> task : futureList) {
-                    task.get();
-                }
-            } catch (ExecutionException e) {
+            Throwable failure = batch != null ? batch.await() : null;
+            if (failure != null) {
                 task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
-                        e.getCause().toString(), e.getCause());
-                if (e.getCause() instanceof Error) {
-                    throw (Error) e.getCause();
+                        failure.toString(), failure);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
                 }
             }
-
-            executor.shutdown();
-            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
-                // still waiting
-                Thread.yield();
-            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            executor.shutdownNow();
+            if (ownScheduler != null) {
+                ownScheduler.close();
+            }
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
         }
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.Report.ProcessingError;
+import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * Applies the rules of a large file in several groups, which run
+ * concurrently on the {@link AnalysisScheduler}. The tree is indexed
+ * once by the thread that parsed it, and its user data is made
+ * {@linkplain net.sourceforge.pmd.util.DataMap#makeConcurrent() concurrent}.
+ * Each thread then applies the rules of its own copy of the rule sets,
+ * as rules are not thread-safe.
+ *
+ * <p>The events of each group are buffered, and replayed on the listener
+ * of the file in the order of the groups once they are all done, so that
+ * the order in which violations are reported doesn't depend on the threads.
+ *
+ * <p>The Saxon tree of a file is not thread-safe, so XPath rules, and
+ * rules that have a {@link Rule#VIOLATION_SUPPRESS_XPATH_DESCRIPTOR violationSuppressXPath},
+ * are all in the first group.
+ */
+final class ParallelRuleApplier {
+
+    private final AnalysisScheduler scheduler;
+    private final ThreadLocal<RuleSets> ruleSetCopies;
+
+    /**
+     * @param scheduler     Scheduler on which the groups are run
+     * @param ruleSetCopies Copy of the rule sets of each thread
+     */
+    ParallelRuleApplier(AnalysisScheduler scheduler, ThreadLocal<RuleSets> ruleSetCopies) {
+        this.scheduler = scheduler;
+        this.ruleSetCopies = ruleSetCopies;
+    }
+
+    /**
+     * Returns true if the rules of the given file should be applied in
+     * parallel.
+     */
+    boolean appliesTo(RootNode root, LanguageVersionHandler handler) {
+        int threshold = scheduler.getParallelRulesThreshold();
+        if (threshold <= 0 || scheduler.getThreadCount() < 2 || !handler.supportsConcurrentRuleApplication()) {
+            return false;
+        }
+        TextDocument document = root.getTextDocument();
+        return document.lineColumnAtOffset(document.getLength()).getLine() >= threshold;
+    }
+
+    /**
+     * Applies the rules of the rule sets of the current thread on the
+     * given tree.
+     */
+    void apply(RootNode root, FileAnalysisListener listener) throws InterruptedException {
+        RuleSets ruleSets = ruleSetCopies.get();
+        List<Rule> rules = ruleSets.getApplicableRules(root);
+        List<List<Integer>> groups = splitRules(rules, scheduler.getThreadCount());
+        if (groups.size() < 2) {
+            ruleSets.apply(root, listener);
+            return;
+        }
+
+        ruleSets.index(root);
+        root.descendantsOrSelf().crossFindBoundaries().forEach(node -> node.getUserMap().makeConcurrent());
+
+        Thread caller = Thread.currentThread();
+        List<BufferingListener> buffers = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            buffers.add(new BufferingListener());
+        }
+
+        scheduler.invokeAll(groups.size(), i -> {
+            boolean otherThread = Thread.currentThread() != caller;
+            if (otherThread) {
+                TimeTracker.initThread();
+            }
+            try {
+                List<Rule> threadRules = ruleSetCopies.get().getApplicableRules(root);
+                if (threadRules.size() != rules.size()) {
+                    throw new IllegalStateException("The rule sets of the threads differ");
+                }
+                List<Rule> groupRules = new ArrayList<>();
+                for (int ruleIndex : groups.get(i)) {
+                    groupRules.add(threadRules.get(ruleIndex));
+                }
+                // the index of the calling thread is only read
+                ruleSets.applyIndexed(groupRules, buffers.get(i));
+            } finally {
+                if (otherThread) {
+                    TimeTracker.finishThread();
+                }
+            }
+        });
+
+        for (BufferingListener buffer : buffers) {
+            buffer.replay(listener);
+        }
+    }
+
+    /**
+     * Splits the rules into groups, given as rule indices. Rules that use
+     * the Saxon tree are in the first group, the others are distributed
+     * round-robin.
+     */
+    static List<List<Integer>> splitRules(List<Rule> rules, int maxGroups) {
+        int groupCount = Math.min(maxGroups, rules.size());
+        List<List<Integer>> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (usesSaxonTree(rules.get(i))) {
+                groups.get(0).add(i);
+            } else {
+                groups.get(next).add(i);
+                next = (next + 1) % groupCount;
+            }
+        }
+        groups.removeIf(List::isEmpty);
+        return groups;
+    }
+
+    private static boolean usesSaxonTree(Rule rule) {
+        if (rule.getProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR).isPresent()) {
+            return true;
+        }
+        Rule underlying = rule;
+        while (underlying instanceof RuleReference) {
+            underlying = ((RuleReference) underlying).getRule();
+        }
+        return underlying instanceof XPathRule;
+    }
+
+    /** Records the events of a group, to report them later. */
+    private static final class BufferingListener implements FileAnalysisListener {
+
+        private final List<Consumer<FileAnalysisListener>> events = new ArrayList<>();
+
+        @Override
+        public void onRuleViolation(RuleViolation violation) {
+            events.add(l -> l.onRuleViolation(violation));
+        }
+
+        @Override
+        public void onSuppressedRuleViolation(SuppressedViolation violation) {
+            events.add(l -> l.onSuppressedRuleViolation(violation));
+        }
+
+        @Override
+        public void onError(ProcessingError error) {
+            events.add(l -> l.onError(error));
+        }
+
+        void replay(FileAnalysisListener listener) {
+            events.forEach(event -> event.accept(listener));
+        }
+    }
+}
@@ -6,6 +6,9 @@ package net.sourceforge.pmd.lang.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,10 +40,22 @@ abstract class PmdRunnable implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(PmdRunnable.class);
     private final TextFile textFile;
+    private final TextFile contentSource;
     private final AnalysisTask task;
 
     PmdRunnable(TextFile textFile, AnalysisTask task) {
+        this(textFile, textFile, task);
+    }
+
+    /**
+     * @param textFile      File to analyse, as reported to the listeners
+     * @param contentSource File from which the contents of the document are read,
+     *                      eg a file whose contents were read ahead of time
+     * @param task          Analysis task
+     */
+    PmdRunnable(TextFile textFile, TextFile contentSource, AnalysisTask task) {
         this.textFile = textFile;
+        this.contentSource = contentSource;
         this.task = task;
     }
 
@@ -51,6 +66,15 @@ abstract class PmdRunnable implements Runnable {
      */
     protected abstract RuleSets getRulesets();
 
+    /**
+     * Returns the applier used to apply the rules of large files on
+     * several threads, or null if the rules of a file are always applied
+     * by the current thread.
+     */
+    protected @Nullable ParallelRuleApplier getParallelRuleApplier() {
+        return null;
+    }
+
     @Override
     public void run() throws FileAnalysisException {
         TimeTracker.initThread();
@@ -63,29 +87,39 @@ abstract class PmdRunnable implements Runnable {
             // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
             if (ruleSets.applies(textFile)) {
                 AnalysisCache analysisCache = task.getAnalysisCache();
-                try (TextDocument textDocument = TextDocument.create(textFile);
-                     FileAnalysisListener cacheListener = analysisCache.startFileAnalysis(textDocument)) {
-
-                    @SuppressWarnings("PMD.CloseResource")
-                    FileAnalysisListener completeListener = FileAnalysisListener.tee(listOf(listener, cacheListener));
-
-                    if (analysisCache.isUpToDate(textDocument)) {
-                        LOG.trace("Skipping file (lang: {}) because it was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
-                        // note: no cache listener here
-                        //                         vvvvvvvv
-                        reportCachedRuleViolations(listener, textDocument);
-                    } else {
-                        LOG.trace("Processing file (lang: {}): {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
-                        try {
-                            processSource(completeListener, textDocument, ruleSets);
-                        } catch (Exception | StackOverflowError | AssertionError e) {
-                            if (e instanceof Error && !SystemProps.isErrorRecoveryMode()) { // NOPMD:
-                                throw e;
+                // Stat the file before reading it, so that a change
+                // that happens after reading is seen on the next run.
+                List<RuleViolation> unchangedFileViolations = analysisCache.getUnchangedFileViolations(textFile);
+                if (unchangedFileViolations != null) {
+                    LOG.trace("Skipping file (lang: {}) because it was not modified since it was cached: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                    for (RuleViolation rv : unchangedFileViolations) {
+                        listener.onRuleViolation(rv);
+                    }
+                } else {
+                    try (TextDocument textDocument = TextDocument.create(contentSource);
+                         FileAnalysisListener cacheListener = analysisCache.startFileAnalysis(textDocument)) {
+
+                        @SuppressWarnings("PMD.CloseResource")
+                        FileAnalysisListener completeListener = FileAnalysisListener.tee(listOf(listener, cacheListener));
+
+                        if (analysisCache.isUpToDate(textDocument)) {
+                            LOG.trace("Skipping file (lang: {}) because it was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                            // note: no cache listener here
+                            //                         vvvvvvvv
+                            reportCachedRuleViolations(listener, textDocument);
+                        } else {
+                            LOG.trace("Processing file (lang: {}): {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                            try {
+                                processSource(completeListener, textDocument, ruleSets);
+                            } catch (Exception | StackOverflowError | AssertionError e) {
+                                if (e instanceof Error && !SystemProps.isErrorRecoveryMode()) { // NOPMD:
+                                    throw e;
+                                }
+
+                                // The listener handles logging if needed,
+                                // it may also rethrow the error, as a FileAnalysisException (which we let through below)
+                                completeListener.onError(new Report.ProcessingError(e, textFile.getFileId()));
                             }
-
-                            // The listener handles logging if needed,
-                            // it may also rethrow the error, as a FileAnalysisException (which we let through below)
-                            completeListener.onError(new Report.ProcessingError(e, textFile.getFileId()));
                         }
                     }
                 }
@@ -137,7 +171,17 @@ abstract class PmdRunnable implements Runnable {
             throw semanticError;
         }
 
-        ruleSets.apply(rootNode, listener);
+        ParallelRuleApplier parallelRuleApplier = getParallelRuleApplier();
+        if (parallelRuleApplier != null && parallelRuleApplier.appliesTo(rootNode, handler)) {
+            try {
+                parallelRuleApplier.apply(rootNode, listener);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw FileAnalysisException.wrap(textFile.getFileId(), "Interrupted while applying rules", e);
+            }
+        } else {
+            ruleSets.apply(rootNode, listener);
+        }
     }
 
 }
@@ -19,6 +19,7 @@ import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.rule.xpath.internal.ViolationSuppressXPathQuery;
 import net.sourceforge.pmd.properties.AbstractPropertySource;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 import net.sourceforge.pmd.reporting.InternalApiBridge;
@@ -48,6 +49,8 @@ public abstract class AbstractRule extends AbstractPropertySource implements Rul
     private Set<String> ruleChainVisits = new LinkedHashSet<>();
     private Set<Class<? extends Node>> classRuleChainVisits = new LinkedHashSet<>();
     private RuleTargetSelector myStrategy;
+    /** Compiled violationSuppressXPath, not copied by {@link #deepCopy()}. */
+    private ViolationSuppressXPathQuery violationSuppressXPathQuery;
 
     public AbstractRule() {
         definePropertyDescriptor(Rule.VIOLATION_SUPPRESS_REGEX_DESCRIPTOR);
@@ -261,6 +264,14 @@ public abstract class AbstractRule extends AbstractPropertySource implements Rul
         }
     }
 
+    ViolationSuppressXPathQuery getViolationSuppressXPathQuery() {
+        return violationSuppressXPathQuery;
+    }
+
+    void setViolationSuppressXPathQuery(ViolationSuppressXPathQuery query) {
+        this.violationSuppressXPathQuery = query;
+    }
+
     private boolean isThisRule(Rule rule) {
         return rule == this // NOPMD CompareObjectsWithEquals
             || rule instanceof RuleReference && this.isThisRule(((RuleReference) rule).getRule());
@@ -7,10 +7,12 @@ package net.sourceforge.pmd.lang.rule;
 import java.util.List;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.rule.xpath.internal.ViolationSuppressXPathQuery;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
 /**
@@ -40,6 +42,26 @@ public final class InternalApiBridge {
         return ruleSetLoader.loadRuleSetsWithoutException(rulesetPaths);
     }
 
+    public static @Nullable ViolationSuppressXPathQuery getViolationSuppressXPathQuery(Rule rule) {
+        AbstractRule base = underlyingRule(rule);
+        return base == null ? null : base.getViolationSuppressXPathQuery();
+    }
+
+    public static void setViolationSuppressXPathQuery(Rule rule, ViolationSuppressXPathQuery query) {
+        AbstractRule base = underlyingRule(rule);
+        if (base != null) {
+            base.setViolationSuppressXPathQuery(query);
+        }
+    }
+
+    private static @Nullable AbstractRule underlyingRule(Rule rule) {
+        Rule underlying = rule;
+        while (underlying instanceof RuleReference) {
+            underlying = ((RuleReference) underlying).getRule();
+        }
+        return underlying instanceof AbstractRule ? (AbstractRule) underlying : null;
+    }
+
     public static RuleSetLoader withReporter(RuleSetLoader ruleSetLoader, @NonNull PmdReporter reporter) {
         return ruleSetLoader.withReporter(reporter);
     }
@@ -8,7 +8,6 @@ package net.sourceforge.pmd.lang.rule;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -98,8 +97,8 @@ public abstract class RuleTargetSelector extends TargetSelectorInternal {
         }
 
         @Override
-        protected Iterator<? extends Node> getVisitedNodes(TreeIndex index) {
-            return index.getByName(visits);
+        protected int[] getVisitedSlots(TreeIndex index) {
+            return index.getNameSlots(visits);
         }
 
         @Override
@@ -127,8 +126,8 @@ public abstract class RuleTargetSelector extends TargetSelectorInternal {
         }
 
         @Override
-        protected Iterator<? extends Node> getVisitedNodes(TreeIndex index) {
-            return index.getByClass(visits);
+        protected int[] getVisitedSlots(TreeIndex index) {
+            return index.getClassSlots(visits);
         }
 
         @Override
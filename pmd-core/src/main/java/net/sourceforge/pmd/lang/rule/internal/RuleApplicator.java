@@ -5,22 +5,31 @@
 package net.sourceforge.pmd.lang.rule.internal;
 
 import static net.sourceforge.pmd.lang.rule.InternalApiBridge.ruleSetApplies;
+import static net.sourceforge.pmd.lang.rule.xpath.InternalApiBridge.applyXPathRule;
+import static net.sourceforge.pmd.lang.rule.xpath.InternalApiBridge.getXPathRuleQuery;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.lang3.exception.ExceptionContext;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.benchmark.SlicedTimedOperation;
 import net.sourceforge.pmd.benchmark.TimeTracker;
-import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.internal.AstElementNode;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
+import net.sourceforge.pmd.lang.rule.xpath.internal.XPathRuleBatch;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.InternalApiBridge;
 import net.sourceforge.pmd.reporting.Report.ProcessingError;
@@ -32,8 +41,9 @@ import net.sourceforge.pmd.util.StringUtil;
 public class RuleApplicator {
 
     private static final Logger LOG = LoggerFactory.getLogger(RuleApplicator.class);
-    // we reuse the type lattice from run to run, eventually it converges
-    // towards the final topology (all node types have been encountered)
+    private static final int[] NO_RULES = {};
+    // we reuse the index from run to run, eventually all node types have
+    // been encountered and its arrays are large enough for any file
     // This has excellent performance! Indexing time is insignificant
     // compared to rule application for any non-trivial ruleset. Even
     // when you use a single rule, indexing time is insignificant compared
@@ -48,8 +58,7 @@ public class RuleApplicator {
 
 
     public void index(RootNode root) {
-        idx.reset();
-        indexTree(root, idx);
+        idx.index(root);
         currentLangVer = root.getLanguageVersion();
     }
 
@@ -58,39 +67,167 @@ public class RuleApplicator {
     }
 
     private void applyOnIndex(TreeIndex idx, Collection<? extends Rule> rules, FileAnalysisListener listener) {
+        List<AppliedRule> appliedRules = new ArrayList<>();
+        XPathRuleBatch<AppliedRule> xpathRules = new XPathRuleBatch<>();
         for (Rule rule : rules) {
             if (!ruleSetApplies(rule, currentLangVer)) {
                 continue; // No point in even trying to apply the rule
             }
-            
+
             RuleContext ctx = InternalApiBridge.createRuleContext(listener, rule);
-            rule.start(ctx);
-            try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
-
-                int nodeCounter = 0;
-                Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
-                while (targets.hasNext()) {
-                    Node node = targets.next();
-
-                    try {
-                        nodeCounter++;
-                        rule.apply(node, ctx);
-                    } catch (RuntimeException e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), true);
-                    } catch (StackOverflowError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
-                    } catch (AssertionError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+            AppliedRule applied = new AppliedRule(appliedRules.size(), rule, ctx);
+            XPathRule xpathRule = asPlainXPathRule(rule);
+            SaxonXPathRuleQuery query = xpathRule == null ? null : getXPathRuleQuery(xpathRule);
+            if (query != null) {
+                // evaluated on the wrapper of the node it shares with the other XPath rules
+                applied.xpathRule = xpathRule;
+                applied.xpathQuery = xpathRules.add(applied, query);
+            }
+            appliedRules.add(applied);
+        }
+
+        if (!appliedRules.isEmpty()) {
+            applyInSinglePass(idx, appliedRules, xpathRules, listener);
+        }
+    }
+
+    /**
+     * Applies the rules in a single pass over the nodes of the tree, in
+     * preorder, instead of rule by rule. Each node is dispatched to all the
+     * rules whose target selector selects it, in the order the rules are
+     * declared. The XPath rules that visit a node share its Saxon wrapper.
+     * Rules that target the root are dispatched the root, from which their
+     * visitor traverses the tree itself.
+     *
+     * <p>Rules start before the pass and end after it. Each rule is timed
+     * as a single operation, made of the slices spent on each node.
+     */
+    private void applyInSinglePass(TreeIndex idx, List<AppliedRule> rules, XPathRuleBatch<AppliedRule> xpathRules, FileAnalysisListener listener) {
+        int[][] rulesBySlot = getRulesBySlot(idx, rules);
+        // rules of each node type, filled as types are encountered
+        int[][] rulesByType = new int[idx.getTypeCount()][];
+
+        for (AppliedRule applied : rules) {
+            applied.rule.start(applied.ctx);
+            applied.timer = TimeTracker.startSlicedOperation(TimedOperationCategory.RULE, applied.rule.getName());
+        }
+        try {
+            for (int i = 0; i < idx.size(); i++) {
+                int typeId = idx.getTypeId(i);
+                int[] typeRules = rulesByType[typeId];
+                if (typeRules == null) {
+                    typeRules = mergeSlots(idx.getClassSlotsOfType(typeId), rulesBySlot);
+                    rulesByType[typeId] = typeRules;
+                }
+                int nameSlot = idx.getNameSlot(i);
+                int[] nameRules = nameSlot < 0 ? NO_RULES : rulesBySlot[nameSlot];
+                if (typeRules.length > 0 || nameRules.length > 0) {
+                    dispatch(idx.getNode(i), typeRules, nameRules, rules, xpathRules, listener);
+                }
+            }
+        } finally {
+            for (AppliedRule applied : rules) {
+                applied.timer.close(applied.nodeCounter);
+                applied.rule.end(applied.ctx);
+            }
+        }
+    }
+
+    /** Returns the indices of the rules that visit each slot, in increasing order. */
+    private static int[][] getRulesBySlot(TreeIndex idx, List<AppliedRule> rules) {
+        int slotCount = idx.getSlotCount();
+        int[][] rulesBySlot = new int[slotCount][];
+        int[] sizes = new int[slotCount];
+        int[][] visitedSlots = new int[rules.size()][];
+        for (AppliedRule applied : rules) {
+            visitedSlots[applied.index] = applied.rule.getTargetSelector().getVisitedSlots(idx);
+            for (int slot : visitedSlots[applied.index]) {
+                sizes[slot]++;
+            }
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            rulesBySlot[slot] = sizes[slot] == 0 ? NO_RULES : new int[sizes[slot]];
+            sizes[slot] = 0;
+        }
+        for (AppliedRule applied : rules) {
+            for (int slot : visitedSlots[applied.index]) {
+                rulesBySlot[slot][sizes[slot]++] = applied.index;
+            }
+        }
+        return rulesBySlot;
+    }
+
+    /** Merges the rules of the given slots, in increasing order, with duplicates. */
+    private static int[] mergeSlots(int[] slots, int[][] rulesBySlot) {
+        int[] merged = NO_RULES;
+        for (int slot : slots) {
+            merged = merge(merged, rulesBySlot[slot]);
+        }
+        return merged;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        } else if (a.length == 0) {
+            return b;
+        }
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            merged[k] = j >= b.length || i < a.length && a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Dispatches a node to the rules of its type and of its name, in the
+     * order the rules are declared. Both arrays are sorted.
+     */
+    private void dispatch(Node node, int[] typeRules, int[] nameRules, List<AppliedRule> rules,
+                          XPathRuleBatch<AppliedRule> xpathRules, FileAnalysisListener listener) {
+        AstElementNode wrapper = null;
+        int i = 0;
+        int j = 0;
+        while (i < typeRules.length || j < nameRules.length) {
+            boolean fromType = j >= nameRules.length || i < typeRules.length && typeRules[i] <= nameRules[j];
+            AppliedRule applied = rules.get(fromType ? typeRules[i++] : nameRules[j++]);
+            applied.nodeCounter++;
+            applied.timer.resume();
+            try {
+                if (applied.xpathQuery != null) {
+                    if (wrapper == null) {
+                        wrapper = xpathRules.wrap(node);
                     }
+                    applyXPathRule(applied.xpathRule, applied.xpathQuery, wrapper, applied.ctx);
+                } else {
+                    applied.rule.apply(node, applied.ctx);
                 }
-                
-                rcto.close(nodeCounter);
+            } catch (RuntimeException e) {
+                reportOrRethrow(listener, applied.rule, node, AssertionUtil.contexted(e), true);
+            } catch (StackOverflowError e) {
+                reportOrRethrow(listener, applied.rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+            } catch (AssertionError e) {
+                reportOrRethrow(listener, applied.rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
             } finally {
-                rule.end(ctx);
+                applied.timer.suspend();
             }
         }
     }
 
+    /**
+     * Returns the XPath rule that implements the given rule, if it
+     * behaves exactly like {@link XPathRule}, otherwise null. Subclasses
+     * (from the compatibility module) may override {@link Rule#apply(Node, RuleContext)}.
+     */
+    static @Nullable XPathRule asPlainXPathRule(Rule rule) {
+        Rule underlying = rule;
+        while (underlying instanceof RuleReference) {
+            underlying = ((RuleReference) underlying).getRule();
+        }
+        return underlying != null && underlying.getClass() == XPathRule.class ? (XPathRule) underlying : null;
+    }
 
     private <E extends Throwable> void reportOrRethrow(FileAnalysisListener listener, Rule rule, Node node, E e, boolean reportAndDontThrow) throws E {
         if (e instanceof ExceptionContext) {
@@ -117,10 +254,23 @@ public class RuleApplicator {
     }
 
 
-    private void indexTree(Node top, TreeIndex idx) {
-        idx.indexNode(top);
-        for (Node child : top.children()) {
-            indexTree(child, idx);
+    /** A rule applied to the current file, where its violations are reported, and its timing. */
+    private static final class AppliedRule {
+
+        /** Position of the rule in the rules applied to the file. */
+        final int index;
+        final Rule rule;
+        final RuleContext ctx;
+        /** The XPath rule and its query, if the rule is evaluated with the other XPath rules. */
+        XPathRule xpathRule;
+        XPathRuleBatch.Member<AppliedRule> xpathQuery;
+        SlicedTimedOperation timer;
+        int nodeCounter;
+
+        AppliedRule(int index, Rule rule, RuleContext ctx) {
+            this.index = index;
+            this.rule = rule;
+            this.ctx = ctx;
         }
     }
 
@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.lang.rule.internal;
 
+import static net.sourceforge.pmd.lang.rule.xpath.InternalApiBridge.initializeXPathRule;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -15,12 +17,16 @@ import java.util.Set;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.LanguageProcessor;
 import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.InternalApiBridge;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonConfigurationScope;
+import net.sourceforge.pmd.lang.rule.xpath.internal.ViolationSuppressXPathQuery;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
@@ -62,12 +68,22 @@ public class RuleSets {
     }
 
     public void initializeRules(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        // the XPath rules share their Saxon configurations
+        SaxonConfigurationScope configurationScope = new SaxonConfigurationScope();
         // this is abusing the mutability of RuleSet, will go away eventually.
         for (RuleSet rset : ruleSets) {
             for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
                 Rule rule = iterator.next();
                 try {
-                    rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+                    LanguageProcessor processor = lpReg.getProcessor(rule.getLanguage());
+                    XPathRule xpathRule = RuleApplicator.asPlainXPathRule(rule);
+                    if (xpathRule != null) {
+                        initializeXPathRule(xpathRule, processor, configurationScope);
+                    } else {
+                        rule.initialize(processor);
+                    }
+                    // compile the violationSuppressXPath once, this also validates it
+                    ViolationSuppressXPathQuery.forRule(rule, processor.services().getXPathHandler());
                 } catch (Exception e) {
                     reporter.errorEx(
                         "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
@@ -139,6 +155,18 @@ public class RuleSets {
      * @param listener Listener that will handle events while analysing.
      */
     public void apply(RootNode root, FileAnalysisListener listener) {
+        index(root);
+        // the rules of all the rule sets are applied in a single pass
+        ruleApplicator.apply(getApplicableRules(root), listener);
+    }
+
+    /**
+     * Indexes the given tree, to which the rules are then applied with
+     * {@link #applyIndexed(List, FileAnalysisListener)}.
+     *
+     * @param root Root of the tree
+     */
+    public void index(RootNode root) {
         if (ruleApplicator == null) {
             // initialize here instead of ctor, because some rules properties
             // are set after creating the ruleset, and jaxen xpath queries
@@ -149,12 +177,36 @@ public class RuleSets {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.RULE_AST_INDEXATION)) {
             ruleApplicator.index(root);
         }
+    }
 
+    /**
+     * Returns the rules of the rule sets that apply to the given tree,
+     * in order. Copies of the same rule sets return the corresponding
+     * rules at the same positions.
+     *
+     * @param root Root of the tree
+     */
+    public List<Rule> getApplicableRules(RootNode root) {
+        List<Rule> rules = new ArrayList<>();
         for (RuleSet ruleSet : ruleSets) {
             if (InternalApiBridge.ruleSetApplies(ruleSet, root.getTextDocument().getFileId())) {
-                ruleApplicator.apply(ruleSet.getRules(), listener);
+                rules.addAll(ruleSet.getRules());
             }
         }
+        return rules;
+    }
+
+    /**
+     * Applies the given rules on the tree last {@linkplain #index(RootNode) indexed}.
+     * This may be called concurrently, on different threads, provided
+     * the rules are distinct objects, eg rules of other copies of these
+     * rule sets.
+     *
+     * @param rules    Rules to apply
+     * @param listener Listener that will handle events while analysing
+     */
+    public void applyIndexed(List<Rule> rules, FileAnalysisListener listener) {
+        ruleApplicator.apply(rules, listener);
     }
 
     /**
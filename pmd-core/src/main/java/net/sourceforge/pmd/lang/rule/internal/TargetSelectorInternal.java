@@ -5,7 +5,6 @@
 package net.sourceforge.pmd.lang.rule.internal;
 
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import net.sourceforge.pmd.lang.ast.Node;
@@ -23,7 +22,11 @@ public abstract class TargetSelectorInternal {
     protected abstract void prepare(ApplicatorBuilder builder);
 
 
-    protected abstract Iterator<? extends Node> getVisitedNodes(TreeIndex index);
+    /**
+     * Returns the slots of the index whose nodes are visited. A node that
+     * is in several of these slots is visited once per slot.
+     */
+    protected abstract int[] getVisitedSlots(TreeIndex index);
 
 
     protected static final class ApplicatorBuilder {
@@ -5,67 +5,265 @@
 package net.sourceforge.pmd.lang.rule.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import net.sourceforge.pmd.lang.ast.Node;
-import net.sourceforge.pmd.util.IteratorUtil;
 
 /**
  * Index of an AST, for use by the {@link RuleApplicator}.
+ *
+ * <p>Each queried class and XPath name is assigned a slot. Each node class
+ * encountered is assigned a dense type id, which maps to the slots of the
+ * queried classes it is a subtype of. The tree is indexed in a single
+ * preorder pass, after which the nodes of each slot are laid out contiguously
+ * in a single array, in preorder, and delimited by an offset array.
+ * The arrays are reused from file to file, so that after the first few
+ * files indexing doesn't allocate anything, apart from growing them for
+ * larger trees.
+ *
+ * <p>The {@link RuleApplicator} goes over the nodes in preorder once, and
+ * dispatches each node to the rules that visit one of its slots.
+ *
+ * <p>This is not thread-safe, each thread uses its own index.
  */
 public class TreeIndex {
 
-    private final LatticeRelation<Class<?>, Node, Iterable<Node>> byClass;
-    private final Set<String> interestingNames;
-    private final Map<String, List<Node>> byName;
+    private static final int[] NO_SLOTS = {};
+    private static final int NO_NAME = -1;
+
+    /** Slot of each queried class. */
+    private final Map<Class<?>, Integer> classSlots = new HashMap<>();
+    /** Slot of each queried XPath name. */
+    private final Map<String, Integer> nameSlots = new HashMap<>();
+    private final int slotCount;
+
+    /** Dense type id of each node class encountered so far. */
+    private final Map<Class<?>, Integer> typeIds = new HashMap<>();
+    /** Slots of the queried classes a type is a subtype of, by type id. */
+    private final List<int[]> slotsByType = new ArrayList<>();
+
+    // state of the current file
+
+    private int size;
+    /** Nodes of the tree, in preorder. */
+    private Node[] nodes = new Node[64];
+    /** Type id of each node. */
+    private int[] nodeTypes = new int[64];
+    /** Name slot of each node, or {@link #NO_NAME}. */
+    private int[] nodeNames = new int[64];
+    /**
+     * Members of slot {@code s} are the preorder indices
+     * {@code members[offsets[s]]} to {@code members[offsets[s + 1] - 1]}.
+     */
+    private final int[] offsets;
+    private int[] members = new int[64];
 
 
     public TreeIndex(Set<String> namesToIndex,
                      Set<Class<? extends Node>> classesToIndex) {
+        int slot = 0;
+        for (Class<? extends Node> klass : classesToIndex) {
+            classSlots.put(klass, slot++);
+        }
+        for (String name : namesToIndex) {
+            nameSlots.put(name, slot++);
+        }
+        this.slotCount = slot;
+        this.offsets = new int[slotCount + 1];
+    }
 
-        byClass = new LatticeRelation<>(
-            TopoOrder.TYPE_HIERARCHY_ORDERING,
-            classesToIndex,
-            Class::getSimpleName,
-            Collectors.toSet()
-        );
-        this.interestingNames = namesToIndex;
-        byName = new HashMap<>();
+    /**
+     * Indexes the given tree, replacing the index of the previous one.
+     */
+    void index(Node root) {
+        reset();
+        indexNode(root);
+        layoutSlots();
     }
 
-    void indexNode(Node n) {
-        if (interestingNames.contains(n.getXPathNodeName())) {
-            byName.computeIfAbsent(n.getXPathNodeName(), k -> new ArrayList<>()).add(n);
+    private void indexNode(Node n) {
+        if (size == nodes.length) {
+            int newLength = size * 2;
+            nodes = Arrays.copyOf(nodes, newLength);
+            nodeTypes = Arrays.copyOf(nodeTypes, newLength);
+            nodeNames = Arrays.copyOf(nodeNames, newLength);
         }
-        byClass.put(n.getClass(), n);
+        Integer nameSlot = nameSlots.get(n.getXPathNodeName());
+        nodes[size] = n;
+        nodeTypes[size] = getTypeId(n.getClass());
+        nodeNames[size] = nameSlot == null ? NO_NAME : nameSlot;
+        size++;
+
+        for (Node child : n.children()) {
+            indexNode(child);
+        }
+    }
+
+    private int getTypeId(Class<?> nodeClass) {
+        Integer id = typeIds.get(nodeClass);
+        if (id == null) {
+            id = slotsByType.size();
+            typeIds.put(nodeClass, id);
+            slotsByType.add(computeSlots(nodeClass));
+        }
+        return id;
+    }
+
+    private int[] computeSlots(Class<?> nodeClass) {
+        int[] slots = new int[classSlots.size()];
+        int count = 0;
+        for (Map.Entry<Class<?>, Integer> entry : classSlots.entrySet()) {
+            if (entry.getKey().isAssignableFrom(nodeClass)) {
+                slots[count++] = entry.getValue();
+            }
+        }
+        return count == 0 ? NO_SLOTS : Arrays.copyOf(slots, count);
+    }
+
+    /** Counts the members of each slot, then fills the member array. */
+    private void layoutSlots() {
+        // offsets[s + 1] first counts the members of slot s
+        for (int i = 0; i < size; i++) {
+            for (int slot : slotsByType.get(nodeTypes[i])) {
+                offsets[slot + 1]++;
+            }
+            if (nodeNames[i] != NO_NAME) {
+                offsets[nodeNames[i] + 1]++;
+            }
+        }
+        for (int s = 1; s <= slotCount; s++) {
+            offsets[s] += offsets[s - 1];
+        }
+        int total = offsets[slotCount];
+        if (total > members.length) {
+            members = new int[Math.max(total, members.length * 2)];
+        }
+
+        // offsets[s] is used as the insertion point of slot s, it ends up at
+        // the end of the slot, which is the start of the next one
+        for (int i = 0; i < size; i++) {
+            for (int slot : slotsByType.get(nodeTypes[i])) {
+                members[offsets[slot]++] = i;
+            }
+            if (nodeNames[i] != NO_NAME) {
+                members[offsets[nodeNames[i]]++] = i;
+            }
+        }
+        System.arraycopy(offsets, 0, offsets, 1, slotCount);
+        offsets[0] = 0;
     }
 
     void reset() {
-        byClass.clearValues();
-        byName.clear();
+        // don't retain the previous tree
+        Arrays.fill(nodes, 0, size, null);
+        Arrays.fill(offsets, 0);
+        size = 0;
     }
 
     Iterator<Node> getByName(String n) {
-        return byName.getOrDefault(n, Collections.emptyList()).iterator();
+        return getSlot(nameSlots.get(n));
     }
 
     Iterator<Node> getByClass(Class<? extends Node> n) {
-        return byClass.get(n).iterator();
+        return getSlot(classSlots.get(n));
+    }
+
+    private Iterator<Node> getSlot(Integer slot) {
+        if (slot == null) {
+            return Collections.emptyIterator();
+        }
+        return new SlotIterator(offsets[slot], offsets[slot + 1]);
     }
 
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    /** Returns the number of node types encountered so far. */
+    int getTypeCount() {
+        return slotsByType.size();
+    }
+
+    /** Returns the number of nodes of the tree. */
+    int size() {
+        return size;
+    }
+
+    /** Returns the node at the given index in preorder. */
+    Node getNode(int i) {
+        return nodes[i];
+    }
+
+    /** Returns the type id of the node at the given index in preorder. */
+    int getTypeId(int i) {
+        return nodeTypes[i];
+    }
+
+    /**
+     * Returns the class slots of the given type id. The array is shared
+     * and must not be modified.
+     */
+    int[] getClassSlotsOfType(int typeId) {
+        return slotsByType.get(typeId);
+    }
+
+    /** Returns the name slot of the node at the given index in preorder, or -1. */
+    int getNameSlot(int i) {
+        return nodeNames[i];
+    }
 
-    public Iterator<Node> getByName(Collection<String> n) {
-        return IteratorUtil.flatMap(n.iterator(), this::getByName);
+    /** Returns the slots of the given XPath names, ignoring those that are not indexed. */
+    public int[] getNameSlots(Collection<String> names) {
+        return getSlots(names, nameSlots);
     }
 
-    public Iterator<Node> getByClass(Collection<? extends Class<? extends Node>> n) {
-        return IteratorUtil.flatMap(n.iterator(), this::getByClass);
+    /** Returns the slots of the given classes, ignoring those that are not indexed. */
+    public int[] getClassSlots(Collection<? extends Class<? extends Node>> classes) {
+        return getSlots(classes, classSlots);
+    }
+
+    private static <K> int[] getSlots(Collection<? extends K> keys, Map<? super K, Integer> slots) {
+        int[] result = new int[keys.size()];
+        int count = 0;
+        for (K key : keys) {
+            Integer slot = slots.get(key);
+            if (slot != null) {
+                result[count++] = slot;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /** Iterates over a range of the member array. */
+    private final class SlotIterator implements Iterator<Node> {
+
+        private int next;
+        private final int end;
+
+        SlotIterator(int start, int end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Node next() {
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            return nodes[members[next++]];
+        }
     }
 }
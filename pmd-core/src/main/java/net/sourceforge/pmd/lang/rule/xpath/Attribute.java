@@ -9,6 +9,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -39,6 +40,8 @@ public final class Attribute {
     private final @NonNull String name;
 
     private final @Nullable MethodHandle handle;
+    /** Precompiled accessor, used instead of the method handle if present. */
+    private final @Nullable Function<Node, Object> getter;
     private final @Nullable Method method;
     /** If true, we won't invoke the method handle again. */
     private boolean invoked;
@@ -62,6 +65,19 @@ public final class Attribute {
         this.parent = Objects.requireNonNull(parent);
         this.name = Objects.requireNonNull(name);
         this.handle = Objects.requireNonNull(handle);
+        this.getter = null;
+        this.method = Objects.requireNonNull(method);
+    }
+
+    /**
+     * Creates a new attribute belonging to the given node using a
+     * precompiled accessor.
+     */
+    Attribute(@NonNull Node parent, @NonNull String name, @NonNull Function<Node, Object> getter, @NonNull Method method) {
+        this.parent = Objects.requireNonNull(parent);
+        this.name = Objects.requireNonNull(name);
+        this.handle = null;
+        this.getter = Objects.requireNonNull(getter);
         this.method = Objects.requireNonNull(method);
     }
 
@@ -71,6 +87,7 @@ public final class Attribute {
         this.name = Objects.requireNonNull(name);
         this.value = value;
         this.handle = null;
+        this.getter = null;
         this.method = null;
         this.stringValue = value == null ? "" : value;
         this.invoked = true;
@@ -102,6 +119,10 @@ public final class Attribute {
      * @apiNote Internal API
      */
     String replacementIfDeprecated() {
+        return replacementIfDeprecated(method);
+    }
+
+    static String replacementIfDeprecated(@Nullable Method method) {
         if (method == null) {
             return null;
         } else {
@@ -134,14 +155,14 @@ public final class Attribute {
     public Object getValue() {
         if (this.invoked) {
             return this.value;
-        } else if (handle == null) {
+        } else if (handle == null && getter == null) {
             throw new NullPointerException("Cannot fetch value of attribute with null getter! " + this);
         }
 
         Object value;
         // this lazy loading reduces calls to Method.invoke() by about 90%
         try {
-            value = handle.invokeExact(parent);
+            value = getter != null ? getter.apply(parent) : handle.invokeExact(parent);
         } catch (Throwable iae) { // NOPMD
             LOG.debug("Exception while fetching attribute value", iae);
             value = null;
@@ -4,7 +4,19 @@
 
 package net.sourceforge.pmd.lang.rule.xpath;
 
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.internal.AstElementNode;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonConfigurationScope;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
+import net.sourceforge.pmd.lang.rule.xpath.internal.XPathRuleBatch;
+import net.sourceforge.pmd.reporting.RuleContext;
 
 /**
  * Internal API.
@@ -25,6 +37,26 @@ public final class InternalApiBridge {
         return attribute.replacementIfDeprecated();
     }
 
+    public static String replacementIfDeprecated(Method attributeGetter) {
+        return Attribute.replacementIfDeprecated(attributeGetter);
+    }
+
+    public static Attribute newAttribute(Node parent, String name, Function<Node, Object> getter, Method method) {
+        return new Attribute(parent, name, getter, method);
+    }
+
+    public static @Nullable SaxonXPathRuleQuery getXPathRuleQuery(XPathRule rule) {
+        return rule.getQuery();
+    }
+
+    public static void initializeXPathRule(XPathRule rule, LanguageProcessor languageProcessor, SaxonConfigurationScope configurationScope) {
+        rule.initialize(languageProcessor, configurationScope);
+    }
+
+    public static void applyXPathRule(XPathRule rule, XPathRuleBatch.Member<?> query, AstElementNode wrapper, RuleContext ctx) {
+        rule.apply(query, wrapper, ctx);
+    }
+
     public static XPathRule newXPathRule() {
         return new XPathRule();
     }
@@ -7,6 +7,8 @@ package net.sourceforge.pmd.lang.rule.xpath.impl;
 import static net.sourceforge.pmd.util.CollectionUtil.emptyList;
 import static net.sourceforge.pmd.util.CollectionUtil.setOf;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
@@ -14,21 +16,30 @@ import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
 import net.sourceforge.pmd.lang.document.Chars;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.InternalApiBridge;
 import net.sourceforge.pmd.lang.rule.xpath.NoAttribute;
 import net.sourceforge.pmd.lang.rule.xpath.NoAttribute.NoAttrScope;
+import net.sourceforge.pmd.lang.rule.xpath.internal.DeprecatedAttrLogger;
 import net.sourceforge.pmd.util.AssertionUtil;
 
 
@@ -38,12 +49,21 @@ import net.sourceforge.pmd.util.AssertionUtil;
  * are made accessible to XPath rules, and defines an important
  * piece of PMD's XPath support.
  *
+ * <p>The accessors of each node class are found once, and compiled
+ * to a lambda with {@link LambdaMetafactory} when the class allows it,
+ * so that fetching a value is a plain interface call. For nodes that
+ * don't override {@link Node#getXPathAttributesIterator()}, a single
+ * attribute can also be fetched by name without creating any {@link Attribute},
+ * see {@link #getStringValue(Node, String, DeprecatedAttrLogger)}.
+ *
  * @see Node#getXPathAttributesIterator()
  */
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AttributeAxisIterator.class);
+
     /** Caches the precomputed attribute accessors of a given class. */
-    private static final ConcurrentMap<Class<?>, List<MethodWrapper>> METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, AttributeTable> METHOD_CACHE = new ConcurrentHashMap<>();
 
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
@@ -68,6 +88,7 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
                 "getScope");
 
     /* Iteration variables */
+    private final AttributeTable table;
     private final Iterator<MethodWrapper> iterator;
     private final Node node;
 
@@ -79,7 +100,51 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     public AttributeAxisIterator(@NonNull Node contextNode) {
         this.node = contextNode;
-        this.iterator = METHOD_CACHE.computeIfAbsent(contextNode.getClass(), this::getWrappersForClass).iterator();
+        this.table = METHOD_CACHE.computeIfAbsent(contextNode.getClass(), c -> new AttributeTable(c, getWrappersForClass(c)));
+        this.iterator = table.wrappers.iterator();
+    }
+
+    private static AttributeTable tableFor(Node node) {
+        AttributeTable table = METHOD_CACHE.get(node.getClass());
+        return table != null ? table : new AttributeAxisIterator(node).table;
+    }
+
+    /**
+     * Returns whether the attributes of the node are the ones found by
+     * this class, that is, whether the node doesn't override
+     * {@link Node#getXPathAttributesIterator()}. Only then may
+     * {@link #getStringValue(Node, String, DeprecatedAttrLogger)} be used.
+     *
+     * @apiNote Internal API
+     */
+    @InternalApi
+    public static boolean hasDefaultAttributes(Node node) {
+        return tableFor(node).usesDefaultIterator;
+    }
+
+    /**
+     * Returns the string value of the attribute of the node with the
+     * given name, or null if there is no such attribute. This is the
+     * same as {@link Attribute#getStringValue()}, but does not create
+     * the attribute.
+     *
+     * @param node   A node for which {@link #hasDefaultAttributes(Node)} is true
+     * @param name   Name of the attribute
+     * @param logger Records the usage of the attribute if it is deprecated
+     *
+     * @apiNote Internal API
+     */
+    @InternalApi
+    public static @Nullable String getStringValue(Node node, String name, DeprecatedAttrLogger logger) {
+        MethodWrapper wrapper = tableFor(node).byName.get(name);
+        if (wrapper == null) {
+            return null;
+        }
+        if (wrapper.deprecated) {
+            logger.recordUsageOf(wrapper.newAttribute(node));
+        }
+        Object value = wrapper.getValue(node);
+        return value == null ? "" : value.toString();
     }
 
     private List<MethodWrapper> getWrappersForClass(Class<?> nodeClass) {
@@ -161,8 +226,7 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
 
     @Override
     public Attribute next() {
-        MethodWrapper m = iterator.next();
-        return new Attribute(node, m.name, m.methodHandle, m.method);
+        return iterator.next().newAttribute(node);
     }
 
 
@@ -172,6 +236,36 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
     }
 
 
+    /**
+     * The accessors of a node class, in the order of the iterator,
+     * and by name.
+     */
+    private static final class AttributeTable {
+
+        final List<MethodWrapper> wrappers;
+        final Map<String, MethodWrapper> byName;
+        final boolean usesDefaultIterator;
+
+        AttributeTable(Class<?> nodeClass, List<MethodWrapper> wrappers) {
+            this.wrappers = wrappers;
+            this.byName = new HashMap<>();
+            for (MethodWrapper wrapper : wrappers) {
+                // like a map built from the iterator, the last accessor wins
+                byName.put(wrapper.name, wrapper);
+            }
+            this.usesDefaultIterator = usesDefaultIterator(nodeClass);
+        }
+
+        private static boolean usesDefaultIterator(Class<?> nodeClass) {
+            try {
+                return nodeClass.getMethod("getXPathAttributesIterator").getDeclaringClass() == Node.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+
+
     /**
      * Associates an attribute accessor with the XPath-accessible
      * name of the attribute. This is used to avoid recomputing
@@ -180,10 +274,15 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     private static class MethodWrapper {
         static final Lookup LOOKUP = MethodHandles.publicLookup();
+        /** Lambdas are defined next to this class, which needs a full privilege lookup. */
+        private static final Lookup LAMBDA_LOOKUP = MethodHandles.lookup();
         private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Node.class);
         public final MethodHandle methodHandle;
+        /** Compiled accessor, null if the method cannot be called from a lambda. */
+        public final @Nullable Function<Node, Object> getter;
         public final Method method;
         public final String name;
+        public final boolean deprecated;
 
 
         MethodWrapper(Method m, Class<?> nodeClass) throws IllegalAccessException, NoSuchMethodException {
@@ -199,6 +298,60 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
             } else {
                 this.methodHandle = LOOKUP.unreflect(m).asType(GETTER_TYPE);
             }
+            this.getter = compileGetter(m);
+            this.deprecated = InternalApiBridge.replacementIfDeprecated(m) != null;
+        }
+
+        /**
+         * Returns a lambda that calls the method, like {@code Node::getImage}.
+         * This is only possible if the classes of the method are visible from
+         * this class, in which the lambda class is defined.
+         */
+        @SuppressWarnings("unchecked")
+        private static @Nullable Function<Node, Object> compileGetter(Method m) {
+            Class<?> declaringClass = m.getDeclaringClass();
+            if (Modifier.isStatic(m.getModifiers())
+                || !Modifier.isPublic(declaringClass.getModifiers())
+                || !isVisible(declaringClass)
+                || !m.getReturnType().isPrimitive() && !isVisible(m.getReturnType())) {
+                return null;
+            }
+            try {
+                CallSite site = LambdaMetafactory.metafactory(
+                    LAMBDA_LOOKUP,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    LAMBDA_LOOKUP.unreflect(m),
+                    MethodType.methodType(m.getReturnType(), declaringClass).wrap()
+                );
+                return (Function<Node, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) { // NOPMD
+                LOG.debug("Cannot compile accessor of attribute {}, using a method handle", m, e);
+                return null;
+            }
+        }
+
+        private static boolean isVisible(Class<?> klass) {
+            try {
+                return Class.forName(klass.getName(), false, AttributeAxisIterator.class.getClassLoader()) == klass;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+
+        Attribute newAttribute(Node node) {
+            return getter != null ? InternalApiBridge.newAttribute(node, name, getter, method)
+                                  : new Attribute(node, name, methodHandle, method);
+        }
+
+        @Nullable Object getValue(Node node) {
+            try {
+                return getter != null ? getter.apply(node) : methodHandle.invokeExact(node);
+            } catch (Throwable e) { // NOPMD
+                LOG.debug("Exception while fetching attribute value", e);
+                return null;
+            }
         }
 
 
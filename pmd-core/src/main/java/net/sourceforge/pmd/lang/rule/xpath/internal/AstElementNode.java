@@ -19,6 +19,7 @@ import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
 import net.sourceforge.pmd.lang.rule.xpath.CommentNode;
 import net.sourceforge.pmd.lang.rule.xpath.TextNode;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 import net.sf.saxon.Configuration;
@@ -174,6 +175,10 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
 
     @Override
     public String getAttributeValue(NamespaceUri uri, String local) {
+        if (AttributeAxisIterator.hasDefaultAttributes(wrappedNode)) {
+            // fetch only this attribute, without creating the others
+            return AttributeAxisIterator.getStringValue(wrappedNode, local, getTreeInfo().getLogger());
+        }
         Attribute attribute = getLightAttributes().get(local);
         if (attribute != null) {
             getTreeInfo().getLogger().recordUsageOf(attribute);
@@ -0,0 +1,31 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
+
+import net.sf.saxon.Configuration;
+
+/**
+ * The Saxon configurations shared by the XPath queries of a rule set,
+ * one per XPath handler. The extension functions of a handler are
+ * registered once in its configuration, instead of once per query, and
+ * the queries agree with the configuration of the Saxon tree they share.
+ *
+ * <p>A scope is created when the rules of a rule set are initialized,
+ * so that its configurations are dropped with the rule set. This is not
+ * thread-safe, like the rules themselves.
+ */
+public final class SaxonConfigurationScope {
+
+    private final Map<XPathHandler, Configuration> configurations = new HashMap<>();
+
+    Configuration getConfiguration(XPathHandler xPathHandler) {
+        return configurations.computeIfAbsent(xPathHandler, SaxonXPathRuleQuery::newConfiguration);
+    }
+}
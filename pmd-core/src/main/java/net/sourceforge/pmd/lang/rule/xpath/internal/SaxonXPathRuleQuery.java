@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -29,7 +30,6 @@ import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
 import net.sf.saxon.Configuration;
 import net.sf.saxon.expr.Expression;
 import net.sf.saxon.expr.LocalVariableReference;
-import net.sf.saxon.lib.ExtensionFunctionDefinition;
 import net.sf.saxon.om.AtomicSequence;
 import net.sf.saxon.om.Item;
 import net.sf.saxon.om.NamePool;
@@ -76,7 +76,7 @@ public class SaxonXPathRuleQuery {
     Map<String, List<Expression>> nodeNameToXPaths = new HashMap<>();
 
     /**
-     * Representation of an XPath query, created at {@link #initialize()} using {@link #xpathExpr}.
+     * Representation of an XPath query, created at {@link #initialize(SaxonConfigurationScope)} using {@link #xpathExpr}.
      */
     XPathExpression xpathExpression;
 
@@ -88,13 +88,26 @@ public class SaxonXPathRuleQuery {
                                Map<PropertyDescriptor<?>, Object> properties,
                                XPathHandler xPathHandler,
                                DeprecatedAttrLogger logger) throws PmdXPathException {
+        this(xpathExpr, version, properties, xPathHandler, logger, new SaxonConfigurationScope());
+    }
+
+    /**
+     * Creates a query whose Saxon configuration is shared with the other
+     * queries created in the same scope, eg the queries of a rule set.
+     */
+    public SaxonXPathRuleQuery(String xpathExpr,
+                               XPathVersion version,
+                               Map<PropertyDescriptor<?>, Object> properties,
+                               XPathHandler xPathHandler,
+                               DeprecatedAttrLogger logger,
+                               SaxonConfigurationScope configurationScope) throws PmdXPathException {
         this.xpathExpr = xpathExpr;
         this.version = version;
         this.properties = properties;
         this.xPathHandler = xPathHandler;
         this.attrCtx = logger;
         try {
-            initialize();
+            initialize(configurationScope);
         } catch (XPathException e) {
             throw wrapException(e, Phase.INITIALIZATION);
         }
@@ -112,16 +125,27 @@ public class SaxonXPathRuleQuery {
 
 
     public List<Node> evaluate(final Node node) {
-        final AstTreeInfo documentNode = getDocumentNodeForRootNode(node);
+        // Map AST Node -> Saxon Node
+        final AstElementNode wrapper = getDocumentNodeForRootNode(node).findWrapperFor(node);
+        // XPath 2.0 sequences may contain duplicates
+        return evaluate(wrapper, new LinkedHashSet<>());
+    }
+
+    /**
+     * Evaluates the query on the wrapper of a node. The results are
+     * collected into the given set, which is cleared before and after
+     * the evaluation, so that it can be reused by the next evaluation.
+     *
+     * @return The results in document order
+     */
+    List<Node> evaluate(final AstElementNode wrapper, final Set<Node> results) {
+        final AstTreeInfo documentNode = wrapper.getTreeInfo();
         documentNode.setAttrCtx(attrCtx);
+        results.clear();
         try {
+            final XPathDynamicContext xpathDynamicContext = xpathExpression.createDynamicContext(wrapper);
 
-            // Map AST Node -> Saxon Node
-            final XPathDynamicContext xpathDynamicContext = xpathExpression.createDynamicContext(documentNode.findWrapperFor(node));
-
-            // XPath 2.0 sequences may contain duplicates
-            final Set<Node> results = new LinkedHashSet<>();
-            List<Expression> expressions = getExpressionsForLocalNameOrDefault(node.getXPathNodeName());
+            List<Expression> expressions = getExpressionsForLocalNameOrDefault(wrapper.getUnderlyingNode().getXPathNodeName());
             for (Expression expression : expressions) {
                 @SuppressWarnings("PMD.CloseResource")
                 SequenceIterator iterator = expression.iterate(xpathDynamicContext.getXPathContextObject());
@@ -136,6 +160,10 @@ public class SaxonXPathRuleQuery {
                 }
             }
 
+            if (results.isEmpty()) {
+                // the common case, don't allocate anything
+                return Collections.emptyList();
+            }
             final List<Node> sortedRes = new ArrayList<>(results);
             sortedRes.sort(RuleChainAnalyzer.documentOrderComparator());
             return sortedRes;
@@ -145,6 +173,7 @@ public class SaxonXPathRuleQuery {
             throw wrapException(e.getXPathException(), Phase.EVALUATION);
         } finally {
             documentNode.setAttrCtx(DeprecatedAttrLogger.noop());
+            results.clear();
         }
     }
 
@@ -176,7 +205,7 @@ public class SaxonXPathRuleQuery {
      *
      * @return the DocumentNode representing the whole AST
      */
-    private AstTreeInfo getDocumentNodeForRootNode(final Node node) {
+    AstTreeInfo getDocumentNodeForRootNode(final Node node) {
         final RootNode root = node.getRoot();
         return root.getUserMap().computeIfAbsent(SAXON_TREE_CACHE_KEY, () -> new AstTreeInfo(root, configuration));
     }
@@ -186,9 +215,8 @@ public class SaxonXPathRuleQuery {
         nodeNameToXPaths.computeIfAbsent(nodeName, n -> new ArrayList<>(2)).add(expression);
     }
 
-    private void initialize() throws XPathException {
-        this.configuration = Configuration.newConfiguration();
-        this.configuration.setNamePool(getNamePool());
+    private void initialize(SaxonConfigurationScope configurationScope) throws XPathException {
+        this.configuration = configurationScope.getConfiguration(xPathHandler);
 
         StaticContextWithProperties staticCtx = new StaticContextWithProperties(this.configuration);
         staticCtx.setXPathLanguageLevel(version == XPathVersion.XPATH_3_1 ? 31 : 20);
@@ -202,10 +230,8 @@ public class SaxonXPathRuleQuery {
         }
 
         for (XPathFunctionDefinition xpathFun : xPathHandler.getRegisteredExtensionFunctions()) {
-            ExtensionFunctionDefinition fun = new SaxonExtensionFunctionDefinitionAdapter(xpathFun);
-            StructuredQName qname = fun.getFunctionQName();
+            StructuredQName qname = new SaxonExtensionFunctionDefinitionAdapter(xpathFun).getFunctionQName();
             staticCtx.declareNamespace(qname.getPrefix(), qname.getNamespaceUri());
-            this.configuration.registerExtensionFunction(fun);
         }
 
         final XPathEvaluator xpathEvaluator = new XPathEvaluator(configuration);
@@ -216,6 +242,15 @@ public class SaxonXPathRuleQuery {
 
     }
 
+    static Configuration newConfiguration(XPathHandler xPathHandler) {
+        Configuration configuration = Configuration.newConfiguration();
+        configuration.setNamePool(getNamePool());
+        for (XPathFunctionDefinition xpathFun : xPathHandler.getRegisteredExtensionFunctions()) {
+            configuration.registerExtensionFunction(new SaxonExtensionFunctionDefinitionAdapter(xpathFun));
+        }
+        return configuration;
+    }
+
     private void analyzeXPathForRuleChain(final XPathEvaluator xpathEvaluator) {
         final Expression expr = xpathExpression.getInternalExpression();
 
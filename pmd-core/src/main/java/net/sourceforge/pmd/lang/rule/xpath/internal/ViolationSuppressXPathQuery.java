@@ -0,0 +1,96 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.InternalApiBridge;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.xpath.PmdXPathException;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
+import net.sourceforge.pmd.util.DataMap;
+import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
+
+/**
+ * The compiled {@link Rule#VIOLATION_SUPPRESS_XPATH_DESCRIPTOR violationSuppressXPath}
+ * of a rule. The query is compiled when the rule is initialized, so that
+ * an invalid expression is reported before the analysis, and not for each
+ * violation. It is then stored on the rule instance, like the query of an
+ * {@link net.sourceforge.pmd.lang.rule.xpath.XPathRule XPathRule}. The copies
+ * of the rule used by each thread are initialized, and compile it, separately.
+ *
+ * <p>The result of a query on a node is cached for the current file,
+ * in case the rule reports several violations on the same node.
+ */
+public final class ViolationSuppressXPathQuery {
+
+    /** Cache key for the results of the queries on the nodes of a file. */
+    private static final SimpleDataKey<Map<ViolationSuppressXPathQuery, Map<Node, Boolean>>> RESULTS_KEY =
+        DataMap.simpleDataKey("pmd.violationSuppressXPath.results");
+
+    private final SaxonXPathRuleQuery query;
+
+    private ViolationSuppressXPathQuery(SaxonXPathRuleQuery query) {
+        this.query = query;
+    }
+
+    /**
+     * Returns the compiled violationSuppressXPath of the rule, or null
+     * if the rule doesn't define one. Compiles it on the first call,
+     * which is when the rule is initialized.
+     *
+     * @param rule         A rule
+     * @param xPathHandler XPath handler of the language of the rule
+     *
+     * @throws PmdXPathException If the expression is invalid
+     */
+    public static @Nullable ViolationSuppressXPathQuery forRule(Rule rule, XPathHandler xPathHandler) {
+        Optional<String> xpath = rule.getProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR);
+        if (!xpath.isPresent()) {
+            return null;
+        }
+        ViolationSuppressXPathQuery compiled = InternalApiBridge.getViolationSuppressXPathQuery(rule);
+        if (compiled != null && compiled.getXPathExpression().equals(xpath.get())) {
+            return compiled;
+        }
+        compiled = new ViolationSuppressXPathQuery(
+            new SaxonXPathRuleQuery(
+                xpath.get(),
+                XPathVersion.DEFAULT,
+                rule.getPropertiesByPropertyDescriptor(),
+                xPathHandler,
+                DeprecatedAttrLogger.createForSuppression(rule)
+            )
+        );
+        InternalApiBridge.setViolationSuppressXPathQuery(rule, compiled);
+        return compiled;
+    }
+
+    public String getXPathExpression() {
+        return query.getXpathExpression();
+    }
+
+    /**
+     * Returns true if the query selects some nodes when evaluated on
+     * the given node. The result is cached in the user data of the root.
+     */
+    public boolean matches(Node node) {
+        Map<Node, Boolean> results = node.getRoot().getUserMap()
+                                         .computeIfAbsent(RESULTS_KEY, HashMap::new)
+                                         .computeIfAbsent(this, q -> new HashMap<>());
+        Boolean result = results.get(node);
+        if (result == null) {
+            result = !query.evaluate(node).isEmpty();
+            results.put(node, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * Evaluates the queries of several XPath rules on the same tree. The
+ * nodes are dispatched to the queries that visit them, usually all the
+ * queries that visit nodes with the same name in a row. These share the
+ * Saxon tree, the wrapper of the node, which is looked up once for all
+ * the queries, and the set in which results are collected.
+ *
+ * <p>The results of each query are routed to the key it was added with,
+ * for instance the rule and its context. A batch is not thread-safe.
+ *
+ * @param <K> Type of the keys
+ */
+public final class XPathRuleBatch<K> {
+
+    /** Collects the results of the query being evaluated, reused for all of them. */
+    private final Set<Node> results = new LinkedHashSet<>();
+    private SaxonXPathRuleQuery firstQuery;
+
+    /**
+     * Adds a query to the batch.
+     *
+     * @param key   Key to which the results of the query are routed
+     * @param query An initialized query
+     *
+     * @return The member of the batch that evaluates the query
+     */
+    public Member<K> add(K key, SaxonXPathRuleQuery query) {
+        if (firstQuery == null) {
+            firstQuery = query;
+        }
+        return new Member<>(this, key, query);
+    }
+
+    /**
+     * Returns the Saxon wrapper of the node, to be passed to {@link Member#evaluate(AstElementNode)}
+     * for each query that visits the node.
+     */
+    public AstElementNode wrap(Node node) {
+        return firstQuery.getDocumentNodeForRootNode(node).findWrapperFor(node);
+    }
+
+    /**
+     * A query of the batch.
+     *
+     * @param <K> Type of the key
+     */
+    public static final class Member<K> {
+
+        private final XPathRuleBatch<K> batch;
+        private final K key;
+        private final SaxonXPathRuleQuery query;
+
+        Member(XPathRuleBatch<K> batch, K key, SaxonXPathRuleQuery query) {
+            this.batch = batch;
+            this.key = key;
+            this.query = query;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * Evaluates the query on a node.
+         *
+         * @param wrapper Wrapper of the node, see {@link XPathRuleBatch#wrap(Node)}
+         *
+         * @return The nodes that the query selected, in document order
+         */
+        public List<Node> evaluate(AstElementNode wrapper) {
+            return query.evaluate(wrapper, batch.results);
+        }
+    }
+}
@@ -15,9 +15,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import net.sourceforge.pmd.lang.ast.AstInfo;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.Rule;
-import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
-import net.sourceforge.pmd.lang.rule.xpath.internal.DeprecatedAttrLogger;
-import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
+import net.sourceforge.pmd.lang.rule.xpath.internal.ViolationSuppressXPathQuery;
 import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
 
 /**
@@ -59,24 +57,13 @@ public interface ViolationSuppressor {
 
         @Override
         public @Nullable SuppressedViolation suppressOrNull(RuleViolation rv, @NonNull Node node) {
-            // todo this should not be implemented via a rule property
-            //  because the parsed xpath expression should be stored, not a random string
-            //  this needs to be checked to be a valid xpath expression in the ruleset,
-            //  not at the time it is evaluated, and also parsed by the XPath parser only once
-            Rule rule = rv.getRule();
-            Optional<String> xpath = rule.getProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR);
-            if (!xpath.isPresent()) {
-                return null;
-            }
-            SaxonXPathRuleQuery rq = new SaxonXPathRuleQuery(
-                xpath.get(),
-                XPathVersion.DEFAULT,
-                rule.getPropertiesByPropertyDescriptor(),
-                node.getAstInfo().getLanguageProcessor().services().getXPathHandler(),
-                DeprecatedAttrLogger.createForSuppression(rv.getRule())
+            // the query was compiled and validated when the rule was initialized
+            ViolationSuppressXPathQuery query = ViolationSuppressXPathQuery.forRule(
+                rv.getRule(),
+                node.getAstInfo().getLanguageProcessor().services().getXPathHandler()
             );
-            if (!rq.evaluate(node).isEmpty()) {
-                return new SuppressedViolation(rv, this, xpath.get());
+            if (query != null && query.matches(node)) {
+                return new SuppressedViolation(rv, this, query.getXPathExpression());
             }
             return null;
         }
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.util;
 
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -17,11 +18,14 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * The key can itself constrain the type of values, using its own type
  * parameter {@code T}.
  *
+ * <p>Data maps are not thread-safe, unless they are {@linkplain #makeConcurrent() made concurrent}.
+ *
  * @param <K> Type of keys in this map.
  */
 public final class DataMap<K> {
 
     private Map<DataKey<? extends K, ?>, Object> map;
+    private boolean concurrent;
 
     private DataMap() {
 
@@ -70,6 +74,18 @@ public final class DataMap<K> {
      */
     @SuppressWarnings("unchecked")
     public <T> T computeIfAbsent(DataKey<? extends K, T> key, Supplier<? extends T> supplier) {
+        if (concurrent) {
+            // don't hold the lock while computing, the supplier may use other data maps
+            T value = (T) map.get(key);
+            if (value == null) {
+                T computed = supplier.get();
+                value = (T) map.putIfAbsent(key, computed);
+                if (value == null) {
+                    value = computed;
+                }
+            }
+            return value;
+        }
         return (T) getMap().computeIfAbsent(key, k -> supplier.get());
     }
 
@@ -112,6 +128,26 @@ public final class DataMap<K> {
         return map != null && map.containsKey(key);
     }
 
+    /**
+     * Makes this map safe for use by several threads. This is used when
+     * the rules of a file are applied concurrently. The caller must make
+     * sure that the map is published safely to the other threads, which
+     * is the case if the map is accessed by them through tasks submitted
+     * after this call. Keys are still compared by reference.
+     *
+     * <p>With a concurrent map, {@link #computeIfAbsent(DataKey, Supplier) computeIfAbsent}
+     * may call the supplier several times if several threads compute the
+     * same key, and only the first result is retained.
+     *
+     * @since 7.1.0
+     */
+    public void makeConcurrent() {
+        if (!concurrent) {
+            map = Collections.synchronizedMap(map == null ? new IdentityHashMap<>(1) : map);
+            concurrent = true;
+        }
+    }
+
     public static <K> DataMap<K> newDataMap() {
         return new DataMap<>();
     }
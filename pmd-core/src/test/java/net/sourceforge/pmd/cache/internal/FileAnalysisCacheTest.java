@@ -10,6 +10,7 @@ import static net.sourceforge.pmd.util.CollectionUtil.setOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -25,6 +26,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -484,6 +486,90 @@ class FileAnalysisCacheTest {
                 "Cache believes a known, changed file is up to date");
     }
 
+    @Test
+    void testOnlyChangedResultsAreAppended() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        setupCacheWithFiles(newCacheFile, rs, cl);
+        final long initialLength = newCacheFile.length();
+
+        // nothing changed, the file is left as is
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(cache.isUpToDate(sourceFile));
+        cache.persist();
+        assertEquals(initialLength, newCacheFile.length());
+
+        // Edit the file, its new result is appended
+        sourceFileBackend.writeContents(TextFileContent.fromCharSeq("some text"));
+        sourceFile = TextDocument.create(sourceFileBackend);
+
+        final FileAnalysisCache updatedCache = new FileAnalysisCache(newCacheFile);
+        updatedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertFalse(updatedCache.isUpToDate(sourceFile));
+        updatedCache.persist();
+        assertTrue(newCacheFile.length() > initialLength, "Cache file should have grown");
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Appended result should supersede the previous one");
+    }
+
+    @Test
+    void testRulesetChangeRewritesCache() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        setupCacheWithFiles(newCacheFile, rs, cl);
+        final long initialLength = newCacheFile.length();
+
+        when(rs.getChecksum()).thenReturn(1L);
+        setupCacheWithFiles(newCacheFile, rs, cl);
+        assertEquals(initialLength, newCacheFile.length(), "Cache file should have been rewritten");
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    void testUnmodifiedFileIsUpToDateWithoutReading() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+        final Path sourcePath = tempFolder.resolve("Source.java");
+        // recently modified files have no fingerprint
+        Files.setLastModifiedTime(sourcePath, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertNull(cache.getUnchangedFileViolations(sourceFileBackend));
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertNotNull(reloadedCache.getUnchangedFileViolations(sourceFileBackend),
+                      "Unmodified file should be up to date without reading it");
+        reloadedCache.persist();
+
+        // Edit the file, it is read again
+        sourceFileBackend.writeContents(TextFileContent.fromCharSeq("some text"));
+        Files.setLastModifiedTime(sourcePath, FileTime.fromMillis(System.currentTimeMillis() - 30_000));
+
+        final FileAnalysisCache updatedCache = new FileAnalysisCache(newCacheFile);
+        updatedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertNull(updatedCache.getUnchangedFileViolations(sourceFileBackend));
+        assertFalse(updatedCache.isUpToDate(TextDocument.create(sourceFileBackend)));
+    }
+
+    @Test
+    void testRecentlyModifiedFileHasNoFingerprint() throws IOException {
+        Files.setLastModifiedTime(tempFolder.resolve("Source.java"), FileTime.fromMillis(System.currentTimeMillis()));
+        assertEquals(TextFile.UNKNOWN_STAT_FINGERPRINT, sourceFileBackend.getStatFingerprint());
+    }
+
     private void setupCacheWithFiles(final File cacheFile,
                                      final RuleSets ruleSets,
                                      final ClassLoader classLoader) throws IOException {
@@ -0,0 +1,218 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static java.util.Collections.emptyList;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+class SharedAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File cacheDir;
+
+    private final LanguageVersion dummyVersion = PmdCoreTestUtils.dummyVersion();
+
+    @BeforeEach
+    void setUp() {
+        cacheDir = tempFolder.resolve("shared-cache").toFile();
+    }
+
+    private TextFile sourceFile(String checkout, String contents) throws IOException {
+        Path file = tempFolder.resolve(checkout).resolve("Source.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, listOf(contents));
+        return TextFile.forPath(file, StandardCharsets.UTF_8, dummyVersion);
+    }
+
+    @Test
+    void testResultIsSharedBetweenCheckouts() throws IOException {
+        final TextFile firstBackend = sourceFile("first", "dummy text");
+        final TextDocument first = TextDocument.create(firstBackend);
+
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(firstBackend));
+        final FileAnalysisListener cacheListener = cache.startFileAnalysis(first);
+        assertFalse(cache.isUpToDate(first));
+
+        final RuleViolation rv = mock(RuleViolation.class);
+        final TextRange2d textLocation = TextRange2d.range2d(1, 2, 3, 4);
+        when(rv.getLocation()).thenReturn(FileLocation.range(first.getFileId(), textLocation));
+        final Rule rule = mock(Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+        when(rv.getRule()).thenReturn(rule);
+
+        cacheListener.onRuleViolation(rv);
+        cache.persist();
+
+        // the same contents in another checkout
+        final TextFile secondBackend = sourceFile("second", "dummy text");
+        final TextDocument second = TextDocument.create(secondBackend);
+
+        final SharedAnalysisCache reloadedCache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        reloadedCache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(secondBackend));
+        assertTrue(reloadedCache.isUpToDate(second), "Identical contents should share their result");
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(second);
+        assertEquals(1, cachedViolations.size(), "Cached rule violations count mismatch");
+        assertEquals(second.getFileId(), cachedViolations.get(0).getFileId());
+        assertEquals(textLocation.getStartLine(), cachedViolations.get(0).getBeginLine());
+    }
+
+    @Test
+    void testChangedContentsAreNotUpToDate() throws IOException {
+        final TextFile backend = sourceFile("first", "dummy text");
+        setupCacheWithFile(backend, mockRuleSets());
+
+        final TextFile editedBackend = sourceFile("second", "some other text");
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(editedBackend));
+        assertFalse(cache.isUpToDate(TextDocument.create(editedBackend)));
+    }
+
+    @Test
+    void testRulesetChangeIsNotUpToDate() throws IOException {
+        final TextFile backend = sourceFile("first", "dummy text");
+        final RuleSets rs = mockRuleSets();
+        setupCacheWithFile(backend, rs);
+
+        when(rs.getChecksum()).thenReturn(1L);
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(rs, mock(ClassLoader.class), setOf(backend));
+        assertFalse(cache.isUpToDate(TextDocument.create(backend)));
+    }
+
+    @Test
+    void testRulesetApplicabilityIsPartOfTheKey() throws IOException {
+        final RuleSet all = RuleSet.create("all", "desc", "all.xml", emptyList(), emptyList(), emptyList());
+        final RuleSet notSecond = RuleSet.create("notSecond", "desc", "notSecond.xml",
+                                                 listOf(Pattern.compile(".*second.*")), emptyList(), emptyList());
+        final RuleSets rs = mockRuleSets(all, notSecond);
+        setupCacheWithFile(sourceFile("first", "dummy text"), rs);
+
+        // same contents, but the second ruleset excludes this path
+        final TextFile backend = sourceFile("second", "dummy text");
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(rs, mock(ClassLoader.class), setOf(backend));
+        assertFalse(cache.isUpToDate(TextDocument.create(backend)));
+    }
+
+    @Test
+    void testLanguageVersionIsPartOfTheKey() throws IOException {
+        setupCacheWithFile(sourceFile("first", "dummy text"), mockRuleSets());
+
+        final Path file = tempFolder.resolve("second").resolve("Source.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, listOf("dummy text"));
+        final TextFile backend = TextFile.forPath(file, StandardCharsets.UTF_8, dummyVersion.getLanguage().getVersion("1.8"));
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(backend));
+        assertFalse(cache.isUpToDate(TextDocument.create(backend)));
+    }
+
+    @Test
+    void testLeastRecentlyUsedResultsAreEvicted() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            setupCacheWithFile(sourceFile("checkout" + i, "text " + i), mockRuleSets());
+        }
+        assertEquals(5, countResults());
+
+        // each result is a single int: 4 bytes
+        final TextFile backend = sourceFile("last", "last text");
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, 8);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(backend));
+        cache.isUpToDate(TextDocument.create(backend));
+        cache.persist();
+
+        assertTrue(countResults() <= 2, "Least recently used results should have been evicted");
+    }
+
+    @Test
+    void testNothingIsEvictedWhenNothingWasWritten() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            setupCacheWithFile(sourceFile("checkout" + i, "text " + i), mockRuleSets());
+        }
+
+        // a hit doesn't write anything, so the size is not checked
+        final TextFile backend = sourceFile("other", "text 0");
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, 8);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(backend));
+        assertTrue(cache.isUpToDate(TextDocument.create(backend)));
+        cache.persist();
+
+        assertEquals(5, countResults());
+    }
+
+    @Test
+    void testSizeIsRecomputedWhenNotRecorded() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            setupCacheWithFile(sourceFile("checkout" + i, "text " + i), mockRuleSets());
+        }
+        // like a cache written by a previous version
+        Files.write(cacheDir.toPath().resolve("cache.lock"), new byte[0]);
+
+        final TextFile backend = sourceFile("last", "last text");
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, 8);
+        cache.checkValidity(mockRuleSets(), mock(ClassLoader.class), setOf(backend));
+        cache.isUpToDate(TextDocument.create(backend));
+        cache.persist();
+
+        assertTrue(countResults() <= 2, "Least recently used results should have been evicted");
+    }
+
+    private long countResults() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir.toPath())) {
+            return files.filter(it -> it.toString().endsWith(".result")).collect(Collectors.counting());
+        }
+    }
+
+    private static RuleSets mockRuleSets(RuleSet... ruleSets) {
+        final RuleSets rs = mock(RuleSets.class);
+        when(rs.getAllRuleSets()).thenReturn(ruleSets);
+        return rs;
+    }
+
+    private void setupCacheWithFile(TextFile backend, RuleSets ruleSets) throws IOException {
+        final SharedAnalysisCache cache = new SharedAnalysisCache(cacheDir, SharedAnalysisCache.DEFAULT_MAX_SIZE);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), setOf(backend));
+        cache.isUpToDate(TextDocument.create(backend));
+        cache.persist();
+    }
+}
@@ -15,6 +15,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -187,6 +189,90 @@ class CpdAnalysisTest {
         }
     }
 
+    @Test
+    void testMultiThreadedTokenizationIsDeterministic() throws Exception {
+        Path dup1 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup1.txt");
+        Path dup2 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup2.txt");
+
+        config.setThreads(0);
+        List<String> sequentialMatches = describeMatches(dup1, dup2);
+        assertFalse(sequentialMatches.isEmpty());
+
+        config.setThreads(4);
+        assertEquals(sequentialMatches, describeMatches(dup1, dup2));
+    }
+
+    @Test
+    void testCachedTokensAreReusedUntilFileChanges() throws Exception {
+        Path dup1 = Files.copy(Paths.get(BASE_TEST_RESOURCE_PATH, "dup1.txt"), tempDir.resolve("dup1.txt"));
+        Path dup2 = Files.copy(Paths.get(BASE_TEST_RESOURCE_PATH, "dup2.txt"), tempDir.resolve("dup2.txt"));
+        Path cacheFile = tempDir.resolve("cpd.cache");
+
+        List<String> uncachedMatches = describeMatches(dup1, dup2);
+        assertFalse(uncachedMatches.isEmpty());
+
+        config.setCacheLocation(cacheFile);
+        assertEquals(uncachedMatches, describeMatches(dup1, dup2));
+        assertTrue(Files.exists(cacheFile));
+        // now the tokens are read from the cache
+        assertEquals(uncachedMatches, describeMatches(dup1, dup2));
+
+        Files.write(dup2, "no longer a duplicate".getBytes(StandardCharsets.UTF_8));
+        assertTrue(describeMatches(dup1, dup2).isEmpty());
+    }
+
+    @Test
+    void testCachedMatchesAreTheFullOnes() throws Exception {
+        Path dup1 = Files.copy(Paths.get(BASE_TEST_RESOURCE_PATH, "dup1.txt"), tempDir.resolve("dup1.txt"));
+        Path dup2 = Files.copy(Paths.get(BASE_TEST_RESOURCE_PATH, "dup2.txt"), tempDir.resolve("dup2.txt"));
+        Path dup3 = Files.copy(dup1, tempDir.resolve("dup3.txt"));
+        Path cacheFile = tempDir.resolve("cpd.cache");
+
+        assertCachedMatchesAreTheFullOnes(cacheFile, dup1, dup2, dup3);
+
+        Files.write(dup3, "no longer a duplicate".getBytes(StandardCharsets.UTF_8));
+        assertCachedMatchesAreTheFullOnes(cacheFile, dup1, dup2, dup3);
+
+        // changed back, and a file removed
+        Files.copy(dup1, dup3, StandardCopyOption.REPLACE_EXISTING);
+        assertCachedMatchesAreTheFullOnes(cacheFile, dup1, dup3);
+
+        // the file added back
+        assertCachedMatchesAreTheFullOnes(cacheFile, dup1, dup2, dup3);
+
+        // another tile size
+        config.setMinimumTileSize(20);
+        assertCachedMatchesAreTheFullOnes(cacheFile, dup1, dup2, dup3);
+    }
+
+    private void assertCachedMatchesAreTheFullOnes(Path cacheFile, Path... files) throws IOException {
+        config.setCacheLocation(null);
+        List<String> fullMatches = describeMatches(files);
+        assertFalse(fullMatches.isEmpty());
+
+        config.setCacheLocation(cacheFile);
+        assertEquals(fullMatches, describeMatches(files));
+        // now all the matches are read from the cache
+        assertEquals(fullMatches, describeMatches(files));
+    }
+
+    private List<String> describeMatches(Path... files) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            for (Path file : files) {
+                assertTrue(cpd.files().addFile(file));
+            }
+            cpd.performAnalysis(report -> {
+                for (Match match : report.getMatches()) {
+                    for (Mark mark : match) {
+                        result.add(match.getTokenCount() + " " + mark.getToken().getIdentifier() + " " + mark.getLocation().startPosToStringWithFile());
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
     @Test
     void duplicatedFilesShouldBeSkipped() throws IOException {
         String filename = "file1.dummy";
@@ -65,4 +65,29 @@ class MatchAlgorithmTest {
         assertEquals(fileName, mark2.getLocation().getFileId());
         assertEquals(LINE_4 + "\n", sourceManager.getSlice(mark2).toString());
     }
+
+    @Test
+    void testMatchWithSeveralMarksAcrossFiles() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        CpdLexer cpdLexer = dummy.createCpdLexer(dummy.newPropertyBundle());
+        TextFile foo = TextFile.forCharSeq(getSampleCode(), FileId.fromPathLikeString("Foo.dummy"), dummy.getDefaultVersion());
+        TextFile bar = TextFile.forCharSeq(LINE_3 + "\n" + LINE_8, FileId.fromPathLikeString("Bar.dummy"), dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(foo, bar));
+        Tokens tokens = new Tokens();
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(foo), tokens);
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(bar), tokens);
+
+        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, 5);
+        List<Match> matches = matchAlgorithm.findMatches(new CPDNullListener(), sourceManager);
+        assertEquals(1, matches.size());
+        Match match = matches.get(0);
+        assertEquals(3, match.getMarkCount());
+
+        Iterator<Mark> marks = match.iterator();
+        assertEquals(3, marks.next().getLocation().getStartLine());
+        assertEquals(4, marks.next().getLocation().getStartLine());
+        Mark inBar = marks.next();
+        assertEquals(bar.getFileId(), inBar.getLocation().getFileId());
+        assertEquals(1, inBar.getLocation().getStartLine());
+    }
 }
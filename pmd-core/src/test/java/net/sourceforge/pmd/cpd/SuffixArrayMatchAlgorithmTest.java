@@ -0,0 +1,76 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+class SuffixArrayMatchAlgorithmTest {
+
+    private static final String FOO = "public class Foo {\n"
+        + " public void bar() {\n"
+        + "  System.out.println(\"hello\");\n"
+        + "  System.out.println(\"hello\");\n"
+        + "  int i = 5;\n"
+        + "  System.out.print(\"hello\");\n"
+        + " }\n"
+        + "}";
+
+    private static final String BAR = "public class Bar {\n"
+        + " public void bar() {\n"
+        + "  System.out.println(\"hello\");\n"
+        + "  int i = 5;\n"
+        + "  System.out.print(\"hello\");\n"
+        + " }\n"
+        + "}";
+
+    @Test
+    void testSuffixArray() {
+        // b a n a n a $
+        int[] text = {2, 1, 3, 1, 3, 1, 0};
+        int[] sa = SuffixArrayMatchAlgorithm.buildSuffixArray(text);
+        assertArrayEquals(new int[] {6, 5, 3, 1, 0, 4, 2}, sa);
+        assertArrayEquals(new int[] {0, 0, 1, 3, 0, 0, 2}, SuffixArrayMatchAlgorithm.buildLcpArray(text, sa));
+    }
+
+    @Test
+    void testSameMatchesAsHashAlgorithm() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        CpdLexer cpdLexer = dummy.createCpdLexer(dummy.newPropertyBundle());
+        TextFile foo = TextFile.forCharSeq(FOO, FileId.fromPathLikeString("Foo.dummy"), dummy.getDefaultVersion());
+        TextFile bar = TextFile.forCharSeq(BAR, FileId.fromPathLikeString("Bar.dummy"), dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(foo, bar));
+        Tokens tokens = new Tokens();
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(foo), tokens);
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(bar), tokens);
+
+        // the same index answers several tile sizes
+        SuffixArrayMatchAlgorithm suffixArrayAlgorithm = new SuffixArrayMatchAlgorithm(tokens);
+        for (int minTileSize = 1; minTileSize <= 20; minTileSize++) {
+            List<Match> expected = new MatchAlgorithm(tokens, minTileSize).findMatches(new CPDNullListener(), sourceManager);
+            List<Match> actual = suffixArrayAlgorithm.findMatches(new CPDNullListener(), minTileSize);
+            assertEquals(describeMatches(expected), describeMatches(actual), "Tile size " + minTileSize);
+        }
+    }
+
+    private static List<String> describeMatches(List<Match> matches) {
+        return matches.stream()
+                      .map(match -> match.getTokenCount() + " tokens at " + match.getMarkSet().stream()
+                          .map(mark -> mark.getToken().getIndex() + "-" + mark.getEndToken().getIndex())
+                          .collect(Collectors.joining(", ")))
+                      .collect(Collectors.toList());
+    }
+}
@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -22,6 +23,9 @@ import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Semaphore;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -94,6 +98,125 @@ class ClasspathClassLoaderTest {
         }
     }
 
+    @Test
+    void loadFromSeveralEntriesInClasspathOrder() throws IOException {
+        Path directory = tempDir.resolve("classes");
+        Files.createDirectories(directory.resolve("net/sourceforge/pmd"));
+        Files.write(directory.resolve(CUSTOM_JAR_RESOURCE), "Directory\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("net/sourceforge/pmd/Other.txt"), "Other\n".getBytes(StandardCharsets.UTF_8));
+        Path jarPath = prepareCustomJar();
+        String classpath = jarPath + File.pathSeparator + directory;
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(classpath, ClasspathClassLoader.class.getClassLoader())) {
+            // the jar comes first
+            assertEquals(CUSTOM_JAR_RESOURCE_CONTENT, readResource(loader, CUSTOM_JAR_RESOURCE));
+            // only in the directory
+            assertEquals("Other\n", readResource(loader, "net/sourceforge/pmd/Other.txt"));
+            // a package that is in none of the entries, found in the parent
+            assertNotNull(readResource(loader, "java/lang/Object.class"));
+            assertNull(loader.getResourceAsStream("net/sourceforge/pmd/Missing.txt"));
+            assertNull(loader.getResourceAsStream("not/a/pkg/Missing.txt"));
+        }
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(directory + File.pathSeparator + jarPath, ClasspathClassLoader.class.getClassLoader())) {
+            // the directory comes first
+            assertEquals("Directory\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+            assertEquals(CUSTOM_JAR_RESOURCE_CONTENT, readResource(loader, CUSTOM_JAR_RESOURCE2));
+        }
+    }
+
+    @Test
+    void openResourceTellsItsEntry() throws IOException {
+        Path directory = tempDir.resolve("classes");
+        Files.createDirectories(directory.resolve("net/sourceforge/pmd"));
+        Files.write(directory.resolve("net/sourceforge/pmd/Other.txt"), "Other\n".getBytes(StandardCharsets.UTF_8));
+        Path jarPath = prepareCustomJar();
+        String classpath = jarPath + File.pathSeparator + directory;
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(classpath, ClasspathClassLoader.class.getClassLoader())) {
+            assertEquals(loader.getURLs()[0].toString(), openedEntry(loader, CUSTOM_JAR_RESOURCE));
+            assertEquals(loader.getURLs()[1].toString(), openedEntry(loader, "net/sourceforge/pmd/Other.txt"));
+            // found in a jar of the parent
+            String testJar = openedEntry(loader, "org/junit/jupiter/api/Test.class");
+            assertNotNull(testJar);
+            assertTrue(testJar.startsWith("file:"), testJar);
+            assertNull(ClasspathClassLoader.openResource(loader, "net/sourceforge/pmd/Missing.txt"));
+        }
+    }
+
+    private static String openedEntry(ClassLoader loader, String name) throws IOException {
+        ClasspathClassLoader.OpenedResource resource = ClasspathClassLoader.openResource(loader, name);
+        assertNotNull(resource, name);
+        try (InputStream in = resource.getStream()) {
+            assertNotNull(in);
+        }
+        return resource.getEntry();
+    }
+
+    @Test
+    void loadFromManifestClasspathAfterTheJar() throws IOException {
+        Path lib = Files.createDirectories(tempDir.resolve("lib"));
+        Path dependency = prepareJar(lib.resolve("dependency.jar"), null, CUSTOM_JAR_RESOURCE, "Dependency\n");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "lib/dependency.jar");
+        Path main = prepareJar(tempDir.resolve("main.jar"), manifest, "net/sourceforge/pmd/Main.txt", "Main\n");
+        Path directory = tempDir.resolve("classes");
+        Files.createDirectories(directory.resolve("net/sourceforge/pmd"));
+        Files.write(directory.resolve(CUSTOM_JAR_RESOURCE), "Directory\n".getBytes(StandardCharsets.UTF_8));
+
+        String classpath = main + File.pathSeparator + directory + File.pathSeparator + dependency;
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(classpath, ClasspathClassLoader.class.getClassLoader())) {
+            assertEquals("Main\n", readResource(loader, "net/sourceforge/pmd/Main.txt"));
+            // the dependency comes right after the jar that references it
+            assertEquals("Dependency\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+        }
+    }
+
+    @Test
+    void loadFromMultiReleaseJar() throws IOException {
+        int runtimeVersion = Integer.parseInt(System.getProperty("java.specification.version").replaceFirst("^1\\.", ""));
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Multi-Release"), "true");
+        Path jar = tempDir.resolve("multi.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            writeEntry(out, CUSTOM_JAR_RESOURCE, "Base\n");
+            writeEntry(out, "META-INF/versions/9/" + CUSTOM_JAR_RESOURCE, "Java 9\n");
+            writeEntry(out, "META-INF/versions/" + (runtimeVersion + 1) + "/" + CUSTOM_JAR_RESOURCE, "Future\n");
+            writeEntry(out, "META-INF/versions/9/net/sourceforge/pmd/Versioned.txt", "Versioned\n");
+        }
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jar.toString(), ClasspathClassLoader.class.getClassLoader())) {
+            if (runtimeVersion >= 9) {
+                assertEquals("Java 9\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+                assertEquals("Versioned\n", readResource(loader, "net/sourceforge/pmd/Versioned.txt"));
+            } else {
+                assertEquals("Base\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+                assertNull(readResource(loader, "net/sourceforge/pmd/Versioned.txt"));
+            }
+        }
+    }
+
+    private static Path prepareJar(Path jarPath, Manifest manifest, String resource, String content) throws IOException {
+        try (ZipOutputStream out = manifest == null ? new ZipOutputStream(Files.newOutputStream(jarPath))
+                                                    : new JarOutputStream(Files.newOutputStream(jarPath), manifest)) {
+            writeEntry(out, resource, content);
+        }
+        return jarPath;
+    }
+
+    private static void writeEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readResource(ClassLoader loader, String name) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            return in == null ? null : IOUtil.readToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * @see <a href="https://github.com/pmd/pmd/issues/4899">[java] Parsing failed in ParseLock#doParse() java.io.IOException: Stream closed #4899</a>
      */
@@ -0,0 +1,117 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.Dummy2LanguageModule;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.Language;
+
+class AnalysisSchedulerTest {
+
+    private final Language dummy = DummyLanguageModule.getInstance();
+    private final Language dummy2 = Dummy2LanguageModule.getInstance();
+
+    @Test
+    void testConcurrencyIsLimitedAcrossLanguages() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2)) {
+            List<AnalysisScheduler.Batch> batches = new ArrayList<>();
+            for (Language language : listOf(dummy, dummy2, dummy, dummy2)) {
+                batches.add(scheduler.submit(language, 10, i -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }));
+            }
+            for (AnalysisScheduler.Batch batch : batches) {
+                assertNull(batch.await());
+            }
+            assertTrue(maxRunning.get() <= 2, "At most 2 files should be processed at a time, got " + maxRunning.get());
+            assertEquals(20, scheduler.getLanguageStatistics().get(dummy).getFileCount());
+            assertEquals(20, scheduler.getLanguageStatistics().get(dummy2).getFileCount());
+        }
+    }
+
+    @Test
+    void testBatchesAreServedInTurn() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstFileStarted = new CountDownLatch(1);
+        CountDownLatch secondBatchSubmitted = new CountDownLatch(1);
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(1)) {
+            AnalysisScheduler.Batch first = scheduler.submit(dummy, 3, i -> {
+                if (i == 0) {
+                    firstFileStarted.countDown();
+                    try {
+                        secondBatchSubmitted.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                order.add("a" + i);
+            });
+            firstFileStarted.await();
+            AnalysisScheduler.Batch second = scheduler.submit(dummy2, 3, i -> order.add("b" + i));
+            secondBatchSubmitted.countDown();
+            first.await();
+            second.await();
+        }
+        assertEquals(listOf("a0", "a1", "b0", "a2", "b1", "b2"), order);
+    }
+
+    @Test
+    void testFailuresAreReportedWhenAwaiting() throws InterruptedException {
+        IllegalStateException failure = new IllegalStateException("first");
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(1)) {
+            AnalysisScheduler.Batch batch = scheduler.submit(dummy, 3, i -> {
+                if (i == 0) {
+                    throw failure;
+                } else if (i == 2) {
+                    throw new IllegalStateException("second");
+                }
+            });
+            assertSame(failure, batch.await());
+            assertEquals(1, failure.getSuppressed().length);
+            assertEquals(3, scheduler.getLanguageStatistics().get(dummy).getFileCount());
+        }
+    }
+
+    @Test
+    void testTasksOfAFileDontWaitForAnIdleThread() throws InterruptedException {
+        AtomicInteger tasks = new AtomicInteger();
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(1)) {
+            // the only thread is busy with the file, so it runs all the tasks itself
+            AnalysisScheduler.Batch batch = scheduler.submit(dummy, 1, i -> {
+                try {
+                    scheduler.invokeAll(4, task -> tasks.incrementAndGet());
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            assertNull(batch.await());
+            assertEquals(4, tasks.get());
+            // tasks are not files
+            assertEquals(1, scheduler.getLanguageStatistics().get(dummy).getFileCount());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextFileContent;
+
+class FilePrefetcherTest {
+
+    private final LanguageVersion lv = DummyLanguageModule.getInstance().getDefaultVersion();
+
+    @Test
+    void testPrefetchedContents() throws IOException {
+        List<TextFile> files = listOf(
+            TextFile.forCharSeq("a", FileId.fromPathLikeString("a.dummy"), lv),
+            TextFile.forCharSeq("bb", FileId.fromPathLikeString("b.dummy"), lv),
+            TextFile.forCharSeq("ccc", FileId.fromPathLikeString("c.dummy"), lv)
+        );
+
+        try (FilePrefetcher prefetcher = new FilePrefetcher(Executors.newFixedThreadPool(2), files, 1, f -> true)) {
+            for (int i = 0; i < files.size(); i++) {
+                TextFile prefetched = prefetcher.take(i);
+                assertEquals(files.get(i).getFileId(), prefetched.getFileId());
+                assertEquals(files.get(i).readContents().getNormalizedText(), prefetched.readContents().getNormalizedText());
+            }
+        }
+    }
+
+    @Test
+    void testSkippedFilesAreNotReadAhead() throws Exception {
+        CountingTextFile skipped = new CountingTextFile("a", "a.dummy");
+        CountingTextFile read = new CountingTextFile("bb", "b.dummy");
+        List<TextFile> files = listOf(skipped, read);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (FilePrefetcher prefetcher = new FilePrefetcher(executor, files, 2, f -> f != skipped)) { // NOPMD CompareObjectsWithEquals
+            TextFile first = prefetcher.take(0);
+            TextFile second = prefetcher.take(1);
+            assertEquals("bb", second.readContents().getNormalizedText().toString());
+            // the tasks are done in order on the single thread
+            assertEquals(0, skipped.reads.get());
+            assertEquals(1, read.reads.get());
+
+            // a skipped file may still be read, by the analysis thread
+            assertEquals("a", first.readContents().getNormalizedText().toString());
+            assertEquals(1, skipped.reads.get());
+        }
+    }
+
+    @Test
+    void testVirtualThreadsAreOptional() {
+        // null on JVMs older than 21
+        try (FilePrefetcher prefetcher = FilePrefetcher.create(listOf(new CountingTextFile("a", "a.dummy")), 1, f -> true)) {
+            if (prefetcher != null) {
+                assertEquals(FileId.fromPathLikeString("a.dummy"), prefetcher.take(0).getFileId());
+            }
+        }
+    }
+
+    private final class CountingTextFile implements TextFile {
+
+        private final TextFile delegate;
+        final AtomicInteger reads = new AtomicInteger();
+
+        CountingTextFile(String text, String path) {
+            this.delegate = TextFile.forCharSeq(text, FileId.fromPathLikeString(path), lv);
+        }
+
+        @Override
+        public @NonNull LanguageVersion getLanguageVersion() {
+            return delegate.getLanguageVersion();
+        }
+
+        @Override
+        public FileId getFileId() {
+            return delegate.getFileId();
+        }
+
+        @Override
+        public TextFileContent readContents() throws IOException {
+            reads.incrementAndGet();
+            return delegate.readContents();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
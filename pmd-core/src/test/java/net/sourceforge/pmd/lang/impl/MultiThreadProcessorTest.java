@@ -4,17 +4,23 @@
 
 package net.sourceforge.pmd.lang.impl;
 
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.reporting.RuleContext;
@@ -59,6 +65,33 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
                 Mockito.any(Error.class));
     }
 
+    @Test
+    void testMoreFilesThanThreads() {
+        try (PmdAnalysis pmd = createPmdAnalysis()) {
+            LanguageVersion lv = DummyLanguageModule.getInstance().getDefaultVersion();
+            for (int i = 0; i < 20; i++) {
+                pmd.files().addFile(TextFile.forCharSeq("abc", FileId.fromPathLikeString("file" + i + ".dummy"), lv));
+            }
+            pmd.addRuleSet(RuleSet.forSingleRule(new RuleThatThrowsException()));
+            pmd.performAnalysis();
+        }
+
+        // every file is processed even though only two are in flight at a time
+        assertEquals(22, reportListener.files.get());
+        assertEquals(22, reportListener.errors.get());
+    }
+
+    @Test
+    void testLargestFilesFirst() {
+        LanguageVersion lv = DummyLanguageModule.getInstance().getDefaultVersion();
+        TextFile small = TextFile.forCharSeq("a", FileId.fromPathLikeString("small.dummy"), lv);
+        TextFile big = TextFile.forCharSeq("abcdef", FileId.fromPathLikeString("big.dummy"), lv);
+        TextFile medium = TextFile.forCharSeq("abc", FileId.fromPathLikeString("medium.dummy"), lv);
+
+        List<TextFile> sorted = MultiThreadProcessor.largestFirst(listOf(small, big, medium));
+        assertEquals(listOf(big, medium, small), sorted);
+    }
+
     // TODO: Dysfunctional rules are pruned upstream of the processor.
     //
     //    @Test
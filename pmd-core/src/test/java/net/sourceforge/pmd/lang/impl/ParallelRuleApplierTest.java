@@ -0,0 +1,166 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static java.util.Collections.emptyList;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.PropertyFactory;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+class ParallelRuleApplierTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @Test
+    void testRulesAreDistributedRoundRobin() {
+        List<Rule> rules = listOf(new MockRule(), new MockRule(), new MockRule(), new MockRule(), new MockRule());
+        assertEquals(listOf(listOf(0, 2, 4), listOf(1, 3)), ParallelRuleApplier.splitRules(rules, 2));
+        assertEquals(listOf(listOf(0), listOf(1)), ParallelRuleApplier.splitRules(rules.subList(0, 2), 4));
+    }
+
+    @Test
+    void testRulesUsingTheSaxonTreeAreInTheFirstGroup() {
+        Rule suppressed = new MockRule();
+        suppressed.setProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR, Optional.of("."));
+        List<Rule> rules = listOf(new MockRule(), new XPathRule(XPathVersion.DEFAULT, "//a"), new MockRule(), suppressed);
+        assertEquals(listOf(listOf(0, 1, 3), listOf(2)), ParallelRuleApplier.splitRules(rules, 2));
+    }
+
+    @Test
+    void testAppliesToLargeFilesOfSupportingLanguages() {
+        DummyRootNode root = helper.parse("(a)\n(b)\n(c)");
+        LanguageVersionHandler handler = new DummyLanguageModule.Handler();
+        ThreadLocal<RuleSets> noRules = ThreadLocal.withInitial(() -> new RuleSets(emptyList()));
+
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2, 3)) {
+            assertTrue(new ParallelRuleApplier(scheduler, noRules).appliesTo(root, handler));
+        }
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2, 4)) {
+            assertFalse(new ParallelRuleApplier(scheduler, noRules).appliesTo(root, handler));
+        }
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(1, 1)) {
+            assertFalse(new ParallelRuleApplier(scheduler, noRules).appliesTo(root, handler));
+        }
+        // the language doesn't opt in
+        LanguageVersionHandler unsupported = () -> DummyLanguageModule::readLispNode;
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2, 1)) {
+            assertFalse(new ParallelRuleApplier(scheduler, noRules).appliesTo(root, unsupported));
+        }
+    }
+
+    @Test
+    void testViolationsAreReplayedInGroupOrder() throws InterruptedException {
+        // the first group is the slowest, so the second one finishes first
+        RuleSets ruleSets = new RuleSets(ruleSet(new ReportingRule("A", 200), new ReportingRule("B", 0), new ReportingRule("C", 0)));
+        ThreadLocal<RuleSets> copies = ThreadLocal.withInitial(() -> new RuleSets(ruleSets));
+        DummyRootNode root = helper.parse("(a(b))(c)");
+
+        List<String> violations = new ArrayList<>();
+        FileAnalysisListener listener = new FileAnalysisListener() {
+            @Override
+            public void onRuleViolation(RuleViolation violation) {
+                violations.add(violation.getDescription());
+            }
+        };
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2, 1)) {
+            new ParallelRuleApplier(scheduler, copies).apply(root, listener);
+        }
+
+        // groups [A, C] and [B], each rule reports the nodes in preorder
+        assertEquals(listOf("A ", "A a", "A b", "A c",
+                            "C ", "C a", "C b", "C c",
+                            "B ", "B a", "B b", "B c"),
+                     violations);
+    }
+
+    @Test
+    void testReportIsTheSameAsWithASingleThread() {
+        List<String> expected = runAnalysis(0);
+        assertEquals(16, expected.size());
+        assertEquals(expected, runAnalysis(1));
+    }
+
+    private static List<String> runAnalysis(int parallelRulesThreshold) {
+        PMDConfiguration config = new PMDConfiguration();
+        config.setThreads(2);
+        config.setIgnoreIncrementalAnalysis(true);
+        config.setParallelRulesThreshold(parallelRulesThreshold);
+        try (PmdAnalysis pmd = PmdAnalysis.create(config)) {
+            pmd.addRuleSet(ruleSet(new ReportingRule("A", 0), new ReportingRule("B", 0), new ReportingRule("C", 0), new ReportingRule("D", 0)));
+            pmd.files().addSourceFile(FileId.fromPathLikeString("file.dummy"), "(a(b))\n(c)");
+            Report report = pmd.performAnalysisAndCollectReport();
+            assertEquals(emptyList(), report.getProcessingErrors());
+            return report.getViolations().stream()
+                         .map(rv -> rv.getBeginLine() + ":" + rv.getBeginColumn() + " " + rv.getDescription())
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+    }
+
+    private static RuleSet ruleSet(Rule... rules) {
+        return RuleSet.create("rs", "desc", "rs.xml", emptyList(), emptyList(), Arrays.asList(rules));
+    }
+
+    /** Reports each node of the tree, with the name of the rule and the image of the node. */
+    private static final class ReportingRule extends AbstractRule {
+
+        private static final PropertyDescriptor<Integer> SLEEP_MILLIS =
+            PropertyFactory.intProperty("sleepMillis").desc("Time to sleep before reporting").defaultValue(0).build();
+
+        ReportingRule() {
+            setLanguage(DummyLanguageModule.getInstance());
+            definePropertyDescriptor(SLEEP_MILLIS);
+        }
+
+        ReportingRule(String name, int sleepMillis) {
+            this();
+            setName(name);
+            setProperty(SLEEP_MILLIS, sleepMillis);
+        }
+
+        @Override
+        public void apply(Node target, RuleContext ctx) {
+            try {
+                Thread.sleep(getProperty(SLEEP_MILLIS));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            target.descendantsOrSelf().forEach(node -> ctx.addViolationWithMessage(node, getName() + " " + node.getImage()));
+        }
+    }
+}
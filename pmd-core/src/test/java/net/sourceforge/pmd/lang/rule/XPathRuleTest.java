@@ -6,22 +6,36 @@ package net.sourceforge.pmd.lang.rule;
 
 import static net.sourceforge.pmd.PmdCoreTestUtils.setDummyLanguage;
 import static net.sourceforge.pmd.reporting.ReportTestUtil.getReportForRuleApply;
+import static net.sourceforge.pmd.reporting.ReportTestUtil.getReportForRuleSetApply;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
 import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
 import net.sourceforge.pmd.lang.ast.DummyNodeWithDeprecatedAttribute;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.TestMessageReporter;
 import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
 import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
 import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleContext;
 
 import com.github.stefanbirkner.systemlambda.SystemLambda;
 
@@ -133,6 +147,83 @@ class XPathRuleTest {
         assertThat(report.getViolations(), hasSize(1));
     }
 
+    @Test
+    void testRulesOfARuleSetReportTheirOwnViolations() {
+        XPathRule onB = makeXPath("//dummyNode[@Image='b']");
+        onB.setName("OnB");
+        XPathRule onAll = makeXPath("//dummyRootNode | //dummyNode");
+        onAll.setName("OnAll");
+        XPathRule onFirst = makeXPath("(//dummyNode)[1]");
+        onFirst.setName("OnFirst");
+        RuleSet ruleSet = RuleSet.create("rs", "desc", "rs.xml", Collections.emptyList(), Collections.emptyList(),
+                                         listOf(onB, onAll, onFirst));
+
+        // the XPath rules are evaluated together, node by node
+        Report report = getReportForRuleSetApply(ruleSet, helper.parse("(a(b)(c))"));
+
+        Map<String, Long> violationsByRule = report.getViolations().stream()
+                                                   .collect(Collectors.groupingBy(v -> v.getRule().getName(), Collectors.counting()));
+        assertEquals(1L, violationsByRule.get("OnB"));
+        assertEquals(4L, violationsByRule.get("OnAll"));
+        assertEquals(1L, violationsByRule.get("OnFirst"));
+    }
+
+    @Test
+    void testRulesOfARuleSetAreAppliedInDeclarationOrder() {
+        XPathRule first = makeXPath("//dummyRootNode");
+        first.setName("First");
+        Rule java = new AbstractRule() {
+            @Override
+            public void apply(Node target, RuleContext ctx) {
+                ctx.addViolation(target);
+            }
+        };
+        setDummyLanguage(java);
+        java.setName("Java");
+        java.setMessage("gotcha");
+        XPathRule last = makeXPath("//dummyRootNode");
+        last.setName("Last");
+        RuleSets ruleSets = new RuleSets(RuleSet.create("rs", "desc", "rs.xml", Collections.emptyList(), Collections.emptyList(),
+                                                        listOf(first, java, last)));
+
+        DummyRootNode root = helper.parse("(a)");
+        ruleSets.initializeRules(LanguageProcessorRegistry.singleton(root.getAstInfo().getLanguageProcessor()), new TestMessageReporter());
+        List<String> order = new ArrayList<>();
+        ruleSets.apply(root, violation -> order.add(violation.getRule().getName()));
+
+        assertEquals(listOf("First", "Java", "Last"), order);
+    }
+
+    @Test
+    void testNodesAreDispatchedToAllTheRulesInASinglePass() {
+        Rule java = new AbstractRule() {
+            @Override
+            protected @NonNull RuleTargetSelector buildTargetSelector() {
+                return RuleTargetSelector.forTypes(DummyNode.class);
+            }
+
+            @Override
+            public void apply(Node target, RuleContext ctx) {
+                ctx.addViolation(target);
+            }
+        };
+        setDummyLanguage(java);
+        java.setName("Java");
+        java.setMessage("gotcha");
+        XPathRule xpath = makeXPath("//dummyNode");
+        xpath.setName("XPath");
+        RuleSets ruleSets = new RuleSets(RuleSet.create("rs", "desc", "rs.xml", Collections.emptyList(), Collections.emptyList(),
+                                                        listOf(java, xpath)));
+
+        DummyRootNode root = helper.parse("(a(b))");
+        ruleSets.initializeRules(LanguageProcessorRegistry.singleton(root.getAstInfo().getLanguageProcessor()), new TestMessageReporter());
+        List<String> order = new ArrayList<>();
+        ruleSets.apply(root, violation -> order.add(violation.getRule().getName()));
+
+        // the root, then each node in preorder, to both rules
+        assertEquals(listOf("Java", "Java", "XPath", "Java", "XPath"), order);
+    }
+
     Report executeRule(Rule rule, DummyNode node) {
         return getReportForRuleApply(rule, node);
     }
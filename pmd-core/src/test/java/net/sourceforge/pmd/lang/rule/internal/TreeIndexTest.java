@@ -0,0 +1,70 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.util.IteratorUtil;
+
+class TreeIndexTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @Test
+    void testIndexInPreorder() {
+        TreeIndex index = new TreeIndex(setOf("a", "c"), setOf(DummyNode.class, RootNode.class));
+        DummyRootNode root = helper.parse("(a(b(a))(c))");
+        index.index(root);
+
+        assertEquals(listOf("a", "a"), images(index.getByName("a")));
+        assertEquals(listOf("c"), images(index.getByName("c")));
+        assertEquals(listOf("", "a", "b", "a", "c"), images(index.getByClass(DummyNode.class)));
+        assertEquals(listOf(root), IteratorUtil.toList(index.getByClass(RootNode.class)));
+        // not queried
+        assertFalse(index.getByName("b").hasNext());
+        assertFalse(index.getByClass(DummyRootNode.class).hasNext());
+    }
+
+    @Test
+    void testIndexIsReusedForTheNextTree() {
+        TreeIndex index = new TreeIndex(setOf("a"), Collections.singleton(DummyNode.class));
+        index.index(helper.parse("(a(a)(a))"));
+        assertEquals(listOf("a", "a", "a"), images(index.getByName("a")));
+
+        // larger than the initial capacity of the arrays
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("(a)");
+        }
+        index.index(helper.parse("(b" + text + ")"));
+        assertEquals(100, images(index.getByName("a")).size());
+        assertEquals(102, images(index.getByClass(DummyNode.class)).size());
+
+        index.index(helper.parse("(b)"));
+        assertFalse(index.getByName("a").hasNext());
+        assertEquals(listOf("", "b"), images(index.getByClass(DummyNode.class)));
+    }
+
+    private static List<String> images(Iterator<Node> nodes) {
+        return IteratorUtil.toStream(nodes).map(Node::getImage).collect(Collectors.toList());
+    }
+}
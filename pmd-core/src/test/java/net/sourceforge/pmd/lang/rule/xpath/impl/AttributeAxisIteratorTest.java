@@ -7,6 +7,7 @@ package net.sourceforge.pmd.lang.rule.xpath.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.setOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
@@ -22,6 +23,7 @@ import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
 import net.sourceforge.pmd.lang.rule.xpath.impl.dummyast.ConcreteNode;
+import net.sourceforge.pmd.lang.rule.xpath.internal.DeprecatedAttrLogger;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 
@@ -79,6 +81,27 @@ class AttributeAxisIteratorTest {
         assertEquals("actual_value", attributes.get(ATTRIBUTE_NAME).getValue().toString());
     }
 
+    @Test
+    void testStringValueByNameIsTheValueOfTheAttribute() {
+        DummyNodeWithEnum dummyNode = new DummyNodeWithEnum();
+        dummyNode.setImage("foo");
+        assertTrue(AttributeAxisIterator.hasDefaultAttributes(dummyNode));
+
+        Map<String, Attribute> attributes = toMap(new AttributeAxisIterator(dummyNode));
+        for (Attribute attribute : attributes.values()) {
+            assertEquals(attribute.getStringValue(),
+                         AttributeAxisIterator.getStringValue(dummyNode, attribute.getName(), DeprecatedAttrLogger.noop()));
+        }
+        assertEquals("FOO", AttributeAxisIterator.getStringValue(dummyNode, "Enum", DeprecatedAttrLogger.noop()));
+        assertNull(AttributeAxisIterator.getStringValue(dummyNode, "List", DeprecatedAttrLogger.noop()));
+    }
+
+    @Test
+    void testStringValueByNameWithAPackagePrivateImplementationInSuperclass() {
+        ConcreteNode node = new ConcreteNode();
+        assertEquals("actual_value", AttributeAxisIterator.getStringValue(node, "Value", DeprecatedAttrLogger.noop()));
+    }
+
     private Map<String, Attribute> toMap(AttributeAxisIterator it) {
         Map<String, Attribute> atts = new HashMap<>();
         while (it.hasNext()) {
@@ -0,0 +1,94 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.xpath.PmdXPathException;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
+
+class ViolationSuppressXPathQueryTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    private final XPathHandler xPathHandler = XPathHandler.noFunctionDefinitions();
+
+    @Test
+    void testNoQueryWithoutProperty() {
+        assertNull(ViolationSuppressXPathQuery.forRule(newRule(), xPathHandler));
+    }
+
+    @Test
+    void testQueryIsCompiledOncePerRule() {
+        Rule rule = newRule(".[@Image = 'b']");
+        ViolationSuppressXPathQuery query = ViolationSuppressXPathQuery.forRule(rule, xPathHandler);
+
+        assertSame(query, ViolationSuppressXPathQuery.forRule(rule, xPathHandler));
+        // the copies of the rule used by other threads compile their own
+        assertNotSame(query, ViolationSuppressXPathQuery.forRule(rule.deepCopy(), xPathHandler));
+        // and so does another expression
+        rule.setProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR, Optional.of(".[@Image = 'a']"));
+        assertEquals(".[@Image = 'a']", ViolationSuppressXPathQuery.forRule(rule, xPathHandler).getXPathExpression());
+    }
+
+    @Test
+    void testQueryIsStoredOnTheReferencedRule() {
+        Rule rule = newRule(".[@Image = 'b']");
+        RuleReference reference = new RuleReference(rule, null);
+        ViolationSuppressXPathQuery query = ViolationSuppressXPathQuery.forRule(reference, xPathHandler);
+
+        assertSame(query, ViolationSuppressXPathQuery.forRule(rule, xPathHandler));
+    }
+
+    @Test
+    void testInvalidQueryIsReportedWhenCompiling() {
+        Rule rule = newRule(".[@Image = ");
+        assertThrows(PmdXPathException.class, () -> ViolationSuppressXPathQuery.forRule(rule, xPathHandler));
+    }
+
+    @Test
+    void testMatches() {
+        DummyRootNode root = helper.parse("(a(b))");
+        DummyNode a = root.getChild(0);
+        DummyNode b = a.getChild(0);
+
+        ViolationSuppressXPathQuery query = ViolationSuppressXPathQuery.forRule(newRule(".[@Image = 'b']"), xPathHandler);
+
+        assertFalse(query.matches(a));
+        assertTrue(query.matches(b));
+        // from the cache of the file
+        assertTrue(query.matches(b));
+    }
+
+    private static Rule newRule() {
+        MockRule rule = new MockRule();
+        rule.setName("SuppressedRule");
+        return rule;
+    }
+
+    private static Rule newRule(String suppressXPath) {
+        Rule rule = newRule();
+        rule.setProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR, Optional.of(suppressXPath));
+        return rule;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
+
+class DataMapTest {
+
+    private final SimpleDataKey<String> stringKey = DataMap.simpleDataKey("string");
+    private final SimpleDataKey<Object> objectKey = DataMap.simpleDataKey("object");
+
+    @Test
+    void testValuesAreKeptWhenMadeConcurrent() {
+        DataMap<SimpleDataKey<?>> map = DataMap.newDataMap();
+        map.set(stringKey, "a");
+        map.makeConcurrent();
+
+        assertEquals("a", map.get(stringKey));
+        assertTrue(map.isSet(stringKey));
+        assertEquals("a", map.computeIfAbsent(stringKey, () -> "b"));
+        assertEquals("ab", map.compute(stringKey, v -> v + "b"));
+    }
+
+    @Test
+    void testConcurrentComputeIfAbsentRetainsTheFirstValue() throws Exception {
+        int threads = 4;
+        DataMap<SimpleDataKey<?>> map = DataMap.newDataMap();
+        map.makeConcurrent();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return map.computeIfAbsent(objectKey, Object::new);
+                }));
+            }
+            start.countDown();
+
+            for (Future<Object> result : results) {
+                assertSame(map.get(objectKey), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
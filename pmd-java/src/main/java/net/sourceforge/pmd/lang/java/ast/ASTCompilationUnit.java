@@ -10,6 +10,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.lang.ast.AstInfo;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.RootNode;
@@ -54,6 +55,8 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements JavaNo
     private LazyTypeResolver lazyTypeResolver;
     private List<JavaComment> comments;
     private AstInfo<ASTCompilationUnit> astInfo;
+    private boolean usageResolutionPending;
+    private boolean overrideResolutionPending;
 
     ASTCompilationUnit(int id) {
         super(id);
@@ -138,6 +141,40 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements JavaNo
         return lazyTypeResolver;
     }
 
+    /**
+     * Defers the usage and override resolution passes until their
+     * results are first needed, so that they are skipped if no rule
+     * looks at them.
+     */
+    void deferResolutionPasses() {
+        usageResolutionPending = true;
+        overrideResolutionPending = true;
+    }
+
+    /**
+     * Runs the usage resolution pass if it was deferred and hasn't run yet.
+     * @see ASTVariableId#getLocalUsages()
+     */
+    void ensureUsagesResolved() {
+        if (usageResolutionPending) {
+            TimeTracker.bench("Usage resolution", () -> InternalApiBridge.usageResolution(getLazyTypeResolver().getProcessor(), this));
+            // if the pass failed, it runs again on the next access
+            usageResolutionPending = false;
+        }
+    }
+
+    /**
+     * Runs the override resolution pass if it was deferred and hasn't run yet.
+     * @see ASTMethodDeclaration#getOverriddenMethod()
+     */
+    void ensureOverridesResolved() {
+        if (overrideResolutionPending) {
+            TimeTracker.bench("Override resolution", () -> InternalApiBridge.overrideResolution(getLazyTypeResolver().getProcessor(), this));
+            // if the pass failed, it runs again on the next access
+            overrideResolutionPending = false;
+        }
+    }
+
     @Experimental("Unnamed classes is a Java 21 Preview feature")
     @NoAttribute
     public boolean isUnnamedClass() {
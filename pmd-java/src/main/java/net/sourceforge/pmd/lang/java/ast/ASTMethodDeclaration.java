@@ -63,7 +63,7 @@ public final class ASTMethodDeclaration extends AbstractExecutableDeclaration<JM
      * Returns true if this method is overridden.
      */
     public boolean isOverridden() {
-        return overriddenMethod != null;
+        return getOverriddenMethod() != null;
     }
 
     /**
@@ -76,6 +76,7 @@ public final class ASTMethodDeclaration extends AbstractExecutableDeclaration<JM
      * {@link TypeSystem#UNRESOLVED_METHOD}.
      */
     public JMethodSig getOverriddenMethod() {
+        getRoot().ensureOverridesResolved();
         return overriddenMethod;
     }
 
@@ -20,6 +20,8 @@ import net.sourceforge.pmd.util.AssertionUtil;
 abstract class AbstractJavaTypeNode extends AbstractJavaNode implements TypeNode {
 
     private JTypeMirror typeMirror;
+    /** Whether an error in the resolution of the type was reported already. */
+    private boolean typeResolutionFailed;
 
     AbstractJavaTypeNode(int i) {
         super(i);
@@ -51,8 +53,10 @@ abstract class AbstractJavaTypeNode extends AbstractJavaNode implements TypeNode
             result = this.acceptVisitor(resolver, context);
             assert result != null : "LazyTypeResolver returned null";
         } catch (RuntimeException e) {
+            reportTypeResolutionError(resolver);
             throw AssertionUtil.contexted(e).addContextValue("Resolving type of", this);
         } catch (AssertionError e) {
+            reportTypeResolutionError(resolver);
             throw AssertionUtil.contexted(e).addContextValue("Resolving type of", this);
         }
 
@@ -62,6 +66,14 @@ abstract class AbstractJavaTypeNode extends AbstractJavaNode implements TypeNode
         return result;
     }
 
+    private void reportTypeResolutionError(LazyTypeResolver resolver) {
+        // types are resolved lazily, so this may be the first time
+        if (!typeResolutionFailed) {
+            typeResolutionFailed = true;
+            resolver.getProcessor().getLogger().warning(this, "Error during type resolution of node " + getXPathNodeName());
+        }
+    }
+
     JTypeMirror getTypeMirrorInternal() {
         return typeMirror;
     }
@@ -4,6 +4,10 @@
 
 package net.sourceforge.pmd.lang.java.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -74,9 +78,9 @@ public final class InternalApiBridge {
     }
 
     /**
-     * Forcing type resolution allows us to report errors more cleanly
-     * than if it was done completely lazy. All errors are reported, if
-     * the
+     * Resolves the type of every node. Errors are reported as warnings
+     * by the nodes when their type is first requested, whether it's by
+     * this phase or by a rule.
      */
     public static void forceTypeResolutionPhase(JavaAstProcessor processor, ASTCompilationUnit root) {
         root.descendants(TypeNode.class)
@@ -84,13 +88,15 @@ public final class InternalApiBridge {
             .forEach(it -> {
                 try {
                     it.getTypeMirror();
-                } catch (Exception e) {
-                    processor.getLogger().warning(it, "Error during type resolution of node " + it.getXPathNodeName());
+                } catch (Exception ignored) {
+                    // already reported
                 }
             });
     }
 
     public static void usageResolution(JavaAstProcessor processor, ASTCompilationUnit root) {
+        // the usages are only added once all are found, so that the pass can run again if it fails
+        List<Pair<ASTVariableId, ASTNamedReferenceExpr>> usages = new ArrayList<>();
         root.descendants(ASTNamedReferenceExpr.class)
             .crossFindBoundaries()
             .forEach(node -> {
@@ -98,10 +104,23 @@ public final class InternalApiBridge {
                 if (sym != null) {
                     ASTVariableId reffed = sym.tryGetNode();
                     if (reffed != null) { // declared in this file
-                        reffed.addUsage(node);
+                        usages.add(Pair.of(reffed, node));
                     }
                 }
             });
+        for (Pair<ASTVariableId, ASTNamedReferenceExpr> usage : usages) {
+            usage.getLeft().addUsage(usage.getRight());
+        }
+    }
+
+    /**
+     * Makes the usage and override resolution passes run on the first
+     * access to their results, instead of {@link #usageResolution(JavaAstProcessor, ASTCompilationUnit)}
+     * and {@link #overrideResolution(JavaAstProcessor, ASTCompilationUnit)}
+     * being called eagerly.
+     */
+    public static void deferResolutionPasses(ASTCompilationUnit root) {
+        root.deferResolutionPasses();
     }
 
     public static void overrideResolution(JavaAstProcessor processor, ASTCompilationUnit root) {
@@ -0,0 +1,154 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.lang.java.ast.ASTAmbiguousName;
+import net.sourceforge.pmd.lang.java.ast.ASTClassDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTClassType;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTTypeDeclaration;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+
+/**
+ * Loads the classes that a file will most likely need in background
+ * threads, before its symbol table is built. Those are the classes named
+ * by the imports and by the extends and implements clauses of the top-level
+ * types. Class stubs are thread-safe, so the analysis thread finds them
+ * already parsed, or waits for the background thread that is parsing them.
+ * The reads of the class files then overlap with the analysis of the file.
+ *
+ * <p>This is enabled with the {@link JavaLanguageProperties#CLASS_PREFETCH_THREADS classPrefetchThreads}
+ * property. Each name is only prefetched once per analysis. A prefetch
+ * may fail, or may load a class that the file does not use, eg for a
+ * guessed name: this doesn't change the results of the analysis.
+ */
+final class ClassPrefetcher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassPrefetcher.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> submitted = ConcurrentHashMap.newKeySet();
+
+    ClassPrefetcher(int threads) {
+        this(new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                    new LinkedBlockingQueue<>(),
+                                    new PrefetchThreadFactory()));
+    }
+
+    ClassPrefetcher(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Submits the classes named in the given file to the background
+     * threads. This doesn't wait for them to be loaded.
+     *
+     * @param resolver Resolver of the classpath
+     * @param acu      File that is about to be analysed
+     */
+    void prefetch(SymbolResolver resolver, ASTCompilationUnit acu) {
+        for (String name : collectNames(acu)) {
+            if (submitted.add(name)) {
+                executor.execute(() -> load(resolver, name));
+            }
+        }
+    }
+
+    private static void load(SymbolResolver resolver, String canonicalName) {
+        try {
+            JClassSymbol sym = resolver.resolveClassFromCanonicalName(canonicalName);
+            if (sym != null) {
+                // parse the class file, and load the supertypes
+                sym.getSuperclass();
+                sym.getSuperInterfaces();
+            }
+        } catch (RuntimeException e) {
+            LOG.debug("Prefetching class {} failed", canonicalName, e);
+        }
+    }
+
+    /**
+     * Returns the canonical names of the classes the file will most
+     * likely need, in the order they are written in the file.
+     */
+    static Set<String> collectNames(ASTCompilationUnit acu) {
+        Set<String> names = new LinkedHashSet<>();
+        Set<String> importedSimpleNames = new HashSet<>();
+        for (ASTImportDeclaration imp : acu.children(ASTImportDeclaration.class)) {
+            if (imp.isStatic()) {
+                // for static imports, the package name is the name of the type
+                names.add(imp.getPackageName());
+            } else if (!imp.isImportOnDemand()) {
+                names.add(imp.getImportedName());
+                importedSimpleNames.add(imp.getImportedSimpleName());
+            }
+        }
+
+        String packagePrefix = acu.getPackageName().isEmpty() ? "" : acu.getPackageName() + ".";
+        for (ASTTypeDeclaration decl : acu.getTypeDeclarations()) {
+            if (decl instanceof ASTClassDeclaration) {
+                addSuperType(names, ((ASTClassDeclaration) decl).getSuperClassTypeNode(), packagePrefix, importedSimpleNames);
+            }
+            for (ASTClassType itf : decl.getSuperInterfaceTypeNodes()) {
+                addSuperType(names, itf, packagePrefix, importedSimpleNames);
+            }
+        }
+        return names;
+    }
+
+    private static void addSuperType(Set<String> names, @Nullable ASTClassType type, String packagePrefix, Set<String> importedSimpleNames) {
+        if (type == null || type.getQualifier() != null) {
+            // types qualified by another type are resolved with their qualifier
+            return;
+        }
+        ASTAmbiguousName qualifier = type.firstChild(ASTAmbiguousName.class);
+        if (qualifier != null) {
+            // before disambiguation, this is most likely a package name
+            names.add(qualifier.getName() + "." + type.getSimpleName());
+        } else if (!importedSimpleNames.contains(type.getSimpleName())) {
+            // not imported, so most likely declared in the same package
+            names.add(packagePrefix + type.getSimpleName());
+        }
+    }
+
+    /**
+     * Drops the classes that have not been loaded yet. The classes that
+     * are being loaded are not interrupted, as that would mark them as
+     * failed.
+     */
+    @Override
+    public void close() {
+        executor.getQueue().clear();
+        executor.shutdown();
+    }
+
+    private static final class PrefetchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PmdClassPrefetch " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
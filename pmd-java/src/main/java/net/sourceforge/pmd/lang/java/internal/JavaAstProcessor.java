@@ -27,7 +27,10 @@ import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger;
 
 /**
  * Processes the output of the parser before rules get access to the AST.
- * This performs all semantic analyses in layered passes.
+ * This performs all semantic analyses in layered passes. The passes
+ * that only compute facts for rules, like type resolution, usages and
+ * overrides, are run on demand, so that a ruleset that doesn't look
+ * at them doesn't pay for them.
  *
  * <p>This is the root context object for file-specific context. Instances
  * do not need to be thread-safe. Global information about eg the classpath
@@ -120,6 +123,8 @@ public final class JavaAstProcessor {
      */
     public void process() {
 
+        globalProc.prefetchClasses(acu);
+
         SymbolResolver knownSyms = TimeTracker.bench("Symbol resolution", () -> SymbolResolutionPass.traverse(this, acu));
 
         // Now symbols are on the relevant nodes
@@ -131,10 +136,13 @@ public final class JavaAstProcessor {
 
         TimeTracker.bench("Symbol table resolution", () -> SymbolTableResolver.traverse(this, acu));
         TimeTracker.bench("AST disambiguation", () -> InternalApiBridge.disambigWithCtx(NodeStream.of(acu), ReferenceCtx.root(this, acu)));
-        TimeTracker.bench("Force type resolution", () -> InternalApiBridge.forceTypeResolutionPhase(this, acu));
+        if (!typeInferenceLogger.isNoop()) {
+            // Otherwise types are resolved lazily, when a rule needs them
+            TimeTracker.bench("Force type resolution", () -> InternalApiBridge.forceTypeResolutionPhase(this, acu));
+        }
         TimeTracker.bench("Comment assignment", () -> InternalApiBridge.assignComments(acu));
-        TimeTracker.bench("Usage resolution", () -> InternalApiBridge.usageResolution(this, acu));
-        TimeTracker.bench("Override resolution", () -> InternalApiBridge.overrideResolution(this, acu));
+        // These only run if a rule looks at usages or overrides
+        InternalApiBridge.deferResolutionPasses(acu);
     }
 
     public TypeSystem getTypeSystem() {
@@ -8,12 +8,15 @@ import java.util.List;
 import java.util.Objects;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.ast.Parser;
 import net.sourceforge.pmd.lang.impl.BatchLanguageProcessor;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.JavaParser;
 import net.sourceforge.pmd.lang.java.internal.JavaLanguageProperties.InferenceLoggingVerbosity;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.BaseContextNodeTestFun;
@@ -44,6 +47,8 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     private final JavaParser parser;
     private final JavaParser parserWithoutProcessing;
     private TypeSystem typeSystem;
+    private TypeSystemRegistry.@Nullable Lease typeSystemLease;
+    private final @Nullable ClassPrefetcher classPrefetcher;
 
     public JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystem typeSystem) {
         super(properties);
@@ -52,10 +57,18 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
         String suppressMarker = properties.getSuppressMarker();
         this.parser = new JavaParser(suppressMarker, this, true);
         this.parserWithoutProcessing = new JavaParser(suppressMarker, this, false);
+
+        int prefetchThreads = properties.getProperty(JavaLanguageProperties.CLASS_PREFETCH_THREADS);
+        this.classPrefetcher = prefetchThreads > 0 ? new ClassPrefetcher(prefetchThreads) : null;
     }
 
     public JavaLanguageProcessor(JavaLanguageProperties properties) {
-        this(properties, TypeSystem.usingClassLoaderClasspath(properties.getAnalysisClassLoader()));
+        this(properties, TypeSystemRegistry.acquireFor(properties));
+    }
+
+    private JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystemRegistry.Lease typeSystemLease) {
+        this(properties, typeSystemLease.getTypeSystem());
+        this.typeSystemLease = typeSystemLease;
         LOG.debug("Using analysis classloader: {}", properties.getAnalysisClassLoader());
     }
 
@@ -88,6 +101,16 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
         }
     }
 
+    /**
+     * Starts loading the classes named in the imports of the file in
+     * the background, if this is enabled.
+     */
+    void prefetchClasses(ASTCompilationUnit acu) {
+        if (classPrefetcher != null) {
+            TimeTracker.bench("Class prefetch", () -> classPrefetcher.prefetch(typeSystem.bootstrapResolver(), acu));
+        }
+    }
+
     @Override
     public DesignerBindings getDesignerBindings() {
         return JavaDesignerBindings.INSTANCE;
@@ -132,7 +155,14 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
 
     @Override
     public void close() throws Exception {
+        if (classPrefetcher != null) {
+            classPrefetcher.close();
+        }
         this.typeSystem.logStats();
+        if (typeSystemLease != null) {
+            typeSystemLease.release();
+            typeSystemLease = null;
+        }
         super.close();
     }
 }
@@ -10,6 +10,7 @@ import net.sourceforge.pmd.cpd.CpdLanguageProperties;
 import net.sourceforge.pmd.lang.JvmLanguagePropertyBundle;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.properties.NumericConstraints;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 import net.sourceforge.pmd.properties.PropertyFactory;
 
@@ -25,9 +26,54 @@ public class JavaLanguageProperties extends JvmLanguagePropertyBundle {
                        .defaultValue(InferenceLoggingVerbosity.DISABLED)
                        .build();
 
+    /**
+     * File in which the classes read from the auxclasspath and the JDK are
+     * cached between runs. The cache is disabled if this is empty.
+     *
+     * @since 7.1.0
+     */
+    public static final PropertyDescriptor<String> SYMBOL_CACHE_FILE =
+        PropertyFactory.stringProperty("symbolCacheFile")
+                       .desc("File in which the symbols of the classes of the auxclasspath are cached between runs. "
+                                 + "The classes of an entry of the auxclasspath are dropped when it changes. Disabled if empty.")
+                       .defaultValue("")
+                       .build();
+
+    /**
+     * Whether the type system is shared with the next analyses in the same
+     * JVM that use the same auxclasspath, see {@link TypeSystemRegistry}.
+     *
+     * @since 7.1.0
+     */
+    public static final PropertyDescriptor<Boolean> REUSE_TYPE_SYSTEM =
+        PropertyFactory.booleanProperty("reuseTypeSystem")
+                       .desc("Whether the symbols loaded from the auxclasspath are kept for the next analyses "
+                                 + "in the same JVM that use the same auxclasspath. Useful for long-lived processes, "
+                                 + "like IDEs or build daemons.")
+                       .defaultValue(false)
+                       .build();
+
+    /**
+     * Number of background threads that load the classes named in the
+     * imports of a file before it is analysed, see {@link ClassPrefetcher}.
+     * Disabled if zero.
+     *
+     * @since 7.1.0
+     */
+    public static final PropertyDescriptor<Integer> CLASS_PREFETCH_THREADS =
+        PropertyFactory.intProperty("classPrefetchThreads")
+                       .desc("Number of background threads that load the classes imported by a file from the "
+                                 + "auxclasspath, while the file is being analysed. Disabled if zero.")
+                       .require(NumericConstraints.inRange(0, 64))
+                       .defaultValue(0)
+                       .build();
+
     public JavaLanguageProperties() {
         super(JavaLanguageModule.getInstance());
         definePropertyDescriptor(INTERNAL_INFERENCE_LOGGING_VERBOSITY);
+        definePropertyDescriptor(SYMBOL_CACHE_FILE);
+        definePropertyDescriptor(REUSE_TYPE_SYSTEM);
+        definePropertyDescriptor(CLASS_PREFETCH_THREADS);
         definePropertyDescriptor(CpdLanguageProperties.CPD_IGNORE_METADATA);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_IDENTIFIERS);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_LITERALS);
@@ -0,0 +1,263 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
+import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.AsmSymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassStubCache;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassStubCache.ClasspathSnapshot;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.Classpath;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+/**
+ * Registry of the type systems shared between the analyses of a JVM, so
+ * that the symbols of the JDK and of the libraries that were already loaded
+ * are reused by the next analyses. This is enabled with the
+ * {@link JavaLanguageProperties#REUSE_TYPE_SYSTEM reuseTypeSystem} property.
+ *
+ * <p>Type systems are keyed by the {@linkplain ClasspathSnapshot#fingerprint() fingerprint}
+ * of the classpath, and by the {@linkplain JavaLanguageProperties#SYMBOL_CACHE_FILE symbol cache file}.
+ * Each analysis {@linkplain #acquire(JavaLanguageProperties) acquires} a lease
+ * on a type system, which it releases when it ends. The analysis class loader
+ * is closed at the end of the analysis, so the type system uses its own copy
+ * of it.
+ *
+ * <p>Type systems that are not used by an analysis are idle. They are only
+ * softly reachable, so that the garbage collector may free them when
+ * memory is low, and only the most recently used ones are kept.
+ *
+ * <p>This is thread-safe.
+ */
+final class TypeSystemRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TypeSystemRegistry.class);
+
+    /** Registry of the JVM. */
+    static final TypeSystemRegistry GLOBAL = new TypeSystemRegistry(4);
+
+    private final int maxIdleEntries;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    /** Idle entries, from least to most recently used. */
+    private final LinkedHashMap<Key, Entry> idleEntries = new LinkedHashMap<>();
+
+    /**
+     * @param maxIdleEntries Maximum number of idle type systems that are kept
+     */
+    TypeSystemRegistry(int maxIdleEntries) {
+        this.maxIdleEntries = maxIdleEntries;
+    }
+
+    /**
+     * Returns a lease on the type system to use for an analysis with
+     * the given properties. The type system is shared with other analyses
+     * if the properties allow it, otherwise it is new.
+     */
+    static Lease acquireFor(JavaLanguageProperties properties) {
+        if (properties.getProperty(JavaLanguageProperties.REUSE_TYPE_SYSTEM)) {
+            Lease lease = GLOBAL.acquire(properties);
+            if (lease != null) {
+                return lease;
+            }
+        }
+        ClassLoader classLoader = properties.getAnalysisClassLoader();
+        ClassStubCache stubCache = newStubCache(properties, classLoader, null);
+        return new Lease(newTypeSystem(classLoader, stubCache), stubCache, null);
+    }
+
+    /**
+     * Returns a lease on the shared type system for the given properties,
+     * creating it if needed. Returns null if the analysis class loader
+     * cannot be copied.
+     */
+    @Nullable Lease acquire(JavaLanguageProperties properties) {
+        ClassLoader analysisLoader = properties.getAnalysisClassLoader();
+        boolean isPmdLoader = analysisLoader == PMDConfiguration.class.getClassLoader(); // NOPMD CompareObjectsWithEquals
+        if (!isPmdLoader && !(analysisLoader instanceof ClasspathClassLoader)) {
+            LOG.debug("Type system is not shared, the class loader {} is not known", analysisLoader);
+            return null;
+        }
+        // this walks the classpath, the stub cache reuses it
+        ClasspathSnapshot classpath = ClasspathSnapshot.of(analysisLoader);
+        Key key = new Key(classpath.fingerprint(),
+                          properties.getProperty(JavaLanguageProperties.SYMBOL_CACHE_FILE));
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                ClassLoader ownLoader;
+                try {
+                    ownLoader = isPmdLoader ? analysisLoader : ((ClasspathClassLoader) analysisLoader).copy();
+                } catch (IOException e) {
+                    LOG.debug("Type system is not shared, the class loader cannot be copied", e);
+                    return null;
+                }
+                entry = new Entry(key, ownLoader, newStubCache(properties, ownLoader, classpath));
+                entries.put(key, entry);
+            }
+            idleEntries.remove(key);
+
+            TypeSystem ts = entry.typeSystem.get();
+            if (ts == null) {
+                LOG.debug("Creating shared type system for {}", entry.classLoader);
+                ts = newTypeSystem(entry.classLoader, entry.stubCache);
+                entry.typeSystem = new SoftReference<>(ts);
+            } else {
+                LOG.debug("Reusing shared type system for {}", entry.classLoader);
+            }
+            entry.leases++;
+            return new Lease(ts, entry.stubCache, entry);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.leases--;
+        if (entry.leases > 0) {
+            return;
+        }
+        idleEntries.put(entry.key, entry);
+        Iterator<Entry> it = idleEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry idle = it.next();
+            if (idleEntries.size() > maxIdleEntries || idle.typeSystem.get() == null) {
+                it.remove();
+                entries.remove(idle.key);
+                idle.close();
+            }
+        }
+    }
+
+    /** Returns the number of type systems that are referenced, idle or not. */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param classpath The classpath of the class loader, if it was already
+     *                  fingerprinted, otherwise it is fingerprinted if needed
+     */
+    private static @Nullable ClassStubCache newStubCache(JavaLanguageProperties properties, ClassLoader classLoader,
+                                                         @Nullable ClasspathSnapshot classpath) {
+        String cacheFile = properties.getProperty(JavaLanguageProperties.SYMBOL_CACHE_FILE);
+        if (StringUtils.isBlank(cacheFile)) {
+            return null;
+        }
+        return new ClassStubCache(Paths.get(cacheFile), classLoader,
+                                  classpath != null ? classpath : ClasspathSnapshot.of(classLoader));
+    }
+
+    private static TypeSystem newTypeSystem(ClassLoader classLoader, @Nullable ClassStubCache stubCache) {
+        if (stubCache == null) {
+            return TypeSystem.usingClassLoaderClasspath(classLoader);
+        }
+        Classpath classpath = Classpath.forClassLoader(classLoader);
+        return new TypeSystem(ts -> new AsmSymbolResolver(ts, classpath, stubCache));
+    }
+
+    /**
+     * The use of a type system by an analysis. The type system is
+     * strongly reachable as long as the lease is.
+     */
+    static final class Lease {
+
+        private final TypeSystem typeSystem;
+        private final @Nullable ClassStubCache stubCache;
+        private @Nullable Entry entry;
+
+        private Lease(TypeSystem typeSystem, @Nullable ClassStubCache stubCache, @Nullable Entry entry) {
+            this.typeSystem = typeSystem;
+            this.stubCache = stubCache;
+            this.entry = entry;
+        }
+
+        TypeSystem getTypeSystem() {
+            return typeSystem;
+        }
+
+        /**
+         * Ends the use of the type system, and persists the symbol
+         * cache. This may only be called once.
+         */
+        void release() {
+            if (stubCache != null) {
+                stubCache.persist();
+            }
+            if (entry != null) {
+                entry.registry().release(entry);
+                entry = null;
+            }
+        }
+    }
+
+    private final class Entry {
+
+        private final Key key;
+        private final ClassLoader classLoader;
+        private final @Nullable ClassStubCache stubCache;
+        private SoftReference<TypeSystem> typeSystem = new SoftReference<>(null);
+        private int leases;
+
+        Entry(Key key, ClassLoader classLoader, @Nullable ClassStubCache stubCache) {
+            this.key = key;
+            this.classLoader = classLoader;
+            this.stubCache = stubCache;
+        }
+
+        TypeSystemRegistry registry() {
+            return TypeSystemRegistry.this;
+        }
+
+        void close() {
+            LOG.debug("Evicting shared type system for {}", classLoader);
+            if (classLoader instanceof ClasspathClassLoader) {
+                IOUtil.tryCloseClassLoader(classLoader);
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final long classpathFingerprint;
+        private final String stubCacheFile;
+
+        Key(long classpathFingerprint, String stubCacheFile) {
+            this.classpathFingerprint = classpathFingerprint;
+            this.stubCacheFile = stubCacheFile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return classpathFingerprint == key.classpathFingerprint
+                && stubCacheFile.equals(key.stubCacheFile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(classpathFingerprint, stubCacheFile);
+        }
+    }
+}
@@ -43,7 +43,7 @@ public class AvoidThrowingNullPointerExceptionRule extends AbstractJavaRulechain
     }
 
     private boolean hasNpeValue(ASTVariableAccess thrown) {
-        DataflowResult dataflow = DataflowPass.getDataflowResult(thrown.getRoot());
+        DataflowResult dataflow = DataflowPass.getDataflowResultForBody(thrown);
         ReachingDefinitionSet reaching = dataflow.getReachingDefinitions(thrown);
         if (reaching.isNotFullyKnown()) {
             // we lean towards false negatives... maybe we should be able
@@ -291,7 +291,7 @@ public class LawOfDemeterRule extends AbstractJavaRule {
 
 
     private int variableDegree(ASTVariableAccess expr) {
-        DataflowResult dataflow = DataflowPass.getDataflowResult(expr.getRoot());
+        DataflowResult dataflow = DataflowPass.getDataflowResultForBody(expr);
         ReachingDefinitionSet reaching = dataflow.getReachingDefinitions(expr);
         if (reaching.isNotFullyKnown()) {
             // a field symbol, normally
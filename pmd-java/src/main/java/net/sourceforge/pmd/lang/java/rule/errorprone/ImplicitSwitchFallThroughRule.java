@@ -31,7 +31,7 @@ public class ImplicitSwitchFallThroughRule extends AbstractJavaRulechainRule {
 
     @Override
     public Object visit(ASTSwitchStatement node, Object data) {
-        DataflowResult dataflow = DataflowPass.getDataflowResult(node.getRoot());
+        DataflowResult dataflow = DataflowPass.getDataflowResultForBody(node);
 
         for (ASTSwitchBranch branch : node.getBranches()) {
             if (branch instanceof ASTSwitchFallthroughBranch && branch != node.getLastChild()) {
@@ -122,7 +122,7 @@ public class InvalidLogMessageFormatRule extends AbstractJavaRulechainRule {
         if (node.getConstValue() instanceof String) {
             return OptionalInt.of(countPlaceHolders((String) node.getConstValue()));
         } else if (node instanceof ASTNamedReferenceExpr) {
-            DataflowResult dataflow = DataflowPass.getDataflowResult(node.getRoot());
+            DataflowResult dataflow = DataflowPass.getDataflowResultForBody(node);
             ReachingDefinitionSet reaching = dataflow.getReachingDefinitions((ASTNamedReferenceExpr) node);
             if (reaching.isNotFullyKnown()) {
                 return OptionalInt.empty();
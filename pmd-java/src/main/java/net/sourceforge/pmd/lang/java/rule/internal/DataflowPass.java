@@ -109,6 +109,8 @@ public final class DataflowPass {
     //  see also the todo comments in UnusedAssignmentRule
 
     private static final SimpleDataKey<DataflowResult> DATAFLOW_RESULT_K = DataMap.simpleDataKey("java.dataflow.global");
+    private static final SimpleDataKey<DataflowResult> DATAFLOW_INITIALIZERS_K = DataMap.simpleDataKey("java.dataflow.initializers");
+    private static final SimpleDataKey<DataflowResult> DATAFLOW_METHOD_K = DataMap.simpleDataKey("java.dataflow.method");
     private static final SimpleDataKey<ReachingDefinitionSet> REACHING_DEFS = DataMap.simpleDataKey("java.dataflow.reaching.backwards");
     private static final SimpleDataKey<AssignmentEntry> VAR_DEFINITION = DataMap.simpleDataKey("java.dataflow.field.def");
     private static final SimpleDataKey<OptionalBool> SWITCH_BRANCH_FALLS_THROUGH = DataMap.simpleDataKey("java.dataflow.switch.fallthrough");
@@ -125,11 +127,45 @@ public final class DataflowPass {
         return acu.getUserMap().computeIfAbsent(DATAFLOW_RESULT_K, () -> process(acu));
     }
 
+    /**
+     * Returns the info computed by the dataflow pass for the body that
+     * contains the given node. This is either a method, or all the
+     * initializers and constructors of a class, as they are analysed
+     * together. Other bodies of the file are not analysed. If the node
+     * is not in a body, this is the same as {@link #getDataflowResult(ASTCompilationUnit)}.
+     *
+     * <p>The {@linkplain DataflowResult#getUnusedAssignments() unused assignments}
+     * and {@linkplain DataflowResult#getKillers(AssignmentEntry) kill record}
+     * of the result only cover that body. The computation is done at most
+     * once per body.
+     */
+    public static DataflowResult getDataflowResultForBody(JavaNode node) {
+        JavaNode body = null;
+        // local and anonymous classes are analysed with their enclosing body
+        for (JavaNode n = node; n != null; n = n.getParent()) {
+            if (n instanceof ASTBodyDeclaration && !(n instanceof ASTTypeDeclaration)) {
+                body = n;
+            }
+        }
+        if (body == null) {
+            return getDataflowResult(node.getRoot());
+        }
+        ASTTypeDeclaration typeDecl = body.ancestors(ASTTypeDeclaration.class).first();
+        if (typeDecl == null) {
+            return new DataflowResult(); // method of an unnamed class, those are not analysed
+        }
+        if (body instanceof ASTMethodDeclaration) {
+            return getMethodResult((ASTMethodDeclaration) body, typeDecl);
+        }
+        return getInitializersResult(typeDecl);
+    }
+
     /**
      * If the var id is that of a field, returns the assignment entry that
      * corresponds to its definition (either blank or its initializer). From
      * there, using the kill record, we can draw the graph of all assignments.
-     * Returns null if not a field, or the compilation unit has not been processed.
+     * Returns null if not a field, or the initializers of its class have not
+     * been processed.
      */
     public static @Nullable AssignmentEntry getFieldDefinition(ASTVariableId varId) {
         if (!varId.isField()) {
@@ -141,26 +177,42 @@ public final class DataflowPass {
     private static DataflowResult process(ASTCompilationUnit node) {
         DataflowResult dataflowResult = new DataflowResult();
         for (ASTTypeDeclaration typeDecl : node.getTypeDeclarations()) {
-            GlobalAlgoState subResult = new GlobalAlgoState();
-            ReachingDefsVisitor.processTypeDecl(typeDecl, new SpanInfo(subResult));
-            if (subResult.usedAssignments.size() < subResult.allAssignments.size()) {
-                Set<AssignmentEntry> unused = subResult.allAssignments;
-                unused.removeAll(subResult.usedAssignments);
-                unused.removeIf(AssignmentEntry::isUnbound);
-                unused.removeIf(AssignmentEntry::isFieldDefaultValue);
-                dataflowResult.unusedAssignments.addAll(unused);
-            }
+            absorbTypeDecl(typeDecl, dataflowResult);
+        }
+        return dataflowResult;
+    }
 
-            CollectionUtil.mergeMaps(
-                dataflowResult.killRecord,
-                subResult.killRecord,
-                (s1, s2) -> {
-                    s1.addAll(s2);
-                    return s1;
-                });
+    private static void absorbTypeDecl(ASTTypeDeclaration typeDecl, DataflowResult result) {
+        result.absorb(getInitializersResult(typeDecl));
+        for (ASTBodyDeclaration decl : typeDecl.getDeclarations()) {
+            if (decl instanceof ASTMethodDeclaration) {
+                result.absorb(getMethodResult((ASTMethodDeclaration) decl, typeDecl));
+            } else if (decl instanceof ASTTypeDeclaration) {
+                absorbTypeDecl((ASTTypeDeclaration) decl, result);
+            }
         }
+    }
 
-        return dataflowResult;
+    // The bodies of a class are independent from each other. Fields have
+    // a placeholder value at the start of each method, and the state of
+    // the enclosing class doesn't reach its member classes.
+
+    private static DataflowResult getInitializersResult(ASTTypeDeclaration typeDecl) {
+        return typeDecl.getUserMap().computeIfAbsent(DATAFLOW_INITIALIZERS_K, () -> {
+            GlobalAlgoState global = new GlobalAlgoState();
+            ReachingDefsVisitor.processInitializers(typeDecl, new SpanInfo(global));
+            return global.toResult();
+        });
+    }
+
+    private static DataflowResult getMethodResult(ASTMethodDeclaration method, ASTTypeDeclaration typeDecl) {
+        return method.getUserMap().computeIfAbsent(DATAFLOW_METHOD_K, () -> {
+            GlobalAlgoState global = new GlobalAlgoState();
+            if (method.getBody() != null) {
+                ReachingDefsVisitor.processMethod(method, typeDecl.getSymbol(), new SpanInfo(global));
+            }
+            return global.toResult();
+        });
     }
 
     /**
@@ -239,6 +291,12 @@ public final class DataflowPass {
             this.killRecord = new LinkedHashMap<>();
         }
 
+        void absorb(DataflowResult other) {
+            unusedAssignments.addAll(other.unusedAssignments);
+            other.killRecord.forEach((assignment, killers) ->
+                killRecord.computeIfAbsent(assignment, k -> new LinkedHashSet<>(killers.size())).addAll(killers));
+        }
+
         /**
          * To be interpreted by {@link  UnusedAssignmentRule}.
          */
@@ -256,12 +314,14 @@ public final class DataflowPass {
         // These methods are only valid to be called if the dataflow pass has run.
         // This is why they are instance methods here: by asking for the DataflowResult
         // instance to get access to them, you ensure that the pass has been executed properly.
+        // If the node is in another body than this result, that body is analysed too.
 
         /**
          * Returns whether the switch branch falls-through to the next one (or the end of the switch).
          */
         public @NonNull OptionalBool switchBranchFallsThrough(ASTSwitchBranch b) {
             if (b instanceof ASTSwitchFallthroughBranch) {
+                getDataflowResultForBody(b);
                 return Objects.requireNonNull(b.getUserMap().get(SWITCH_BRANCH_FALLS_THROUGH));
             }
             return OptionalBool.NO;
@@ -269,6 +329,7 @@ public final class DataflowPass {
 
 
         public @NonNull ReachingDefinitionSet getReachingDefinitions(ASTNamedReferenceExpr expr) {
+            getDataflowResultForBody(expr);
             return expr.getUserMap().computeIfAbsent(REACHING_DEFS, () -> reachingFallback(expr));
         }
 
@@ -973,27 +1034,12 @@ public final class DataflowPass {
         }
 
         private static SpanInfo processTypeDecl(ASTTypeDeclaration node, SpanInfo data) {
-            ReachingDefsVisitor instanceVisitor = new ReachingDefsVisitor(node.getSymbol(), false);
-            ReachingDefsVisitor staticVisitor = new ReachingDefsVisitor(node.getSymbol(), true);
             // process initializers and ctors first
-            processInitializers(node.getDeclarations(), data, node.getSymbol(),
-                                instanceVisitor, staticVisitor);
+            processInitializers(node, data);
 
             for (ASTBodyDeclaration decl : node.getDeclarations()) {
                 if (decl instanceof ASTMethodDeclaration) {
-                    ASTMethodDeclaration method = (ASTMethodDeclaration) decl;
-                    if (method.getBody() != null) {
-                        SpanInfo span = data.forkCapturingNonLocal();
-                        boolean staticCtx = method.isStatic();
-                        span.declareSpecialFieldValues(node.getSymbol(), staticCtx);
-                        SpanInfo endState;
-                        if (staticCtx) {
-                            endState = staticVisitor.acceptOpt(decl, span);
-                        } else {
-                            endState = instanceVisitor.acceptOpt(decl, span);
-                        }
-                        useAllSelfFields(endState, staticCtx, node.getSymbol());
-                    }
+                    processMethod((ASTMethodDeclaration) decl, node.getSymbol(), data);
                 } else if (decl instanceof ASTTypeDeclaration) {
                     processTypeDecl((ASTTypeDeclaration) decl, data.forkEmptyNonLocal());
                 }
@@ -1001,6 +1047,22 @@ public final class DataflowPass {
             return data;
         }
 
+        static void processMethod(ASTMethodDeclaration method, @NonNull JClassSymbol classSymbol, SpanInfo data) {
+            if (method.getBody() != null) {
+                SpanInfo span = data.forkCapturingNonLocal();
+                boolean staticCtx = method.isStatic();
+                span.declareSpecialFieldValues(classSymbol, staticCtx);
+                SpanInfo endState = new ReachingDefsVisitor(classSymbol, staticCtx).acceptOpt(method, span);
+                useAllSelfFields(endState, staticCtx, classSymbol);
+            }
+        }
+
+        static void processInitializers(ASTTypeDeclaration node, SpanInfo data) {
+            processInitializers(node.getDeclarations(), data, node.getSymbol(),
+                                new ReachingDefsVisitor(node.getSymbol(), false),
+                                new ReachingDefsVisitor(node.getSymbol(), true));
+        }
+
         private static void processInitializers(NodeStream<ASTBodyDeclaration> declarations,
                                                 SpanInfo beforeLocal,
                                                 @NonNull JClassSymbol classSymbol,
@@ -1106,6 +1168,19 @@ public final class DataflowPass {
                  new LinkedHashSet<>(),
                  new LinkedHashMap<>());
         }
+
+        DataflowResult toResult() {
+            DataflowResult result = new DataflowResult();
+            if (usedAssignments.size() < allAssignments.size()) {
+                Set<AssignmentEntry> unused = new LinkedHashSet<>(allAssignments);
+                unused.removeAll(usedAssignments);
+                unused.removeIf(AssignmentEntry::isUnbound);
+                unused.removeIf(AssignmentEntry::isFieldDefaultValue);
+                result.unusedAssignments.addAll(unused);
+            }
+            result.killRecord.putAll(killRecord);
+            return result;
+        }
     }
 
     // Information about a variable in a code span.
@@ -17,6 +17,8 @@ import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassStubCache.ClassFile;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.CachedLoader;
 import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.FailedLoader;
 import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.StreamLoader;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
@@ -35,6 +37,7 @@ public class AsmSymbolResolver implements SymbolResolver {
     private final SignatureParser typeLoader;
 
     private final ConcurrentMap<String, ClassStub> knownStubs = new ConcurrentHashMap<>();
+    private final @Nullable ClassStubCache stubCache;
 
     /**
      * Sentinel for when we fail finding a URL. This allows using a single map,
@@ -43,8 +46,19 @@ public class AsmSymbolResolver implements SymbolResolver {
     private final ClassStub failed;
 
     public AsmSymbolResolver(TypeSystem ts, Classpath classLoader) {
+        this(ts, classLoader, null);
+    }
+
+    /**
+     * Creates a resolver that reads the classes from the given cache
+     * when possible, and adds the other classes it parses to the cache.
+     *
+     * @param stubCache Persistent cache of the classes of the classpath, may be null
+     */
+    public AsmSymbolResolver(TypeSystem ts, Classpath classLoader, @Nullable ClassStubCache stubCache) {
         this.ts = ts;
         this.classLoader = classLoader;
+        this.stubCache = stubCache;
         this.typeLoader = new SignatureParser(this);
         this.failed = new ClassStub(this, "/*failed-lookup*/", FailedLoader.INSTANCE, 0);
     }
@@ -56,12 +70,12 @@ public class AsmSymbolResolver implements SymbolResolver {
         String internalName = getInternalName(binaryName);
 
         ClassStub found = knownStubs.computeIfAbsent(internalName, iname -> {
-            @Nullable InputStream inputStream = getStreamOfInternalName(iname);
-            if (inputStream == null) {
+            Loader loader = getLoader(iname);
+            if (loader == FailedLoader.INSTANCE) { // NOPMD CompareObjectsWithEquals
                 return failed;
             }
 
-            return new ClassStub(this, iname, new StreamLoader(binaryName, inputStream), ClassStub.UNKNOWN_ARITY);
+            return new ClassStub(this, iname, loader, ClassStub.UNKNOWN_ARITY);
         });
 
         if (!found.hasCanonicalName()) {
@@ -91,6 +105,25 @@ public class AsmSymbolResolver implements SymbolResolver {
         return classLoader.findResource(internalName + ".class");
     }
 
+    /**
+     * Returns the loader of the class, which replays it from the stub
+     * cache if it is there, without looking it up on the classpath.
+     */
+    private @NonNull Loader getLoader(String internalName) {
+        if (stubCache != null) {
+            byte[] record = stubCache.get(internalName);
+            if (record != null) {
+                return new CachedLoader(internalName, record, stubCache);
+            }
+            // the cache needs to know where the class file is found
+            ClassFile classFile = stubCache.open(internalName, classLoader);
+            return classFile == null ? FailedLoader.INSTANCE
+                                     : new StreamLoader(internalName, classFile.stream, stubCache, classFile.entry);
+        }
+        @Nullable InputStream inputStream = getStreamOfInternalName(internalName);
+        return inputStream == null ? FailedLoader.INSTANCE : new StreamLoader(internalName, inputStream);
+    }
+
     /*
        These methods return an unresolved symbol if the url is not found.
      */
@@ -108,9 +141,7 @@ public class AsmSymbolResolver implements SymbolResolver {
             if (prev != failed && prev != null) {
                 return prev;
             }
-            @Nullable InputStream inputStream = getStreamOfInternalName(iname);
-            Loader loader = inputStream == null ? FailedLoader.INSTANCE : new StreamLoader(internalName, inputStream);
-            return new ClassStub(this, iname, loader, observedArity);
+            return new ClassStub(this, iname, getLoader(iname), observedArity);
         });
     }
 
@@ -0,0 +1,525 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.zip.Adler32;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader.OpenedResource;
+
+/**
+ * Persistent cache of the {@linkplain ClassStubRecord records} of the
+ * class files read by an {@link AsmSymbolResolver}, so that the classes
+ * of the auxclasspath and of the JDK are not looked up and parsed again
+ * on each run.
+ *
+ * <p>Each record is keyed by the entry of the classpath its class file
+ * was found in. When the cache is loaded, the records of an entry are
+ * dropped if the entry changed, or if an entry that is searched before
+ * it changed, as it may now shadow its classes. Jar files are fingerprinted
+ * by the {@link ClasspathFingerprinter}, directories by the size and
+ * modification time of their class files. The records of the classes
+ * that are not found in an entry, eg in the Java runtime image, are
+ * dropped when the {@linkplain ClasspathSnapshot#fingerprint() runtime fingerprint}
+ * or the PMD version changes. The entry of a class is reported by the
+ * lookup of its class file, see {@link #open(String, Classpath)}.
+ *
+ * <p>The file contains a header, the entries of the classpath, then one
+ * record per class, by internal name. Records are only decoded when the
+ * stub is parsed. The file is rewritten entirely when persisting, if
+ * classes were added during the run.
+ *
+ * <p>This is thread-safe, stubs may be parsed concurrently.
+ */
+public final class ClassStubCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassStubCache.class);
+
+    private static final int MAGIC = 0x434c5343; // "CLSC"
+    /**
+     * Version of the layout of the file and of the records, incremented
+     * on incompatible changes, or when the {@link ClassStubBuilder} uses
+     * more events of the class files.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    /** Entry of the records that are not found in an entry of the classpath. */
+    static final int NO_ENTRY = -1;
+    /** Entry of the classes whose entry cannot be found, which are not cached. */
+    private static final int UNKNOWN_ENTRY = -2;
+
+    private static final ClasspathFingerprinter FINGERPRINTER = new ClasspathFingerprinter();
+
+    private final Path cacheFile;
+    private final long runtimeFingerprint;
+    private final @Nullable ClassLoader classLoader;
+    private final List<ClasspathEntry> entries;
+    /** Records by internal name. */
+    private final ConcurrentMap<String, CachedRecord> records = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    /**
+     * Creates a new cache of the classes of the given class loader,
+     * stored in the given file, and loads it if it exists.
+     *
+     * @param cacheFile   The file in which to store the cache
+     * @param classLoader The class loader the classes are read from
+     */
+    public ClassStubCache(Path cacheFile, ClassLoader classLoader) {
+        this(cacheFile, classLoader, ClasspathSnapshot.of(classLoader));
+    }
+
+    /**
+     * Creates a new cache of the classes of the given class loader,
+     * whose classpath was already fingerprinted, eg to key the type system.
+     *
+     * @param cacheFile   The file in which to store the cache
+     * @param classLoader The class loader the classes are read from
+     * @param classpath   The classpath of the class loader, or of the one it was copied from
+     */
+    public ClassStubCache(Path cacheFile, ClassLoader classLoader, ClasspathSnapshot classpath) {
+        this(cacheFile, classpath.runtimeFingerprint, classLoader, classpath.entries);
+    }
+
+    /**
+     * Creates a cache whose records are only checked against the given
+     * fingerprint, not against the entries of the classpath.
+     */
+    ClassStubCache(Path cacheFile, long runtimeFingerprint) {
+        this(cacheFile, runtimeFingerprint, null, Collections.emptyList());
+    }
+
+    private ClassStubCache(Path cacheFile, long runtimeFingerprint, @Nullable ClassLoader classLoader, List<ClasspathEntry> entries) {
+        this.cacheFile = cacheFile;
+        this.runtimeFingerprint = runtimeFingerprint;
+        this.classLoader = classLoader;
+        this.entries = entries;
+        load();
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            // no count or length in a valid file is larger than the file itself
+            long fileSize = Files.size(cacheFile);
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Class stub cache invalidated, unknown file format.");
+                return;
+            }
+            if (!PMDVersion.VERSION.equals(in.readUTF()) || in.readLong() != runtimeFingerprint) {
+                LOG.debug("Class stub cache invalidated, the PMD version or the runtime changed.");
+                return;
+            }
+            int entryCount = readCount(in, fileSize);
+            // the records of the entries from this index on are dropped
+            int firstChangedEntry = entryCount;
+            for (int i = 0; i < entryCount; i++) {
+                ClasspathEntry entry = new ClasspathEntry(in.readUTF(), in.readLong());
+                if (i < firstChangedEntry && (i >= entries.size() || !entries.get(i).equals(entry))) {
+                    LOG.debug("Class stub cache invalidated from classpath entry {}", entry.url);
+                    firstChangedEntry = i;
+                }
+            }
+            int count = readCount(in, fileSize);
+            for (int i = 0; i < count; i++) {
+                String internalName = in.readUTF();
+                int entry = in.readInt();
+                byte[] data = new byte[readCount(in, fileSize)];
+                in.readFully(data);
+                if (entry >= NO_ENTRY && entry < firstChangedEntry) {
+                    records.put(internalName, new CachedRecord(entry, data));
+                }
+            }
+            if (records.size() < count) {
+                // drop the invalidated records from the file
+                modified = true;
+            }
+            LOG.debug("Class stub cache loaded with {} classes", records.size());
+        } catch (NoSuchFileException e) {
+            LOG.debug("Class stub cache file {} doesn't exist yet", cacheFile);
+        } catch (IOException e) {
+            LOG.error("Could not load class stub cache from {}: {}", cacheFile, e.getMessage());
+            records.clear();
+        }
+    }
+
+    private static int readCount(DataInputStream in, long fileSize) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > fileSize) {
+            throw new IOException("Corrupted file, invalid count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the record of the class with the given internal name,
+     * or null if it is not cached.
+     */
+    byte @Nullable [] get(String internalName) {
+        CachedRecord record = records.get(internalName);
+        return record == null ? null : record.data;
+    }
+
+    /**
+     * Opens the class file of the given class, and returns it with the
+     * index of the entry of the classpath it was found in. The class
+     * loader of this cache is used to find it, if there is one, otherwise
+     * the given classpath, and the class is not keyed by an entry.
+     *
+     * @return The class file, or null if it is not found
+     */
+    @Nullable ClassFile open(String internalName, Classpath classpath) {
+        String resource = internalName + ".class";
+        if (classLoader == null) {
+            InputStream stream = classpath.findResource(resource);
+            return stream == null ? null : new ClassFile(stream, NO_ENTRY);
+        }
+        try {
+            OpenedResource found = ClasspathClassLoader.openResource(classLoader, resource);
+            return found == null ? null : new ClassFile(found.getStream(), indexOf(found.getEntry()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stores the record of a class that was parsed from its class file.
+     * It is not stored if the entry of the classpath it was found in
+     * is unknown.
+     *
+     * @param entry Index of the entry, as given by {@link #open(String, Classpath)}
+     */
+    void put(String internalName, int entry, byte[] record) {
+        if (records.containsKey(internalName)) {
+            return;
+        }
+        if (entry == UNKNOWN_ENTRY) {
+            LOG.trace("Not caching class {}, its classpath entry is unknown", internalName);
+            return;
+        }
+        if (records.putIfAbsent(internalName, new CachedRecord(entry, record)) == null) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Removes the record of a class, eg because it is corrupted.
+     */
+    void remove(String internalName) {
+        if (records.remove(internalName) != null) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Returns the index of the entry of the classpath with the given URL,
+     * {@link #NO_ENTRY} if it is null, or {@link #UNKNOWN_ENTRY} if it is
+     * not an entry of this classpath.
+     */
+    private int indexOf(@Nullable String entryUrl) {
+        if (entryUrl == null) {
+            // eg jrt:/, covered by the runtime fingerprint
+            return NO_ENTRY;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).url.equals(entryUrl)) {
+                return i;
+            }
+        }
+        return UNKNOWN_ENTRY;
+    }
+
+    /**
+     * Writes the records to the cache file, if some classes were added
+     * or dropped since it was loaded.
+     */
+    public void persist() {
+        if (!modified) {
+            return;
+        }
+        Path tempFile = null;
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            // write to a temp file first, so that the cache is never left half written
+            tempFile = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+            int count = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(PMDVersion.VERSION);
+                out.writeLong(runtimeFingerprint);
+                out.writeInt(entries.size());
+                for (ClasspathEntry entry : entries) {
+                    out.writeUTF(entry.url);
+                    out.writeLong(entry.stamp);
+                }
+                // the map may still be modified by other threads
+                Map<String, CachedRecord> snapshot = new HashMap<>(records);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, CachedRecord> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().entry);
+                    out.writeInt(entry.getValue().data.length);
+                    out.write(entry.getValue().data);
+                }
+                count = snapshot.size();
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            modified = false;
+            LOG.debug("Class stub cache persisted with {} classes", count);
+        } catch (IOException e) {
+            LOG.error("Could not persist class stub cache to {}: {}", cacheFile, e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    /**
+     * Fingerprint of the classes that are not found in an entry of the
+     * classpath: the Java runtime image of the class loader, and the
+     * runtime PMD is running on.
+     */
+    private static long runtimeFingerprint(ClassLoader classLoader) {
+        Adler32 checksum = new Adler32();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof ClasspathClassLoader) {
+                String javaHome = ((ClasspathClassLoader) loader).getJavaHome();
+                if (javaHome != null) {
+                    updateRuntimeImage(checksum, javaHome);
+                }
+            }
+        }
+        updateString(checksum, System.getProperty("java.home", ""));
+        updateString(checksum, System.getProperty("java.vm.version", ""));
+        return checksum.getValue();
+    }
+
+    /**
+     * Returns the entries of the URL class loaders in the hierarchy of
+     * the given class loader, then those of the boot classpath and of the
+     * classpath of the JVM, in the order they are searched by the
+     * {@link ClasspathClassLoader}.
+     */
+    private static List<ClasspathEntry> entriesOf(ClassLoader classLoader) {
+        List<URL> urls = new ArrayList<>();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                @SuppressWarnings("PMD.CloseResource")
+                URLClassLoader urlClassLoader = (URLClassLoader) loader;
+                urls.addAll(Arrays.asList(urlClassLoader.getURLs()));
+            }
+        }
+        // the boot classpath only exists before Java 9, then the runtime image is used
+        String jvmClasspath = System.getProperty("sun.boot.class.path", "") + File.pathSeparator
+            + System.getProperty("java.class.path", "");
+        for (String path : jvmClasspath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                try {
+                    urls.add(Paths.get(path).toAbsolutePath().toUri().normalize().toURL());
+                } catch (MalformedURLException | InvalidPathException e) {
+                    LOG.debug("Ignoring classpath entry {}", path, e);
+                }
+            }
+        }
+
+        List<ClasspathEntry> entries = new ArrayList<>(urls.size());
+        for (URL url : urls) {
+            entries.add(new ClasspathEntry(url.toString(), stamp(url)));
+        }
+        return entries;
+    }
+
+    private static long stamp(URL url) {
+        Path path = toPath(url);
+        if (path == null || !Files.exists(path)) {
+            return 0;
+        } else if (Files.isDirectory(path)) {
+            return directoryStamp(path);
+        }
+        return FINGERPRINTER.fingerprint(url);
+    }
+
+    /**
+     * The {@link ClasspathFingerprinter} ignores directories, whose class
+     * files are often modified between runs, eg when they are the output
+     * of the project being analyzed. Their class files are fingerprinted
+     * by their size and modification time.
+     */
+    private static long directoryStamp(Path directory) {
+        Adler32 checksum = new Adler32();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(f -> f.toString().endsWith(".class"))
+                 .sorted()
+                 .forEach(f -> {
+                     File file = f.toFile();
+                     updateString(checksum, directory.relativize(f) + ":" + file.length() + ":" + file.lastModified());
+                 });
+        } catch (IOException | UncheckedIOException e) {
+            // then the records of the directory will be dropped on the next run
+            LOG.debug("Could not fingerprint classpath entry {}", directory, e);
+            return System.nanoTime();
+        }
+        return checksum.getValue();
+    }
+
+    private static @Nullable Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void updateRuntimeImage(Adler32 checksum, String javaHome) {
+        updateString(checksum, javaHome);
+        // the image is too large to be read, but it is never modified in place
+        File modules = new File(new File(javaHome, "lib"), "modules");
+        updateString(checksum, modules.length() + ":" + modules.lastModified());
+    }
+
+    private static void updateString(Adler32 checksum, String s) {
+        checksum.update(s.getBytes(StandardCharsets.UTF_8));
+        checksum.update(0);
+    }
+
+    /** An entry of the classpath, with the fingerprint of its contents. */
+    private static final class ClasspathEntry {
+
+        private final String url;
+        private final long stamp;
+
+        ClasspathEntry(String url, long stamp) {
+            this.url = url;
+            this.stamp = stamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ClasspathEntry that = (ClasspathEntry) o;
+            return stamp == that.stamp && url.equals(that.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, stamp);
+        }
+    }
+
+    /**
+     * The entries of the classpath of a class loader, with the fingerprint
+     * of their contents. Computing it walks the directories of the classpath
+     * and reads the jars, so it is done once per analysis.
+     */
+    public static final class ClasspathSnapshot {
+
+        private final long runtimeFingerprint;
+        private final List<ClasspathEntry> entries;
+
+        private ClasspathSnapshot(long runtimeFingerprint, List<ClasspathEntry> entries) {
+            this.runtimeFingerprint = runtimeFingerprint;
+            this.entries = entries;
+        }
+
+        /** Fingerprints the classpath of the given class loader. */
+        public static ClasspathSnapshot of(ClassLoader classLoader) {
+            return new ClasspathSnapshot(runtimeFingerprint(classLoader), entriesOf(classLoader));
+        }
+
+        /**
+         * Returns the fingerprint of the classpath. This includes the
+         * entries of the URL class loaders in the hierarchy of the class
+         * loader and of the classpath of the JVM, the Java runtime image
+         * it uses, and the runtime PMD is running on, which provides the
+         * classes that are not found otherwise.
+         */
+        public long fingerprint() {
+            Adler32 checksum = new Adler32();
+            updateString(checksum, Long.toHexString(runtimeFingerprint));
+            for (ClasspathEntry entry : entries) {
+                updateString(checksum, entry.url + ":" + entry.stamp);
+            }
+            return checksum.getValue();
+        }
+    }
+
+    /** A class file found on the classpath, with the index of its entry. */
+    static final class ClassFile {
+
+        final InputStream stream;
+        final int entry;
+
+        ClassFile(InputStream stream, int entry) {
+            this.stream = stream;
+            this.entry = entry;
+        }
+    }
+
+    /** A record, with the index of the classpath entry it was found in. */
+    private static final class CachedRecord {
+
+        private final int entry;
+        private final byte[] data;
+
+        CachedRecord(int entry, byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+    }
+}
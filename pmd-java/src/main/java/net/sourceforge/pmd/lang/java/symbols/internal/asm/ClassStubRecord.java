@@ -0,0 +1,771 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * Compact binary record of the events of a class file that are consumed
+ * by the {@link ClassStubBuilder}, ie the header, members, signatures and
+ * annotations of the class. Replaying a record populates a stub without
+ * reading the class file again, which is used by the {@link ClassStubCache}.
+ *
+ * <p>Events are recorded while the class file is parsed, by a visitor
+ * that delegates to the builder. Only the events the builder overrides
+ * are recorded, and the members for which it returns no visitor (eg synthetic
+ * methods) are dropped. So {@link ClassStubCache#FORMAT_VERSION} must be
+ * incremented when the builder starts using other events.
+ *
+ * <p>Strings are written once per record, then referred to by their index.
+ */
+final class ClassStubRecord {
+
+    // class, field and method events
+    private static final int END = 0;
+    private static final int HEADER = 1;
+    private static final int ANNOTATION = 2;
+    private static final int OUTER_CLASS = 3;
+    private static final int FIELD = 4;
+    private static final int INNER_CLASS = 5;
+    private static final int METHOD = 6;
+    private static final int TYPE_ANNOTATION = 7;
+    private static final int ANNOTATION_DEFAULT = 8;
+    private static final int PARAMETER_ANNOTATION = 9;
+
+    // annotation events
+    private static final int VALUE = 10;
+    private static final int ENUM = 11;
+    private static final int ARRAY = 12;
+    private static final int NESTED_ANNOTATION = 13;
+
+    // kinds of constant values
+    private static final int NULL = 0;
+    private static final int BYTE = 1;
+    private static final int BOOLEAN = 2;
+    private static final int CHAR = 3;
+    private static final int SHORT = 4;
+    private static final int INT = 5;
+    private static final int LONG = 6;
+    private static final int FLOAT = 7;
+    private static final int DOUBLE = 8;
+    private static final int STRING = 9;
+    private static final int TYPE = 10;
+    private static final int BYTE_ARRAY = 11;
+    private static final int BOOLEAN_ARRAY = 12;
+    private static final int CHAR_ARRAY = 13;
+    private static final int SHORT_ARRAY = 14;
+    private static final int INT_ARRAY = 15;
+    private static final int LONG_ARRAY = 16;
+    private static final int FLOAT_ARRAY = 17;
+    private static final int DOUBLE_ARRAY = 18;
+
+    private ClassStubRecord() {
+        // utility class
+    }
+
+    /**
+     * Returns a visitor that records the events it delegates to the
+     * given visitor.
+     */
+    static Recorder recorder(ClassVisitor delegate) {
+        return new Recorder(delegate);
+    }
+
+    /**
+     * Replays the events of a record on the given visitor.
+     *
+     * @throws IOException If the record is corrupted
+     */
+    static void replay(byte[] record, ClassVisitor visitor) throws IOException {
+        new Replayer(record).replayClass(visitor);
+    }
+
+    /** Visitor that records the events of a class. */
+    static final class Recorder extends ClassVisitor {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private boolean unsupported;
+
+        private Recorder(ClassVisitor delegate) {
+            super(AsmSymbolResolver.ASM_API_V, delegate);
+        }
+
+        /**
+         * Returns the record, or null if the class contains a constant
+         * that cannot be recorded.
+         */
+        byte @Nullable [] toByteArray() {
+            return unsupported ? null : bytes.toByteArray();
+        }
+
+        @Override
+        public void visit(int version, int access, String name, @Nullable String signature, @Nullable String superName, String @Nullable [] interfaces) {
+            writeTag(HEADER);
+            writeInt(version);
+            writeInt(access);
+            writeString(name);
+            writeString(signature);
+            writeString(superName);
+            writeStrings(interfaces);
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            AnnotationVisitor delegate = super.visitAnnotation(descriptor, visible);
+            if (delegate == null) {
+                return null;
+            }
+            writeTag(ANNOTATION);
+            writeString(descriptor);
+            writeBoolean(visible);
+            return new AnnotationRecorder(delegate);
+        }
+
+        @Override
+        public void visitOuterClass(String owner, @Nullable String name, @Nullable String descriptor) {
+            writeTag(OUTER_CLASS);
+            writeString(owner);
+            writeString(name);
+            writeString(descriptor);
+            super.visitOuterClass(owner, name, descriptor);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, @Nullable String signature, @Nullable Object value) {
+            FieldVisitor delegate = super.visitField(access, name, descriptor, signature, value);
+            if (delegate == null) {
+                return null;
+            }
+            writeTag(FIELD);
+            writeInt(access);
+            writeString(name);
+            writeString(descriptor);
+            writeString(signature);
+            writeValue(value);
+            return new FieldVisitor(api, delegate) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return recordAnnotation(super.visitAnnotation(descriptor, visible), descriptor, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, @Nullable TypePath typePath, String descriptor, boolean visible) {
+                    return recordTypeAnnotation(super.visitTypeAnnotation(typeRef, typePath, descriptor, visible),
+                                                typeRef, typePath, descriptor, visible);
+                }
+
+                @Override
+                public void visitEnd() {
+                    writeTag(END);
+                    super.visitEnd();
+                }
+            };
+        }
+
+        @Override
+        public void visitInnerClass(String name, @Nullable String outerName, @Nullable String innerName, int access) {
+            writeTag(INNER_CLASS);
+            writeString(name);
+            writeString(outerName);
+            writeString(innerName);
+            writeInt(access);
+            super.visitInnerClass(name, outerName, innerName, access);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, @Nullable String signature, String @Nullable [] exceptions) {
+            MethodVisitor delegate = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if (delegate == null) {
+                return null;
+            }
+            writeTag(METHOD);
+            writeInt(access);
+            writeString(name);
+            writeString(descriptor);
+            writeString(signature);
+            writeStrings(exceptions);
+            return new MethodVisitor(api, delegate) {
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    AnnotationVisitor av = super.visitAnnotationDefault();
+                    if (av == null) {
+                        return null;
+                    }
+                    writeTag(ANNOTATION_DEFAULT);
+                    return new AnnotationRecorder(av);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                    AnnotationVisitor av = super.visitParameterAnnotation(parameter, descriptor, visible);
+                    if (av == null) {
+                        return null;
+                    }
+                    writeTag(PARAMETER_ANNOTATION);
+                    writeInt(parameter);
+                    writeString(descriptor);
+                    writeBoolean(visible);
+                    return new AnnotationRecorder(av);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return recordAnnotation(super.visitAnnotation(descriptor, visible), descriptor, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, @Nullable TypePath typePath, String descriptor, boolean visible) {
+                    return recordTypeAnnotation(super.visitTypeAnnotation(typeRef, typePath, descriptor, visible),
+                                                typeRef, typePath, descriptor, visible);
+                }
+
+                @Override
+                public void visitEnd() {
+                    writeTag(END);
+                    super.visitEnd();
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            writeTag(END);
+            super.visitEnd();
+        }
+
+        private AnnotationVisitor recordAnnotation(@Nullable AnnotationVisitor delegate, String descriptor, boolean visible) {
+            if (delegate == null) {
+                return null;
+            }
+            writeTag(ANNOTATION);
+            writeString(descriptor);
+            writeBoolean(visible);
+            return new AnnotationRecorder(delegate);
+        }
+
+        private AnnotationVisitor recordTypeAnnotation(@Nullable AnnotationVisitor delegate, int typeRef, @Nullable TypePath typePath, String descriptor, boolean visible) {
+            if (delegate == null) {
+                return null;
+            }
+            writeTag(TYPE_ANNOTATION);
+            writeInt(typeRef);
+            writeString(typePath == null ? null : typePath.toString());
+            writeString(descriptor);
+            writeBoolean(visible);
+            return new AnnotationRecorder(delegate);
+        }
+
+        /** Records the values of an annotation, or the elements of an array. */
+        private final class AnnotationRecorder extends AnnotationVisitor {
+
+            AnnotationRecorder(AnnotationVisitor delegate) {
+                super(Recorder.this.api, delegate);
+            }
+
+            @Override
+            public void visit(@Nullable String name, Object value) {
+                writeTag(VALUE);
+                writeString(name);
+                writeValue(value);
+                super.visit(name, value);
+            }
+
+            @Override
+            public void visitEnum(@Nullable String name, String descriptor, String value) {
+                writeTag(ENUM);
+                writeString(name);
+                writeString(descriptor);
+                writeString(value);
+                super.visitEnum(name, descriptor, value);
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(@Nullable String name) {
+                AnnotationVisitor av = super.visitArray(name);
+                if (av == null) {
+                    return null;
+                }
+                writeTag(ARRAY);
+                writeString(name);
+                return new AnnotationRecorder(av);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(@Nullable String name, String descriptor) {
+                AnnotationVisitor av = super.visitAnnotation(name, descriptor);
+                if (av == null) {
+                    return null;
+                }
+                writeTag(NESTED_ANNOTATION);
+                writeString(name);
+                writeString(descriptor);
+                return new AnnotationRecorder(av);
+            }
+
+            @Override
+            public void visitEnd() {
+                writeTag(END);
+                super.visitEnd();
+            }
+        }
+
+        private void writeTag(int tag) {
+            try {
+                out.writeByte(tag);
+            } catch (IOException e) {
+                throw cannotFail(e);
+            }
+        }
+
+        private void writeBoolean(boolean b) {
+            writeTag(b ? 1 : 0);
+        }
+
+        /** Writes an unsigned varint, negative numbers use 5 bytes. */
+        private void writeInt(int i) {
+            try {
+                int rest = i;
+                while ((rest & ~0x7F) != 0) {
+                    out.writeByte(rest & 0x7F | 0x80);
+                    rest >>>= 7;
+                }
+                out.writeByte(rest);
+            } catch (IOException e) {
+                throw cannotFail(e);
+            }
+        }
+
+        private void writeString(@Nullable String s) {
+            // 0 is null, then 1 + the index of the string
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeInt(index + 1);
+                return;
+            }
+            index = strings.size();
+            strings.put(s, index);
+            writeInt(index + 1);
+            try {
+                // strings of class files have the same limit on their size
+                out.writeUTF(s);
+            } catch (IOException e) {
+                throw cannotFail(e);
+            }
+        }
+
+        private void writeStrings(String @Nullable [] strings) {
+            if (strings == null) {
+                writeInt(0);
+                return;
+            }
+            writeInt(strings.length + 1);
+            for (String s : strings) {
+                writeString(s);
+            }
+        }
+
+        @SuppressWarnings("PMD.CognitiveComplexity")
+        private void writeValue(@Nullable Object value) {
+            try {
+                if (value == null) {
+                    out.writeByte(NULL);
+                } else if (value instanceof Byte) {
+                    out.writeByte(BYTE);
+                    out.writeByte((Byte) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte(BOOLEAN);
+                    out.writeBoolean((Boolean) value);
+                } else if (value instanceof Character) {
+                    out.writeByte(CHAR);
+                    out.writeChar((Character) value);
+                } else if (value instanceof Short) {
+                    out.writeByte(SHORT);
+                    out.writeShort((Short) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(FLOAT);
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Double) {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble((Double) value);
+                } else if (value instanceof String) {
+                    out.writeByte(STRING);
+                    writeString((String) value);
+                } else if (value instanceof Type) {
+                    out.writeByte(TYPE);
+                    writeString(((Type) value).getDescriptor());
+                } else if (value instanceof byte[]) {
+                    byte[] array = (byte[]) value;
+                    out.writeByte(BYTE_ARRAY);
+                    writeInt(array.length);
+                    out.write(array);
+                } else if (value instanceof boolean[]) {
+                    boolean[] array = (boolean[]) value;
+                    out.writeByte(BOOLEAN_ARRAY);
+                    writeInt(array.length);
+                    for (boolean b : array) {
+                        out.writeBoolean(b);
+                    }
+                } else if (value instanceof char[]) {
+                    char[] array = (char[]) value;
+                    out.writeByte(CHAR_ARRAY);
+                    writeInt(array.length);
+                    for (char c : array) {
+                        out.writeChar(c);
+                    }
+                } else if (value instanceof short[]) {
+                    short[] array = (short[]) value;
+                    out.writeByte(SHORT_ARRAY);
+                    writeInt(array.length);
+                    for (short s : array) {
+                        out.writeShort(s);
+                    }
+                } else if (value instanceof int[]) {
+                    int[] array = (int[]) value;
+                    out.writeByte(INT_ARRAY);
+                    writeInt(array.length);
+                    for (int i : array) {
+                        out.writeInt(i);
+                    }
+                } else if (value instanceof long[]) {
+                    long[] array = (long[]) value;
+                    out.writeByte(LONG_ARRAY);
+                    writeInt(array.length);
+                    for (long l : array) {
+                        out.writeLong(l);
+                    }
+                } else if (value instanceof float[]) {
+                    float[] array = (float[]) value;
+                    out.writeByte(FLOAT_ARRAY);
+                    writeInt(array.length);
+                    for (float f : array) {
+                        out.writeFloat(f);
+                    }
+                } else if (value instanceof double[]) {
+                    double[] array = (double[]) value;
+                    out.writeByte(DOUBLE_ARRAY);
+                    writeInt(array.length);
+                    for (double d : array) {
+                        out.writeDouble(d);
+                    }
+                } else {
+                    // eg a ConstantDynamic, the class is not cached
+                    unsupported = true;
+                    out.writeByte(NULL);
+                }
+            } catch (IOException e) {
+                throw cannotFail(e);
+            }
+        }
+
+        private static IllegalStateException cannotFail(IOException e) {
+            return new IllegalStateException("Writing to a byte array cannot fail", e);
+        }
+    }
+
+    /** Reads a record and replays its events. */
+    private static final class Replayer {
+
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        Replayer(byte[] record) {
+            this.in = new DataInputStream(new ByteArrayInputStream(record));
+        }
+
+        void replayClass(ClassVisitor cv) throws IOException {
+            int tag;
+            while ((tag = in.readByte()) != END) {
+                switch (tag) {
+                case HEADER:
+                    cv.visit(readInt(), readInt(), readString(), readString(), readString(), readStrings());
+                    break;
+                case ANNOTATION:
+                    replayAnnotation(cv.visitAnnotation(readString(), in.readBoolean()));
+                    break;
+                case OUTER_CLASS:
+                    cv.visitOuterClass(readString(), readString(), readString());
+                    break;
+                case FIELD:
+                    replayField(cv.visitField(readInt(), readString(), readString(), readString(), readValue()));
+                    break;
+                case INNER_CLASS:
+                    cv.visitInnerClass(readString(), readString(), readString(), readInt());
+                    break;
+                case METHOD:
+                    replayMethod(cv.visitMethod(readInt(), readString(), readString(), readString(), readStrings()));
+                    break;
+                default:
+                    throw corrupted(tag);
+                }
+            }
+            cv.visitEnd();
+        }
+
+        private void replayField(@Nullable FieldVisitor fv) throws IOException {
+            int tag;
+            while ((tag = in.readByte()) != END) {
+                switch (tag) {
+                case ANNOTATION: {
+                    String descriptor = readString();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(fv == null ? null : fv.visitAnnotation(descriptor, visible));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = readString();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(fv == null ? null : fv.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+                    break;
+                }
+                default:
+                    throw corrupted(tag);
+                }
+            }
+            if (fv != null) {
+                fv.visitEnd();
+            }
+        }
+
+        private void replayMethod(@Nullable MethodVisitor mv) throws IOException {
+            int tag;
+            while ((tag = in.readByte()) != END) {
+                switch (tag) {
+                case ANNOTATION_DEFAULT:
+                    replayAnnotation(mv == null ? null : mv.visitAnnotationDefault());
+                    break;
+                case PARAMETER_ANNOTATION: {
+                    int parameter = readInt();
+                    String descriptor = readString();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(mv == null ? null : mv.visitParameterAnnotation(parameter, descriptor, visible));
+                    break;
+                }
+                case ANNOTATION: {
+                    String descriptor = readString();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(mv == null ? null : mv.visitAnnotation(descriptor, visible));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = readString();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(mv == null ? null : mv.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+                    break;
+                }
+                default:
+                    throw corrupted(tag);
+                }
+            }
+            if (mv != null) {
+                mv.visitEnd();
+            }
+        }
+
+        /** Replays the values of an annotation, the events are skipped if the visitor is null. */
+        private void replayAnnotation(@Nullable AnnotationVisitor av) throws IOException {
+            int tag;
+            while ((tag = in.readByte()) != END) {
+                switch (tag) {
+                case VALUE: {
+                    String name = readString();
+                    Object value = readValue();
+                    if (av != null) {
+                        av.visit(name, value);
+                    }
+                    break;
+                }
+                case ENUM: {
+                    String name = readString();
+                    String descriptor = readString();
+                    String value = readString();
+                    if (av != null) {
+                        av.visitEnum(name, descriptor, value);
+                    }
+                    break;
+                }
+                case ARRAY: {
+                    String name = readString();
+                    replayAnnotation(av == null ? null : av.visitArray(name));
+                    break;
+                }
+                case NESTED_ANNOTATION: {
+                    String name = readString();
+                    String descriptor = readString();
+                    replayAnnotation(av == null ? null : av.visitAnnotation(name, descriptor));
+                    break;
+                }
+                default:
+                    throw corrupted(tag);
+                }
+            }
+            if (av != null) {
+                av.visitEnd();
+            }
+        }
+
+        private int readInt() throws IOException {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        private @Nullable String readString() throws IOException {
+            int index = readInt();
+            if (index == 0) {
+                return null;
+            } else if (index == strings.size() + 1) {
+                strings.add(in.readUTF());
+            } else if (index > strings.size()) {
+                throw new IOException("Invalid string index " + index);
+            }
+            return strings.get(index - 1);
+        }
+
+        private String @Nullable [] readStrings() throws IOException {
+            int length = readInt();
+            if (length == 0) {
+                return null;
+            }
+            String[] result = new String[length - 1];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = readString();
+            }
+            return result;
+        }
+
+        private @Nullable TypePath readTypePath() throws IOException {
+            String path = readString();
+            return path == null ? null : TypePath.fromString(path);
+        }
+
+        @SuppressWarnings("PMD.CognitiveComplexity")
+        private @Nullable Object readValue() throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+            case NULL:
+                return null;
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHAR:
+                return in.readChar();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString();
+            case TYPE:
+                return Type.getType(readString());
+            case BYTE_ARRAY: {
+                byte[] array = new byte[readInt()];
+                in.readFully(array);
+                return array;
+            }
+            case BOOLEAN_ARRAY: {
+                boolean[] array = new boolean[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readBoolean();
+                }
+                return array;
+            }
+            case CHAR_ARRAY: {
+                char[] array = new char[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readChar();
+                }
+                return array;
+            }
+            case SHORT_ARRAY: {
+                short[] array = new short[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readShort();
+                }
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+            case FLOAT_ARRAY: {
+                float[] array = new float[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readFloat();
+                }
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readDouble();
+                }
+                return array;
+            }
+            default:
+                throw corrupted(kind);
+            }
+        }
+
+        private static IOException corrupted(int tag) {
+            return new IOException("Corrupted class stub record, unexpected tag " + tag);
+        }
+    }
+}
@@ -10,12 +10,17 @@ import java.io.InputStream;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 
 abstract class Loader {
 
 
-    @Nullable
-    abstract InputStream getInputStream() throws IOException;
+    /**
+     * Makes the visitor visit the class. Returns false if the class
+     * file was not found.
+     */
+    abstract boolean accept(ClassVisitor visitor) throws IOException;
 
 
     static class FailedLoader extends Loader {
@@ -23,8 +28,8 @@ abstract class Loader {
         static final FailedLoader INSTANCE = new FailedLoader();
 
         @Override
-        @Nullable InputStream getInputStream() {
-            return null;
+        boolean accept(ClassVisitor visitor) {
+            return false;
         }
 
         @Override
@@ -37,15 +42,40 @@ abstract class Loader {
     static class StreamLoader extends Loader {
         private final @NonNull String name;
         private final @NonNull InputStream stream;
+        private final @Nullable ClassStubCache cache;
+        private final int cacheEntry;
 
         StreamLoader(@NonNull String name, @NonNull InputStream stream) {
+            this(name, stream, null, ClassStubCache.NO_ENTRY);
+        }
+
+        /**
+         * @param cache      Cache to which the record of the class is added, may be null
+         * @param cacheEntry Index of the entry of the classpath the class file was found in
+         */
+        StreamLoader(@NonNull String name, @NonNull InputStream stream, @Nullable ClassStubCache cache, int cacheEntry) {
             this.name = name;
             this.stream = stream;
+            this.cache = cache;
+            this.cacheEntry = cacheEntry;
         }
 
         @Override
-        @NonNull InputStream getInputStream() {
-            return stream;
+        boolean accept(ClassVisitor visitor) throws IOException {
+            try (InputStream instream = stream) {
+                ClassReader classReader = new ClassReader(instream);
+                if (cache == null) {
+                    classReader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    return true;
+                }
+                ClassStubRecord.Recorder recorder = ClassStubRecord.recorder(visitor);
+                classReader.accept(recorder, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                byte[] record = recorder.toByteArray();
+                if (record != null) {
+                    cache.put(name, cacheEntry, record);
+                }
+                return true;
+            }
         }
 
         @Override
@@ -53,4 +83,34 @@ abstract class Loader {
             return "StreamLoader(for " + name + ")";
         }
     }
+
+    /** Replays the record of a class from the {@link ClassStubCache}. */
+    static class CachedLoader extends Loader {
+        private final @NonNull String name;
+        private final byte @NonNull [] record;
+        private final @NonNull ClassStubCache cache;
+
+        CachedLoader(@NonNull String name, byte @NonNull [] record, @NonNull ClassStubCache cache) {
+            this.name = name;
+            this.record = record;
+            this.cache = cache;
+        }
+
+        @Override
+        boolean accept(ClassVisitor visitor) throws IOException {
+            try {
+                ClassStubRecord.replay(record, visitor);
+                return true;
+            } catch (IOException e) {
+                // don't persist it again
+                cache.remove(name);
+                throw e;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "CachedLoader(for " + name + ")";
+        }
+    }
 }
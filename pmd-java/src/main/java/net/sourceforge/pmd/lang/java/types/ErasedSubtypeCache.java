@@ -0,0 +1,139 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.util.OptionalBool;
+
+/**
+ * Caches whether a class symbol is a subclass of another, ignoring type
+ * arguments. This is a fact about the classpath, so the cache is shared
+ * by all the analyses that use the {@link TypeSystem}, on all threads.
+ * {@link TypeOps#asSuper(JTypeMirror, JClassSymbol)} uses it to avoid
+ * exploring the supertypes of a parameterized type when the symbol it
+ * looks for is not among them.
+ *
+ * <p>Only classes that are not declared in an analysed file are cached,
+ * so that ASTs are not retained. Reads don't lock. When the cache
+ * is full, it is cleared.
+ */
+final class ErasedSubtypeCache {
+
+    static final int DEFAULT_MAX_SIZE = 1 << 16;
+    /** Hierarchies are not that deep, unless they are cyclic, which is a compile error. */
+    private static final int MAX_DEPTH = 100;
+
+    private final ConcurrentMap<Key, OptionalBool> cache = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ErasedSubtypeCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns whether the class {@code sub} is {@code sup} or one of
+     * its subclasses. Returns {@link OptionalBool#UNKNOWN} if some
+     * supertypes of {@code sub} are unresolved.
+     */
+    OptionalBool isSubClass(JClassSymbol sub, JClassSymbol sup) {
+        return isSubClass(sub, sup, 0);
+    }
+
+    private OptionalBool isSubClass(JClassSymbol sub, JClassSymbol sup, int depth) {
+        if (sub.equals(sup)) {
+            return OptionalBool.YES;
+        } else if (sub.isUnresolved() || sup.isUnresolved() || depth > MAX_DEPTH) {
+            return OptionalBool.UNKNOWN;
+        } else if (sub.tryGetNode() != null || sup.tryGetNode() != null) {
+            // declared in the analysed files
+            return computeIsSubClass(sub, sup, depth);
+        }
+
+        Key key = new Key(sub, sup);
+        OptionalBool result = cache.get(key);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = computeIsSubClass(sub, sup, depth);
+        if (cache.size() >= maxSize) {
+            cache.clear();
+        }
+        cache.put(key, result);
+        return result;
+    }
+
+    private OptionalBool computeIsSubClass(JClassSymbol sub, JClassSymbol sup, int depth) {
+        boolean unknown = false;
+        JClassSymbol superclass = sub.getSuperclass();
+        if (superclass != null) {
+            OptionalBool res = isSubClass(superclass, sup, depth + 1);
+            if (res == OptionalBool.YES) {
+                return res;
+            }
+            unknown = res == OptionalBool.UNKNOWN;
+        }
+        for (JClassSymbol itf : sub.getSuperInterfaces()) {
+            OptionalBool res = isSubClass(itf, sup, depth + 1);
+            if (res == OptionalBool.YES) {
+                return res;
+            }
+            unknown |= res == OptionalBool.UNKNOWN;
+        }
+        return unknown ? OptionalBool.UNKNOWN : OptionalBool.NO;
+    }
+
+    /** Returns the number of cached results. */
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * Adds the hits and misses since the last call to the counters
+     * of the {@link TimeTracker}.
+     */
+    void reportStats() {
+        TimeTracker.addToCounter(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, "Subtype cache hits", hits.sumThenReset());
+        TimeTracker.addToCounter(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, "Subtype cache misses", misses.sumThenReset());
+    }
+
+    private static final class Key {
+
+        private final JClassSymbol sub;
+        private final JClassSymbol sup;
+
+        Key(JClassSymbol sub, JClassSymbol sup) {
+            this.sub = sub;
+            this.sup = sup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return sub.equals(key.sub) && sup.equals(key.sup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sub, sup);
+        }
+    }
+}
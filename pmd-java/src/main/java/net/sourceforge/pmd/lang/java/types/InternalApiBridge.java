@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.lang.java.types;
 
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.java.types.internal.infer.OverloadMemo;
 
 /**
  * Internal API.
@@ -24,4 +25,8 @@ public final class InternalApiBridge {
     public static boolean isSameTypeInInference(JTypeMirror t, JTypeMirror s) {
         return TypeOps.isSameTypeInInference(t, s);
     }
+
+    public static OverloadMemo getOverloadMemo(TypeSystem ts) {
+        return ts.overloadMemo;
+    }
 }
@@ -42,6 +42,7 @@ import net.sourceforge.pmd.lang.java.types.internal.infer.InferenceVar.BoundKind
 import net.sourceforge.pmd.lang.java.types.internal.infer.OverloadSet;
 import net.sourceforge.pmd.util.CollectionUtil;
 import net.sourceforge.pmd.util.IteratorUtil;
+import net.sourceforge.pmd.util.OptionalBool;
 
 /**
  * Common operations on types.
@@ -1670,6 +1671,9 @@ public final class TypeOps {
         public JTypeMirror visitClass(JClassType t, JClassSymbol target) {
             if (target.equals(t.getSymbol())) {
                 return t;
+            } else if (t.getTypeSystem().erasedSubtypes.isSubClass(t.getSymbol(), target) == OptionalBool.NO) {
+                // don't substitute the supertypes for nothing
+                return null;
             }
 
             // prefer digging up the superclass first
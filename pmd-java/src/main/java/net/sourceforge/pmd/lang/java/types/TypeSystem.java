@@ -39,6 +39,7 @@ import net.sourceforge.pmd.lang.java.symbols.internal.asm.Classpath;
 import net.sourceforge.pmd.lang.java.types.BasePrimitiveSymbol.RealPrimitiveSymbol;
 import net.sourceforge.pmd.lang.java.types.BasePrimitiveSymbol.VoidSymbol;
 import net.sourceforge.pmd.lang.java.types.JPrimitiveType.PrimitiveTypeKind;
+import net.sourceforge.pmd.lang.java.types.internal.infer.OverloadMemo;
 import net.sourceforge.pmd.util.AssertionUtil;
 import net.sourceforge.pmd.util.CollectionUtil;
 
@@ -174,6 +175,8 @@ public final class TypeSystem {
     private final Map<JTypeDeclSymbol, JTypeMirror> sharedTypes;
     // test only
     final SymbolResolver resolver;
+    final ErasedSubtypeCache erasedSubtypes = new ErasedSubtypeCache(ErasedSubtypeCache.DEFAULT_MAX_SIZE);
+    final OverloadMemo overloadMemo = new OverloadMemo(OverloadMemo.DEFAULT_MAX_SIZE);
 
     /**
      * Builds a new type system. Its public fields will be initialized
@@ -750,6 +753,8 @@ public final class TypeSystem {
      */
     public void logStats() {
         resolver.logStats();
+        erasedSubtypes.reportStats();
+        overloadMemo.reportStats();
     }
 
     private static final class NullType implements JTypeMirror {
@@ -22,6 +22,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.types.InternalApiBridge;
 import net.sourceforge.pmd.lang.java.types.JArrayType;
 import net.sourceforge.pmd.lang.java.types.JClassType;
 import net.sourceforge.pmd.lang.java.types.JMethodSig;
@@ -61,6 +62,7 @@ public final class Infer {
     final MethodCtDecl FAILED_INVOCATION; // SUPPRESS CHECKSTYLE same
 
     private final SupertypeCheckCache supertypeCheckCache = new SupertypeCheckCache();
+    private final @Nullable OverloadMemo overloadMemo;
 
     /**
      * Creates a new instance.
@@ -74,6 +76,8 @@ public final class Infer {
         this.ts = ts;
         this.isPreJava8 = jdkVersion < 8;
         this.LOG = logger;
+        // the memo is shared, don't mix in results of the pre-java 8 inference
+        this.overloadMemo = isPreJava8 ? null : InternalApiBridge.getOverloadMemo(ts);
 
         this.NO_CTDECL = MethodCtDecl.unresolved(ts);
         this.FAILED_INVOCATION = MethodCtDecl.unresolved(ts);
@@ -284,6 +288,15 @@ public final class Infer {
             return NO_CTDECL;
         }
 
+        OverloadMemo.Key memoKey = overloadMemo == null ? null : overloadMemo.keyFor(site.getExpr(), potentiallyApplicable);
+        if (memoKey != null) {
+            MethodCtDecl memoized = overloadMemo.get(memoKey, potentiallyApplicable);
+            if (memoized != null) {
+                LOG.overloadMemoHit(memoized.getMethodType(), site);
+                return adaptGetClass(site, memoized);
+            }
+        }
+
         for (MethodResolutionPhase phase : MethodResolutionPhase.APPLICABILITY_TESTS) {
             PhaseOverloadSet applicable = new PhaseOverloadSet(this, phase, site);
             for (JMethodSig m : potentiallyApplicable) {
@@ -298,9 +311,10 @@ public final class Infer {
 
             if (applicable.nonEmpty()) {
                 MethodCtDecl bestApplicable = applicable.getMostSpecificOrLogAmbiguity(LOG);
-                JMethodSig adapted = ExprOps.adaptGetClass(bestApplicable.getMethodType(),
-                                                           site.getExpr()::getErasedReceiverType);
-                return bestApplicable.withMethod(adapted);
+                if (memoKey != null) {
+                    overloadMemo.put(memoKey, potentiallyApplicable, bestApplicable);
+                }
+                return adaptGetClass(site, bestApplicable);
             }
         }
 
@@ -310,6 +324,12 @@ public final class Infer {
         return NO_CTDECL;
     }
 
+    private static MethodCtDecl adaptGetClass(MethodCallSite site, MethodCtDecl ctdecl) {
+        JMethodSig adapted = ExprOps.adaptGetClass(ctdecl.getMethodType(),
+                                                   site.getExpr()::getErasedReceiverType);
+        return ctdecl.withMethod(adapted);
+    }
+
     @NonNull MethodCtDecl finishInstantiation(MethodCallSite site, MethodCtDecl ctdecl) {
         JMethodSig m = ctdecl.getMethodType();
         InvocationMirror expr = site.getExpr();
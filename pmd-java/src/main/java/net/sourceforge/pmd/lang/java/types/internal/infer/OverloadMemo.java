@@ -0,0 +1,260 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types.internal.infer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.java.symbols.JElementSymbol;
+import net.sourceforge.pmd.lang.java.types.JArrayType;
+import net.sourceforge.pmd.lang.java.types.JClassType;
+import net.sourceforge.pmd.lang.java.types.JMethodSig;
+import net.sourceforge.pmd.lang.java.types.JPrimitiveType;
+import net.sourceforge.pmd.lang.java.types.JTypeMirror;
+import net.sourceforge.pmd.lang.java.types.JTypeVar;
+import net.sourceforge.pmd.lang.java.types.JTypeVisitor;
+import net.sourceforge.pmd.lang.java.types.JWildcardType;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.CtorInvocationMirror;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.InvocationMirror;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.InvocationMirror.MethodCtDecl;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.PolyExprMirror;
+
+/**
+ * Remembers the compile-time declaration selected for method calls
+ * whose arguments are all standalone expressions. For those, the
+ * selected overload only depends on the potentially applicable
+ * signatures and on the types of the arguments, so the applicability
+ * tests of {@link Infer} can be skipped when the same call shape is
+ * seen again, eg {@code StringBuilder.append(String)}. Arguments that
+ * are method calls, constructor calls or conditionals are excluded, as
+ * the applicability tests also type them. The memo is
+ * shared by all the analyses that use the {@link TypeSystem}, on all
+ * threads.
+ *
+ * <p>Only non-generic methods are remembered, and only if the types
+ * involved are declared on the classpath, so that ASTs are not retained.
+ * When the memo is full, it is cleared.
+ */
+public final class OverloadMemo {
+
+    public static final int DEFAULT_MAX_SIZE = 1 << 14;
+
+    private final ConcurrentMap<Key, Selection> memo = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public OverloadMemo(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the key for the given call, or null if the overload
+     * selection for this call cannot be remembered.
+     *
+     * @param expr       Method call
+     * @param candidates Potentially applicable methods for the call
+     */
+    @Nullable Key keyFor(InvocationMirror expr, List<JMethodSig> candidates) {
+        if (expr instanceof CtorInvocationMirror || !expr.getExplicitTypeArguments().isEmpty()) {
+            return null;
+        }
+        for (JMethodSig m : candidates) {
+            JElementSymbol sym = m.getSymbol();
+            if (sym.tryGetNode() != null || !isFromClasspath(m.getDeclaringType())) {
+                return null;
+            }
+        }
+        List<ExprMirror> args = expr.getArgumentExpressions();
+        List<JTypeMirror> argTypes = new ArrayList<>(args.size());
+        for (ExprMirror arg : args) {
+            if (arg instanceof PolyExprMirror) {
+                // a hit would leave them untyped
+                return null;
+            }
+            JTypeMirror standalone = arg.getStandaloneType();
+            if (standalone == null || !isFromClasspath(standalone)) {
+                return null;
+            }
+            argTypes.add(standalone);
+        }
+        return new Key(candidates, argTypes);
+    }
+
+    /**
+     * Returns the remembered compile-time declaration for the key, or
+     * null if there is none.
+     *
+     * @param key        Key returned by {@link #keyFor(InvocationMirror, List)}
+     * @param candidates The candidates the key was built from
+     */
+    @Nullable MethodCtDecl get(Key key, List<JMethodSig> candidates) {
+        Selection selection = memo.get(key);
+        if (selection == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new MethodCtDecl(candidates.get(selection.index), selection.phase, true, false, false);
+    }
+
+    /**
+     * Remembers the compile-time declaration selected for the key, if
+     * it can be replayed for another call with the same key.
+     */
+    void put(Key key, List<JMethodSig> candidates, MethodCtDecl selected) {
+        if (selected.isFailed()
+            || !selected.canSkipInvocation()
+            || selected.needsUncheckedConversion()
+            || selected.getMethodType().isGeneric()) {
+            return;
+        }
+        int index = -1;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i) == selected.getMethodType()) { // NOPMD CompareObjectsWithEquals
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        if (memo.size() >= maxSize) {
+            memo.clear();
+        }
+        memo.put(key, new Selection(index, selected.getResolvePhase()));
+    }
+
+    /** Returns the number of remembered selections. */
+    int size() {
+        return memo.size();
+    }
+
+    /** Returns the number of hits since the last call to {@link #reportStats()}. */
+    long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Adds the hits and misses since the last call to the counters
+     * of the {@link TimeTracker}.
+     */
+    public void reportStats() {
+        TimeTracker.addToCounter(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, "Overload memo hits", hits.sumThenReset());
+        TimeTracker.addToCounter(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, "Overload memo misses", misses.sumThenReset());
+    }
+
+    private static boolean isFromClasspath(JTypeMirror t) {
+        return t.acceptVisitor(ClasspathTypeVisitor.INSTANCE, null);
+    }
+
+    /**
+     * Returns true if the type only mentions types declared on the
+     * classpath. Captured type variables are rejected, as they are
+     * fresh for each call.
+     */
+    private static final class ClasspathTypeVisitor implements JTypeVisitor<Boolean, Void> {
+
+        static final ClasspathTypeVisitor INSTANCE = new ClasspathTypeVisitor();
+
+        @Override
+        public Boolean visit(JTypeMirror t, Void v) {
+            return false;
+        }
+
+        @Override
+        public Boolean visitPrimitive(JPrimitiveType t, Void v) {
+            return true;
+        }
+
+        @Override
+        public Boolean visitNullType(JTypeMirror t, Void v) {
+            return true;
+        }
+
+        @Override
+        public Boolean visitArray(JArrayType t, Void v) {
+            return t.getComponentType().acceptVisitor(this, v);
+        }
+
+        @Override
+        public Boolean visitWildcard(JWildcardType t, Void v) {
+            return t.getBound().acceptVisitor(this, v);
+        }
+
+        @Override
+        public Boolean visitTypeVar(JTypeVar t, Void v) {
+            return !t.isCaptured() && t.getSymbol() != null && t.getSymbol().tryGetNode() == null;
+        }
+
+        @Override
+        public Boolean visitClass(JClassType t, Void v) {
+            if (t.getSymbol().isUnresolved() || t.getSymbol().tryGetNode() != null) {
+                return false;
+            }
+            JClassType enclosing = t.getEnclosingType();
+            if (enclosing != null && !enclosing.acceptVisitor(this, v)) {
+                return false;
+            }
+            for (JTypeMirror targ : t.getTypeArgs()) {
+                if (!targ.acceptVisitor(this, v)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class Key {
+
+        private final List<JMethodSig> candidates;
+        private final List<JTypeMirror> argTypes;
+        private final int hash;
+
+        Key(List<JMethodSig> candidates, List<JTypeMirror> argTypes) {
+            this.candidates = new ArrayList<>(candidates);
+            this.argTypes = argTypes;
+            this.hash = 31 * this.candidates.hashCode() + argTypes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                && candidates.equals(key.candidates)
+                && argTypes.equals(key.argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Selection {
+
+        private final int index;
+        private final MethodResolutionPhase phase;
+
+        Selection(int index, MethodResolutionPhase phase) {
+            this.index = index;
+            this.phase = phase;
+        }
+    }
+}
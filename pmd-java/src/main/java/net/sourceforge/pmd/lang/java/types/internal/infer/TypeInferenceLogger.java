@@ -54,6 +54,14 @@ public interface TypeInferenceLogger {
 
     default void skipInstantiation(JMethodSig partiallyInferred, MethodCallSite site) { }
 
+    /**
+     * Log that the compile-time declaration of the call site was
+     * selected by the {@link OverloadMemo}, without applicability tests.
+     * Comparing the number of these events with the number of calls
+     * gives the hit rate of the memo.
+     */
+    default void overloadMemoHit(JMethodSig selected, MethodCallSite site) { }
+
     default void ambiguityError(MethodCallSite site, @Nullable MethodCtDecl selected, List<MethodCtDecl> m1) { }
 
     // instantiateImpl
@@ -385,6 +393,12 @@ public interface TypeInferenceLogger {
         }
 
 
+        @Override
+        public void overloadMemoHit(JMethodSig selected, MethodCallSite site) {
+            println("Selected " + ppHighlight(selected) + " from the overload memo");
+        }
+
+
         @Override
         public void startArgsChecks() {
             startSection("ARGUMENTS");
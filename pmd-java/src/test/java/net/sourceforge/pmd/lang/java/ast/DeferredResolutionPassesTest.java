@@ -0,0 +1,79 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.ast;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.java.BaseParserTest;
+
+class DeferredResolutionPassesTest extends BaseParserTest {
+
+    private static final String SOURCE =
+        "import java.util.*;\n"
+            + "class Foo extends AbstractList<String> implements Comparable<Foo> {\n"
+            + "    private final List<String> items = new ArrayList<>();\n"
+            + "    @Override public String get(int i) { return items.get(i); }\n"
+            + "    @Override public int size() { int s = items.size(); return s; }\n"
+            + "    public int compareTo(Foo other) { return Integer.compare(size(), other.size()); }\n"
+            + "    public String toString() {\n"
+            + "        Runnable r = new Runnable() { public void run() { items.clear(); } };\n"
+            + "        r.run();\n"
+            + "        items.forEach(item -> System.out.println(item + items.size()));\n"
+            + "        return \"\" + r;\n"
+            + "    }\n"
+            + "    void notAnOverride(String s) { s = s + s; }\n"
+            + "}\n";
+
+    @Test
+    void testDeferredUsagesAreTheEagerOnes() {
+        ASTCompilationUnit eager = java.parse(SOURCE);
+        eager.ensureUsagesResolved();
+        eager.ensureOverridesResolved();
+
+        ASTCompilationUnit deferred = java.parse(SOURCE);
+        // rules usually look at types first, then the passes run on the first access
+        deferred.descendants(TypeNode.class).crossFindBoundaries().forEach(TypeNode::getTypeMirror);
+
+        assertEquals(describeUsages(eager), describeUsages(deferred));
+        assertEquals(describeOverrides(eager), describeOverrides(deferred));
+    }
+
+    @Test
+    void testDeferredOverridesAreTheEagerOnes() {
+        ASTCompilationUnit eager = java.parse(SOURCE);
+        eager.ensureUsagesResolved();
+        eager.ensureOverridesResolved();
+
+        ASTCompilationUnit deferred = java.parse(SOURCE);
+
+        // overrides first this time
+        assertEquals(describeOverrides(eager), describeOverrides(deferred));
+        assertEquals(describeUsages(eager), describeUsages(deferred));
+    }
+
+    private static List<String> describeUsages(ASTCompilationUnit acu) {
+        List<String> result = new ArrayList<>();
+        for (ASTVariableId id : acu.descendants(ASTVariableId.class).crossFindBoundaries()) {
+            result.add(id.getName() + " " + id.getLocalUsages().stream()
+                                              .map(u -> u.getBeginLine() + ":" + u.getBeginColumn())
+                                              .collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    private static List<String> describeOverrides(ASTCompilationUnit acu) {
+        List<String> result = new ArrayList<>();
+        for (ASTMethodDeclaration method : acu.descendants(ASTMethodDeclaration.class).crossFindBoundaries()) {
+            result.add(method.getName() + " " + method.isOverridden() + " " + method.getOverriddenMethod());
+        }
+        return result;
+    }
+}
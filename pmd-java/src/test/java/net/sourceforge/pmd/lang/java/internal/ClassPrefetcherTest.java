@@ -0,0 +1,179 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.java.JavaParsingHelper;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+class ClassPrefetcherTest {
+
+    private static final String IMPORTS =
+        "import java.util.ArrayList;\n"
+            + "import java.util.concurrent.ConcurrentHashMap;\n"
+            + "class Foo extends java.util.AbstractList<String> {}\n";
+
+    private final JavaParsingHelper parser = JavaParsingHelper.DEFAULT.withProcessing(false);
+    private final TypeSystem ts = TypeSystem.usingClassLoaderClasspath(ClassPrefetcherTest.class.getClassLoader());
+
+    @Test
+    void testNamesOfImportsAndSupertypes() {
+        ASTCompilationUnit acu = parser.parse(
+            "package p;\n"
+                + "import java.util.List;\n"
+                + "import java.util.Map.Entry;\n"
+                + "import java.io.*;\n"
+                + "import static java.util.Collections.emptyList;\n"
+                + "import static java.util.Arrays.*;\n"
+                + "class Foo extends java.util.AbstractList<String> implements List<String>, Bar {}\n"
+                + "interface Bar extends Entry<String, String>, Baz {}\n"
+        );
+
+        assertEquals(listOf("java.util.List",
+                            "java.util.Map.Entry",
+                            "java.util.Collections",
+                            "java.util.Arrays",
+                            "java.util.AbstractList",
+                            "p.Bar",
+                            "p.Baz"),
+                     new ArrayList<>(ClassPrefetcher.collectNames(acu)));
+    }
+
+    @Test
+    void testDefaultPackage() {
+        ASTCompilationUnit acu = parser.parse("class Foo extends Bar {}");
+
+        assertEquals(listOf("Bar"), new ArrayList<>(ClassPrefetcher.collectNames(acu)));
+    }
+
+    @Test
+    void testPrefetchLoadsTheClasses() throws InterruptedException {
+        Map<String, JClassSymbol> loaded = new ConcurrentHashMap<>();
+        ThreadPoolExecutor executor = newExecutor(1);
+        ClassPrefetcher prefetcher = new ClassPrefetcher(executor);
+
+        prefetcher.prefetch(recording(ts.bootstrapResolver(), loaded), parser.parse(IMPORTS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(setOf("java.util.ArrayList", "java.util.concurrent.ConcurrentHashMap", "java.util.AbstractList"),
+                     loaded.keySet());
+        // the analysis finds the symbols that were loaded in the background
+        for (Map.Entry<String, JClassSymbol> entry : loaded.entrySet()) {
+            assertSame(entry.getValue(), ts.getClassSymbol(entry.getKey()));
+        }
+    }
+
+    @Test
+    void testConcurrentResolutionFindsTheSameSymbols() throws InterruptedException {
+        Map<String, JClassSymbol> loaded = new ConcurrentHashMap<>();
+        ThreadPoolExecutor executor = newExecutor(3);
+        ClassPrefetcher prefetcher = new ClassPrefetcher(executor);
+        ASTCompilationUnit acu = parser.parse(IMPORTS);
+
+        prefetcher.prefetch(recording(ts.bootstrapResolver(), loaded), acu);
+        Map<String, JClassSymbol> resolved = new ConcurrentHashMap<>();
+        for (String name : ClassPrefetcher.collectNames(acu)) {
+            JClassSymbol symbol = ts.getClassSymbol(name);
+            assertNotNull(symbol, name);
+            // this parses the class, maybe at the same time as the prefetcher
+            assertNotNull(symbol.getSuperclass(), name);
+            resolved.put(name, symbol);
+        }
+        // each name is only submitted once
+        prefetcher.prefetch(recording(ts.bootstrapResolver(), loaded), acu);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(3L, executor.getCompletedTaskCount());
+        assertEquals(resolved.keySet(), loaded.keySet());
+        for (Map.Entry<String, JClassSymbol> entry : loaded.entrySet()) {
+            assertSame(resolved.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Test
+    void testCloseDropsThePendingClasses() throws InterruptedException {
+        Set<String> requested = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SymbolResolver blocking = new SymbolResolver() {
+            @Override
+            public @Nullable JClassSymbol resolveClassFromBinaryName(@NonNull String binaryName) {
+                requested.add(binaryName);
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+
+            @Override
+            public void logStats() {
+                // nothing to log
+            }
+        };
+        ThreadPoolExecutor executor = newExecutor(1);
+        ClassPrefetcher prefetcher = new ClassPrefetcher(executor);
+
+        prefetcher.prefetch(blocking, parser.parse(IMPORTS));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        prefetcher.close();
+        release.countDown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(requested.contains("java.util.ArrayList"));
+        assertFalse(requested.contains("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(requested.contains("java.util.AbstractList"));
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    /** Records the symbols found by the given resolver, by canonical name. */
+    private static SymbolResolver recording(SymbolResolver delegate, Map<String, JClassSymbol> found) {
+        return new SymbolResolver() {
+            @Override
+            public @Nullable JClassSymbol resolveClassFromBinaryName(@NonNull String binaryName) {
+                JClassSymbol symbol = delegate.resolveClassFromBinaryName(binaryName);
+                if (symbol != null) {
+                    found.put(symbol.getCanonicalName(), symbol);
+                }
+                return symbol;
+            }
+
+            @Override
+            public void logStats() {
+                delegate.logStats();
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+class TypeSystemRegistryTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void testTypeSystemIsSharedForTheSameClasspath() throws IOException {
+        TypeSystemRegistry registry = new TypeSystemRegistry(1);
+        try (ClasspathClassLoader loader1 = newLoader(tempDir);
+             ClasspathClassLoader loader2 = newLoader(tempDir)) {
+            TypeSystemRegistry.Lease lease1 = registry.acquire(properties(loader1));
+            TypeSystemRegistry.Lease lease2 = registry.acquire(properties(loader2));
+            assertNotNull(lease1);
+            assertNotNull(lease2);
+            TypeSystem ts = lease1.getTypeSystem();
+            assertSame(ts, lease2.getTypeSystem());
+            assertNotNull(ts.getClassSymbol("java.util.ArrayList"));
+
+            lease1.release();
+            lease2.release();
+            // the idle type system is reused
+            TypeSystemRegistry.Lease lease3 = registry.acquire(properties(loader1));
+            assertNotNull(lease3);
+            assertSame(ts, lease3.getTypeSystem());
+            lease3.release();
+        }
+    }
+
+    @Test
+    void testTypeSystemOutlivesTheAnalysisClassLoader() throws IOException {
+        TypeSystemRegistry registry = new TypeSystemRegistry(1);
+        TypeSystemRegistry.Lease lease;
+        try (ClasspathClassLoader loader = newLoader(tempDir)) {
+            lease = registry.acquire(properties(loader));
+        }
+        assertNotNull(lease);
+        assertNotNull(lease.getTypeSystem().getClassSymbol("java.util.ArrayList"));
+        lease.release();
+    }
+
+    @Test
+    void testTypeSystemIsNotSharedWhenAClassOfTheClasspathChanges() throws IOException {
+        TypeSystemRegistry registry = new TypeSystemRegistry(1);
+        Path classFile = tempDir.resolve("Foo.class");
+        Files.write(classFile, new byte[] {1});
+        try (ClasspathClassLoader loader = newLoader(tempDir)) {
+            TypeSystemRegistry.Lease lease1 = registry.acquire(properties(loader));
+            assertNotNull(lease1);
+            lease1.release();
+
+            Files.write(classFile, new byte[] {1, 2});
+            TypeSystemRegistry.Lease lease2 = registry.acquire(properties(loader));
+            assertNotNull(lease2);
+            assertNotSame(lease1.getTypeSystem(), lease2.getTypeSystem());
+            lease2.release();
+        }
+    }
+
+    @Test
+    void testIdleTypeSystemsAreEvicted() throws IOException {
+        TypeSystemRegistry registry = new TypeSystemRegistry(1);
+        Path otherDir = Files.createDirectory(tempDir.resolve("other"));
+        try (ClasspathClassLoader loader1 = newLoader(tempDir);
+             ClasspathClassLoader loader2 = newLoader(otherDir)) {
+            TypeSystemRegistry.Lease lease1 = registry.acquire(properties(loader1));
+            TypeSystemRegistry.Lease lease2 = registry.acquire(properties(loader2));
+            assertNotNull(lease1);
+            assertNotNull(lease2);
+            assertNotSame(lease1.getTypeSystem(), lease2.getTypeSystem());
+            assertEquals(2, registry.size());
+
+            lease1.release();
+            assertEquals(2, registry.size());
+            // only one idle type system is kept
+            lease2.release();
+            assertEquals(1, registry.size());
+        }
+    }
+
+    @Test
+    void testUnknownClassLoaderIsNotShared() throws IOException {
+        TypeSystemRegistry registry = new TypeSystemRegistry(1);
+        try (URLClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader())) {
+            assertNull(registry.acquire(properties(loader)));
+        }
+    }
+
+    private static ClasspathClassLoader newLoader(Path classpath) throws IOException {
+        return new ClasspathClassLoader(classpath.toString(), TypeSystemRegistryTest.class.getClassLoader());
+    }
+
+    private static JavaLanguageProperties properties(ClassLoader loader) {
+        JavaLanguageProperties properties = new JavaLanguageProperties();
+        properties.setProperty(JavaLanguageProperties.REUSE_TYPE_SYSTEM, true);
+        properties.setClassLoader(loader);
+        return properties;
+    }
+}
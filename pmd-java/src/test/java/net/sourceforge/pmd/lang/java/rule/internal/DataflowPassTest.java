@@ -5,12 +5,16 @@
 package net.sourceforge.pmd.lang.java.rule.internal;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
 import net.sourceforge.pmd.lang.java.BaseParserTest;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableAccess;
 import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.DataflowResult;
 
 /**
@@ -32,4 +36,30 @@ class DataflowPassTest extends BaseParserTest {
 
     }
 
+    @Test
+    void testBodiesAreAnalysedSeparately() {
+        ASTCompilationUnit ast = java.parse(
+            "class Foo {\n"
+                + "  int f = 0;\n"
+                + "  Foo() { f = 1; }\n"
+                + "  void a() { int x = 0; x = 1; use(x); }\n"
+                + "  void b() { int y = 0; y = 1; use(y); }\n"
+                + "  void use(int i) {}\n"
+                + "}"
+        );
+        ASTMethodDeclaration a = ast.descendants(ASTMethodDeclaration.class).first(m -> "a".equals(m.getName()));
+        ASTMethodDeclaration b = ast.descendants(ASTMethodDeclaration.class).first(m -> "b".equals(m.getName()));
+
+        DataflowResult resultA = DataflowPass.getDataflowResultForBody(a.getBody());
+        assertThat(resultA.getUnusedAssignments(), Matchers.hasSize(1));
+        assertEquals("x", resultA.getUnusedAssignments().iterator().next().getVarId().getName());
+
+        // the other body is analysed when asked
+        ASTVariableAccess useOfY = b.descendants(ASTVariableAccess.class).first();
+        assertFalse(resultA.getReachingDefinitions(useOfY).isNotFullyKnown());
+        assertThat(resultA.getReachingDefinitions(useOfY).getReaching(), Matchers.hasSize(1));
+
+        // the initializers and the constructor make up another body
+        assertThat(DataflowPass.getDataflowResult(ast).getUnusedAssignments(), Matchers.hasSize(3));
+    }
 }
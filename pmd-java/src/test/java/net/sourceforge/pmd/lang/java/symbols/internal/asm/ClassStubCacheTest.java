@@ -0,0 +1,198 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.lang.java.JavaParsingHelper;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.symbols.JFieldSymbol;
+import net.sourceforge.pmd.lang.java.symbols.JMethodSymbol;
+import net.sourceforge.pmd.lang.java.types.Substitution;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+class ClassStubCacheTest {
+
+    private static final long FINGERPRINT = 42;
+
+    @TempDir
+    private Path tempDir;
+
+    private final Classpath classpath = Classpath.forClassLoader(JavaParsingHelper.class.getClassLoader());
+
+    @Test
+    void testSymbolsAreReplayedFromThePersistedCache() {
+        Path cacheFile = tempDir.resolve("symbols.cache");
+        ClassStubCache cache = new ClassStubCache(cacheFile, FINGERPRINT);
+        TypeSystem ts = newTypeSystem(cache, classpath);
+        List<String> parsed = describe(ts, "java.util.HashMap", "java.lang.Deprecated", "java.lang.annotation.Retention");
+        cache.persist();
+        assertTrue(Files.exists(cacheFile));
+
+        Set<String> lookups = ConcurrentHashMap.newKeySet();
+        ClassStubCache loaded = new ClassStubCache(cacheFile, FINGERPRINT);
+        TypeSystem ts2 = newTypeSystem(loaded, path -> {
+            lookups.add(path);
+            return classpath.findResource(path);
+        });
+        List<String> replayed = describe(ts2, "java.util.HashMap", "java.lang.Deprecated", "java.lang.annotation.Retention");
+
+        assertEquals(parsed, replayed);
+        assertFalse(lookups.contains("java/util/HashMap.class"), "Class file was read again");
+        assertFalse(lookups.contains("java/lang/Deprecated.class"), "Class file was read again");
+    }
+
+    @Test
+    void testCacheIsInvalidatedWhenTheClasspathChanges() {
+        Path cacheFile = tempDir.resolve("symbols.cache");
+        ClassStubCache cache = new ClassStubCache(cacheFile, FINGERPRINT);
+        describe(newTypeSystem(cache, classpath), "java.util.HashMap");
+        cache.persist();
+
+        assertNotNull(new ClassStubCache(cacheFile, FINGERPRINT).get("java/util/HashMap"));
+        assertNull(new ClassStubCache(cacheFile, FINGERPRINT + 1).get("java/util/HashMap"));
+    }
+
+    @Test
+    void testRecordsOfAChangedDirectoryAreDropped() throws IOException {
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+        copyClassFile(ClassStubRecord.class, first);
+        Path changedFile = copyClassFile(ClassStubCacheTest.class, second);
+        Path cacheFile = tempDir.resolve("symbols.cache");
+        String unchanged = AsmSymbolResolver.getInternalName(ClassStubRecord.class.getName());
+        String changed = AsmSymbolResolver.getInternalName(ClassStubCacheTest.class.getName());
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {first.toUri().toURL(), second.toUri().toURL()}, null)) {
+            ClassStubCache cache = new ClassStubCache(cacheFile, loader);
+            describe(newTypeSystem(cache, Classpath.forClassLoader(loader)), ClassStubRecord.class.getName(), ClassStubCacheTest.class.getName());
+            cache.persist();
+
+            ClassStubCache loaded = new ClassStubCache(cacheFile, loader);
+            assertNotNull(loaded.get(unchanged));
+            assertNotNull(loaded.get(changed));
+
+            Files.setLastModifiedTime(changedFile, FileTime.fromMillis(Files.getLastModifiedTime(changedFile).toMillis() - 10_000));
+            ClassStubCache reloaded = new ClassStubCache(cacheFile, loader);
+            assertNotNull(reloaded.get(unchanged));
+            assertNull(reloaded.get(changed));
+        }
+    }
+
+    @Test
+    void testClassFileIsLookedUpOnce() throws IOException {
+        Path classes = tempDir.resolve("classes");
+        copyClassFile(ClassStubRecord.class, classes);
+        String resource = AsmSymbolResolver.getInternalName(ClassStubRecord.class.getName()) + ".class";
+        List<String> lookups = new ArrayList<>();
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, null) {
+            @Override
+            public URL getResource(String name) {
+                lookups.add(name);
+                return super.getResource(name);
+            }
+        }) {
+            ClassStubCache cache = new ClassStubCache(tempDir.resolve("symbols.cache"), loader);
+            describe(newTypeSystem(cache, Classpath.forClassLoader(loader)), ClassStubRecord.class.getName());
+
+            // the same lookup tells the entry the record is keyed by
+            assertEquals(1, lookups.stream().filter(resource::equals).count());
+            assertNotNull(cache.get(AsmSymbolResolver.getInternalName(ClassStubRecord.class.getName())));
+        }
+    }
+
+    @Test
+    void testCorruptedLengthIsNotAllocated() throws IOException {
+        Path cacheFile = tempDir.resolve("symbols.cache");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(cacheFile))) {
+            out.writeInt(0x434c5343);
+            out.writeInt(ClassStubCache.FORMAT_VERSION);
+            out.writeUTF(PMDVersion.VERSION);
+            out.writeLong(FINGERPRINT);
+            out.writeInt(0); // entries
+            out.writeInt(1); // records
+            out.writeUTF("java/util/HashMap");
+            out.writeInt(-1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(new ClassStubCache(cacheFile, FINGERPRINT).get("java/util/HashMap"));
+    }
+
+    @Test
+    void testCorruptedRecordIsRemoved() {
+        ClassStubCache cache = new ClassStubCache(tempDir.resolve("symbols.cache"), FINGERPRINT);
+        cache.put("java/util/HashMap", ClassStubCache.NO_ENTRY, new byte[] {100});
+        TypeSystem ts = newTypeSystem(cache, classpath);
+
+        JClassSymbol symbol = ts.getClassSymbol("java.util.HashMap");
+        assertNotNull(symbol);
+        assertTrue(symbol.getDeclaredMethods().isEmpty());
+        assertNull(cache.get("java/util/HashMap"));
+    }
+
+    private static Path copyClassFile(Class<?> klass, Path directory) throws IOException {
+        String resource = klass.getName().replace('.', '/') + ".class";
+        Path classFile = directory.resolve(resource);
+        Files.createDirectories(classFile.getParent());
+        try (InputStream in = klass.getClassLoader().getResourceAsStream(resource)) {
+            Files.copy(in, classFile);
+        }
+        return classFile;
+    }
+
+    private static TypeSystem newTypeSystem(ClassStubCache cache, Classpath classpath) {
+        return new TypeSystem(ts -> new AsmSymbolResolver(ts, classpath, cache));
+    }
+
+    private static List<String> describe(TypeSystem ts, String... classNames) {
+        List<String> result = new ArrayList<>();
+        for (String name : classNames) {
+            JClassSymbol symbol = ts.getClassSymbol(name);
+            assertNotNull(symbol, name);
+            result.add(symbol.getModifiers() + " " + symbol.getBinaryName() + symbol.getTypeParameters()
+                           + " extends " + symbol.getSuperclassType(Substitution.EMPTY)
+                           + " implements " + symbol.getSuperInterfaceTypes(Substitution.EMPTY));
+            result.add("annotations " + symbol.getDeclaredAnnotations());
+            for (JFieldSymbol field : symbol.getDeclaredFields()) {
+                result.add(field.getModifiers() + " " + field.getTypeMirror(Substitution.EMPTY) + " " + field.getSimpleName()
+                               + " = " + field.getConstValue());
+            }
+            for (JMethodSymbol method : symbol.getDeclaredMethods()) {
+                result.add(method.getModifiers() + " " + method.getTypeParameters()
+                               + method.getReturnType(Substitution.EMPTY) + " " + method.getSimpleName()
+                               + method.getFormalParameterTypes(Substitution.EMPTY)
+                               + " throws " + method.getThrownExceptionTypes(Substitution.EMPTY)
+                               + " default " + method.getDefaultAnnotationValue()
+                               + " " + method.getDeclaredAnnotations());
+            }
+            result.add("classes " + symbol.getDeclaredClasses().stream().map(JClassSymbol::getBinaryName).collect(Collectors.toList()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.java.JavaParsingHelper;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.util.OptionalBool;
+
+class ErasedSubtypeCacheTest {
+
+    private final TypeSystem ts = JavaParsingHelper.TEST_TYPE_SYSTEM;
+
+    @Test
+    void testSubClasses() {
+        ErasedSubtypeCache cache = new ErasedSubtypeCache(100);
+        assertEquals(OptionalBool.YES, cache.isSubClass(sym(ArrayList.class), sym(Collection.class)));
+        assertEquals(OptionalBool.YES, cache.isSubClass(sym(ArrayList.class), sym(AbstractList.class)));
+        assertEquals(OptionalBool.YES, cache.isSubClass(sym(ArrayList.class), sym(RandomAccess.class)));
+        assertEquals(OptionalBool.NO, cache.isSubClass(sym(ArrayList.class), sym(Map.class)));
+        assertEquals(OptionalBool.NO, cache.isSubClass(sym(Collection.class), sym(List.class)));
+        // the results for the supertypes are cached too
+        assertTrue(cache.size() > 5);
+    }
+
+    @Test
+    void testUnresolvedClass() {
+        ErasedSubtypeCache cache = new ErasedSubtypeCache(100);
+        JClassSymbol unresolved = (JClassSymbol) ts.UNKNOWN.getSymbol();
+        assertEquals(OptionalBool.UNKNOWN, cache.isSubClass(unresolved, sym(Serializable.class)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        ErasedSubtypeCache cache = new ErasedSubtypeCache(3);
+        assertEquals(OptionalBool.YES, cache.isSubClass(sym(ArrayList.class), sym(Iterable.class)));
+        assertTrue(cache.size() <= 3);
+        assertEquals(OptionalBool.NO, cache.isSubClass(sym(ArrayList.class), sym(Map.class)));
+        assertTrue(cache.size() <= 3);
+    }
+
+    @Test
+    void testAsSuperOfUnrelatedType() {
+        JTypeMirror string = ts.declaration(sym(String.class));
+        JClassType listOfString = (JClassType) ts.parameterise(sym(ArrayList.class), Collections.singletonList(string));
+        assertNull(listOfString.getAsSuper(sym(Map.class)));
+        JClassType asCollection = listOfString.getAsSuper(sym(Collection.class));
+        assertNotNull(asCollection);
+        assertEquals(ts.parameterise(sym(Collection.class), Collections.singletonList(string)), asCollection);
+    }
+
+    private JClassSymbol sym(Class<?> klass) {
+        JClassSymbol sym = ts.getClassSymbol(klass);
+        assertNotNull(sym, klass.getName());
+        return sym;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types.internal.infer;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.java.JavaParsingHelper;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTConstructorCall;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodCall;
+import net.sourceforge.pmd.lang.java.types.InternalApiBridge;
+import net.sourceforge.pmd.lang.java.types.JMethodSig;
+import net.sourceforge.pmd.lang.java.types.JTypeMirror;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+class OverloadMemoTest {
+
+    private final TypeSystem ts = TypeSystem.usingClassLoaderClasspath(OverloadMemoTest.class.getClassLoader());
+    private final OverloadMemo memo = InternalApiBridge.getOverloadMemo(ts);
+
+    @Test
+    void testRepeatedCallsUseTheMemo() {
+        List<JMethodSig> sigs = resolveCalls(
+            "class Foo {\n"
+                + "    void foo(StringBuilder sb, java.util.List<String> list, java.util.List<Integer> ints) {\n"
+                + "        sb.append(\"a\");\n"
+                + "        sb.append(\"b\");\n"
+                + "        sb.append(1);\n"
+                + "        sb.append(1L);\n"
+                + "        sb.append(\"c\");\n"
+                + "        list.add(\"d\");\n"
+                + "        ints.add(1);\n"
+                + "        list.add(\"e\");\n"
+                + "        ints.add(2);\n"
+                + "    }\n"
+                + "}");
+
+        JTypeMirror string = type(String.class);
+        assertEquals(listOf(string), sigs.get(0).getFormalParameters());
+        assertEquals(sigs.get(0), sigs.get(1));
+        assertEquals(listOf(ts.INT), sigs.get(2).getFormalParameters());
+        assertEquals(listOf(ts.LONG), sigs.get(3).getFormalParameters());
+        assertEquals(sigs.get(0), sigs.get(4));
+        assertEquals(listOf(string), sigs.get(5).getFormalParameters());
+        assertEquals(listOf(type(Integer.class)), sigs.get(6).getFormalParameters());
+        assertEquals(sigs.get(5), sigs.get(7));
+        assertEquals(sigs.get(6), sigs.get(8));
+
+        assertTrue(memo.hitCount() >= 4, "hits: " + memo.hitCount());
+    }
+
+    @Test
+    void testDeclarationsOfTheFileAreNotRemembered() {
+        List<JMethodSig> sigs = resolveCalls(
+            "class Foo {\n"
+                + "    void bar(String s) {}\n"
+                + "    void bar(Object o) {}\n"
+                + "    void foo(Foo foo) {\n"
+                + "        bar(\"a\");\n"
+                + "        bar(\"b\");\n"
+                + "        bar(foo);\n"
+                + "    }\n"
+                + "}");
+
+        assertEquals(listOf(type(String.class)), sigs.get(0).getFormalParameters());
+        assertEquals(sigs.get(0), sigs.get(1));
+        assertEquals(listOf(ts.OBJECT), sigs.get(2).getFormalParameters());
+
+        assertEquals(0, memo.size());
+        assertEquals(0, memo.hitCount());
+    }
+
+    @Test
+    void testGenericMethodsAreNotRemembered() {
+        List<JMethodSig> sigs = resolveCalls(
+            "class Foo {\n"
+                + "    void foo() {\n"
+                + "        java.util.Collections.singletonList(\"a\");\n"
+                + "        java.util.Collections.singletonList(\"b\");\n"
+                + "    }\n"
+                + "}");
+
+        JTypeMirror listOfString = ts.parameterise(ts.getClassSymbol(List.class), listOf(type(String.class)));
+        assertEquals(listOfString, sigs.get(0).getReturnType());
+        assertEquals(sigs.get(0), sigs.get(1));
+        assertEquals(0, memo.size());
+        assertEquals(0, memo.hitCount());
+    }
+
+    @Test
+    void testNestedCallsAreTyped() {
+        ASTCompilationUnit acu = parse(
+            "class Foo {\n"
+                + "    void foo() {\n"
+                + "        System.out.println(Integer.valueOf(1));\n"
+                + "        System.out.println(Integer.valueOf(2));\n"
+                + "    }\n"
+                + "}");
+
+        List<ASTMethodCall> printlns = acu.descendants(ASTMethodCall.class).filter(it -> "println".equals(it.getMethodName())).toList();
+        assertEquals(2, printlns.size());
+        for (ASTMethodCall println : printlns) {
+            assertEquals(listOf(ts.OBJECT), println.getMethodType().getFormalParameters());
+            ASTMethodCall valueOf = (ASTMethodCall) println.getArguments().get(0);
+            assertEquals(type(Integer.class), valueOf.getTypeMirror());
+            assertEquals(listOf(ts.INT), valueOf.getMethodType().getFormalParameters());
+        }
+    }
+
+    @Test
+    void testConstructorArgumentsAreTyped() {
+        ASTCompilationUnit acu = parse(
+            "class Foo {\n"
+                + "    void foo(StringBuilder sb) {\n"
+                + "        sb.append(new StringBuilder(\"a\"));\n"
+                + "        sb.append(new StringBuilder(\"b\"));\n"
+                + "    }\n"
+                + "}");
+
+        List<ASTConstructorCall> ctors = acu.descendants(ASTConstructorCall.class).toList();
+        assertEquals(2, ctors.size());
+        for (ASTConstructorCall ctor : ctors) {
+            assertEquals(type(StringBuilder.class), ctor.getTypeMirror());
+            assertEquals(listOf(type(String.class)), ctor.getMethodType().getFormalParameters());
+            ASTMethodCall append = (ASTMethodCall) ctor.getParent().getParent();
+            assertFalse(append.getOverloadSelectionInfo().isFailed());
+        }
+    }
+
+    private JTypeMirror type(Class<?> klass) {
+        return ts.declaration(ts.getClassSymbol(klass));
+    }
+
+    private List<JMethodSig> resolveCalls(String code) {
+        return parse(code).descendants(ASTMethodCall.class).toList(ASTMethodCall::getMethodType);
+    }
+
+    private ASTCompilationUnit parse(String code) {
+        return JavaParsingHelper.DEFAULT.withTypeSystem(ts).parse(code);
+    }
+}
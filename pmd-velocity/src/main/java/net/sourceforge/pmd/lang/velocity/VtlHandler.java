@@ -15,4 +15,10 @@ public class VtlHandler extends AbstractPmdLanguageVersionHandler {
         return new VtlParser();
     }
 
+    @Override
+    public boolean supportsConcurrentRuleApplication() {
+        // the nodes are fully built by the parser, and the rules only read them
+        return true;
+    }
+
 }